@@ -0,0 +1,34 @@
+package com.ayoubhj.customer;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/autocomplete} reports the index size and timings,
+ * {@code POST /actuator/autocomplete} rebuilds it from the table.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Endpoint(id = "autocomplete")
+public class AutocompleteEndpoint {
+
+    private final CustomerAutocomplete customerAutocomplete;
+
+    public AutocompleteEndpoint(CustomerAutocomplete customerAutocomplete) {
+        this.customerAutocomplete = customerAutocomplete;
+    }
+
+    @ReadOperation
+    public AutocompleteStats stats() {
+        return customerAutocomplete.stats();
+    }
+
+    @WriteOperation
+    public AutocompleteStats rebuild() {
+        customerAutocomplete.rebuild();
+        return customerAutocomplete.stats();
+    }
+}
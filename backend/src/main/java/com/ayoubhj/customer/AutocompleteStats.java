@@ -0,0 +1,13 @@
+package com.ayoubhj.customer;
+
+public record AutocompleteStats(
+        boolean ready,
+        boolean rebuilding,
+        int customers,
+        int sortedTerms,
+        int recentTerms,
+        long sizeInBytes,
+        long lastRebuildMillis,
+        long lastCompactionMillis
+) {
+}
@@ -0,0 +1,145 @@
+package com.ayoubhj.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns concurrent lookups by id into one {@link CustomerDao#selectCustomersByIds}
+ * query when {@code customer.batching.enabled} is set. The first caller
+ * opens a batch and waits up to {@code customer.batching.window} for others
+ * to join, or until {@code customer.batching.max-size} ids are collected.
+ * It then runs the query on its own thread and hands every caller its row.
+ * No extra threads are involved.
+ * <p>
+ * Each query starts after all of its callers have joined, so a lookup never
+ * gets a row read before it was made. The cost is up to one window of added
+ * latency for the first caller of each batch. That wait must not happen under
+ * a lock of the caller's: {@link CachingCustomerDao} loads outside its own, so
+ * the other ids can still join, and a virtual thread only parks.
+ */
+@Repository("batching")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BatchingCustomerDao extends ForwardingCustomerDao {
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxSize;
+    private final DistributionSummary batchSizes;
+    private final Object lock = new Object();
+    private Batch open;
+
+    public BatchingCustomerDao(@Qualifier("bloom") CustomerDao delegate,
+                               @Value("${customer.batching.enabled:false}") boolean enabled,
+                               @Value("${customer.batching.window:2ms}") Duration window,
+                               @Value("${customer.batching.max-size:100}") int maxSize,
+                               MeterRegistry meterRegistry) {
+        super(delegate);
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxSize = maxSize;
+        this.batchSizes = DistributionSummary.builder("customer.batching.batch-size")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        if (!enabled) {
+            return delegate.selectCustomerById(id);
+        }
+        Batch batch;
+        CompletableFuture<Optional<Customer>> result;
+        boolean leader = false;
+        synchronized (lock) {
+            if (open == null) {
+                open = new Batch();
+                leader = true;
+            }
+            batch = open;
+            result = batch.lookups.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if (batch.lookups.size() >= maxSize) {
+                open = null;
+                batch.full.countDown();
+            }
+        }
+        if (leader) {
+            awaitBatch(batch);
+            dispatch(batch);
+        }
+        return await(result);
+    }
+
+    private void awaitBatch(Batch batch) {
+        try {
+            batch.full.await(windowNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // the others depend on this thread, dispatch now and leave the flag for the caller
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            if (open == batch) {
+                open = null;
+            }
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        // closed under the lock above, nothing is added anymore
+        Map<Long, CompletableFuture<Optional<Customer>>> lookups = batch.lookups;
+        batchSizes.record(lookups.size());
+        try {
+            Map<Long, Customer> found = new HashMap<>();
+            List<Customer> customers = lookups.size() == 1
+                    ? delegate.selectCustomerById(lookups.keySet().iterator().next()).stream().toList()
+                    : delegate.selectCustomersByIds(lookups.keySet());
+            customers.forEach(customer -> found.put(customer.getId(), customer));
+            lookups.forEach((id, result) -> result.complete(Optional.ofNullable(found.get(id))));
+        } catch (RuntimeException | Error e) {
+            lookups.values().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    private static Optional<Customer> await(CompletableFuture<Optional<Customer>> result) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    // the same id asked twice in one batch shares the row, every caller gets its own copy
+                    return result.get().map(Customer::new);
+                } catch (InterruptedException e) {
+                    // the batch completes within one query, giving up early would only waste the row
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw (Error) e.getCause();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Batch {
+
+        private final Map<Long, CompletableFuture<Optional<Customer>>> lookups = new LinkedHashMap<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+    }
+}
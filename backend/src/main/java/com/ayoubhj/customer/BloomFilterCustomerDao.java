@@ -0,0 +1,220 @@
+package com.ayoubhj.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers email existence checks from an in-process Bloom filter when it can.
+ * A negative from the filter is definite, so only possible positives reach
+ * the database.
+ * <p>
+ * Until the first build completes every check goes to the delegate. Emails are
+ * added after the write returned, and a rebuild registers its new filter
+ * before it starts streaming, so a row committed during a rebuild ends up in
+ * the new filter either way. Bloom filters can't forget: deleted and replaced
+ * emails stay in the filter as false positives until the next rebuild, which
+ * an import asks for. Rebuilds never overlap, see {@link SerialRebuild}.
+ */
+@Repository("bloom")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BloomFilterCustomerDao extends ForwardingCustomerDao {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BloomFilterCustomerDao.class);
+
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final SerialRebuild rebuilds = new SerialRebuild("email-filter-rebuild", this::build);
+    private final AtomicLong staleEmails = new AtomicLong();
+    private final Counter definiteNegatives;
+    private final Counter possiblePositives;
+    private volatile EmailBloomFilter filter;
+    private volatile EmailBloomFilter building;
+
+    public BloomFilterCustomerDao(@Qualifier("bulkhead") CustomerDao delegate,
+                                  @Value("${customer.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                                  @Value("${customer.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                                  MeterRegistry meterRegistry) {
+        super(delegate);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.definiteNegatives = Counter.builder("customer.email-filter.checks")
+                .tag("result", "negative")
+                .register(meterRegistry);
+        this.possiblePositives = Counter.builder("customer.email-filter.checks")
+                .tag("result", "maybe")
+                .register(meterRegistry);
+        Gauge.builder("customer.email-filter.size", this, dao -> dao.stats().sizeInBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("customer.email-filter.entries", this, dao -> dao.stats().approximateCount())
+                .register(meterRegistry);
+        Gauge.builder("customer.email-filter.expected-false-positive-rate", this, dao -> dao.stats().expectedFalsePositiveRate())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        EmailBloomFilter current = filter;
+        if (current != null && !current.mightContain(email)) {
+            definiteNegatives.increment();
+            return false;
+        }
+        possiblePositives.increment();
+        return delegate.existPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        EmailBloomFilter current = filter;
+        if (current == null) {
+            return delegate.selectExistingEmails(emails);
+        }
+        List<String> candidates = emails.stream().filter(current::mightContain).toList();
+        definiteNegatives.increment(emails.size() - candidates.size());
+        possiblePositives.increment(candidates.size());
+        return candidates.isEmpty() ? Set.of() : delegate.selectExistingEmails(candidates);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        boolean inserted = delegate.insertCustomer(customer);
+        if (inserted) {
+            put(customer.getEmail());
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        List<Customer> inserted = delegate.insertCustomers(customers);
+        inserted.forEach(customer -> put(customer.getEmail()));
+        return inserted;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return updated(update, delegate.updateCustomer(update));
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return updated(update, delegate.updateCustomer(update, versions));
+    }
+
+    private Optional<Customer> updated(CustomerUpdate update, Optional<Customer> updated) {
+        if (update.email() != null) {
+            updated.ifPresent(customer -> {
+                put(customer.getEmail());
+                staleEmails.incrementAndGet();
+            });
+        }
+        return updated;
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id) {
+        return deleted(delegate.deleteCustomerById(id));
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        return deleted(delegate.deleteCustomerById(id, versions));
+    }
+
+    private Optional<Customer> deleted(Optional<Customer> deleted) {
+        deleted.ifPresent(customer -> staleEmails.incrementAndGet());
+        return deleted;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuilds.request();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomersImported(CustomersImportedEvent event) {
+        rebuilds.request();
+    }
+
+    @PreDestroy
+    public void close() {
+        rebuilds.shutdown();
+    }
+
+    /**
+     * Streams every email into a fresh filter and swaps it in. Returns false
+     * if a rebuild was already running, that one runs again once it is done.
+     */
+    public boolean rebuild() {
+        return rebuilds.run();
+    }
+
+    private void build() {
+        try {
+            long start = System.nanoTime();
+            long staleBefore = staleEmails.get();
+            EmailBloomFilter next = newFilter();
+            building = next;
+            delegate.streamAllCustomers(customer -> next.put(customer.getEmail()));
+            filter = next;
+            staleEmails.addAndGet(-staleBefore);
+            LOGGER.info("email filter rebuilt with {} entries in {} ms",
+                    next.approximateCount(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            LOGGER.error("email filter rebuild failed", e);
+            throw e;
+        } finally {
+            building = null;
+        }
+    }
+
+    public EmailFilterStats stats() {
+        EmailBloomFilter current = filter;
+        if (current == null) {
+            return new EmailFilterStats(false, rebuilds.isRunning(), 0, 0, 0, falsePositiveRate, 0, staleEmails.get());
+        }
+        return new EmailFilterStats(
+                true,
+                rebuilds.isRunning(),
+                current.approximateCount(),
+                current.bitSize() / 8,
+                current.sliceCount(),
+                current.falsePositiveRate(),
+                current.expectedFalsePositiveRate(),
+                staleEmails.get()
+        );
+    }
+
+    EmailBloomFilter newFilter() {
+        return new EmailBloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    private void put(String email) {
+        // read before the filter: a rebuild swapping in between would otherwise leave the email in the old filter only
+        EmailBloomFilter next = building;
+        EmailBloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+        if (next != null && next != current) {
+            next.put(email);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.ayoubhj.customer;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs every call to the database DAO through the {@link DatabaseBulkhead},
+ * {@link #streamAllCustomers} in the pool kept for streams.
+ */
+@Repository("bulkhead")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BulkheadCustomerDao extends ForwardingCustomerDao {
+
+    private final DatabaseBulkhead bulkhead;
+
+    public BulkheadCustomerDao(@Qualifier("jdbc") CustomerDao delegate, DatabaseBulkhead bulkhead) {
+        super(delegate);
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return call(delegate::selectAllCustomers);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return call(() -> delegate.selectCustomers(afterId, limit));
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        bulkhead.stream(() -> {
+            delegate.streamAllCustomers(consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return call(() -> delegate.selectCustomerById(id));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return call(() -> delegate.selectCustomersByIds(ids));
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        return call(() -> delegate.searchCustomers(criteria));
+    }
+
+    @Override
+    public List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        return call(() -> delegate.fuzzySearchCustomers(query, threshold, limit));
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        return call(() -> delegate.insertCustomer(customer));
+    }
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        return call(() -> delegate.insertCustomers(customers));
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id) {
+        return call(() -> delegate.deleteCustomerById(id));
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        return call(() -> delegate.deleteCustomerById(id, versions));
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return call(() -> delegate.updateCustomer(update));
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return call(() -> delegate.updateCustomer(update, versions));
+    }
+
+    @Override
+    public long selectTableVersion() {
+        return call(delegate::selectTableVersion);
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        return call(() -> delegate.existPersonWithEmail(email));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return call(() -> delegate.selectExistingEmails(emails));
+    }
+
+    @Override
+    public boolean existPersonWithId(Long id) {
+        return call(() -> delegate.existPersonWithId(id));
+    }
+
+    private <T> T call(Supplier<T> call) {
+        return bulkhead.call(call);
+    }
+}
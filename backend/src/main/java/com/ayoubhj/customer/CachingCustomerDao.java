@@ -0,0 +1,334 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.exception.ServiceBusyException;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache in front of the database DAO for single customer lookups
+ * and existence checks. Caffeine bounds both caches by size and age and evicts
+ * with W-TinyLFU, so one-off lookups don't push out hot customers.
+ * <p>
+ * A miss puts the future of its load in the cache and runs the query on the
+ * calling thread, outside Caffeine's locks: a slow query doesn't hold up the
+ * other keys of its bin, nor pin a virtual thread's carrier. Concurrent misses
+ * on one key wait for that single load, so a hot customer costs one query
+ * however many requests ask for it at once. At most
+ * {@code customer.cache.max-waiters} callers wait on one load, the next ones
+ * get a 503.
+ * <p>
+ * Writes invalidate instead of repopulating. An invalidation drops a load
+ * still in flight, whose result then goes to its callers only, so a reader
+ * that fetched the row before the write can't leave a stale copy behind.
+ */
+@Repository("cached")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CachingCustomerDao extends ForwardingCustomerDao {
+
+    private final AsyncCache<Long, Customer> customersById;
+    private final AsyncCache<String, Boolean> emailExists;
+    private final Loads<Long, Customer> customerLoads;
+    private final Loads<String, Boolean> emailLoads;
+    private final int maxWaiters;
+
+    public CachingCustomerDao(@Qualifier("batching") CustomerDao delegate,
+                              @Value("${customer.cache.maximum-size:100000}") long maximumSize,
+                              @Value("${customer.cache.expire-after-write:10m}") Duration expireAfterWrite,
+                              @Value("${customer.cache.max-waiters:1000}") int maxWaiters,
+                              MeterRegistry meterRegistry) {
+        super(delegate);
+        this.maxWaiters = maxWaiters;
+        this.customersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        this.emailExists = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, customersById, "customer.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, emailExists, "customer.email-exists");
+        this.customerLoads = new Loads<>(customersById, "customer.by-id", meterRegistry);
+        this.emailLoads = new Loads<>(emailExists, "customer.email-exists", meterRegistry);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        // absent ids are not cached, the next insert would have to find and evict them
+        Customer customer = customerLoads.get(id, key -> delegate.selectCustomerById(key).map(Customer::new).orElse(null));
+        return Optional.ofNullable(customer).map(Customer::new);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        Map<Long, Customer> cached = customersById.synchronous().getAllPresent(ids);
+        List<Customer> customers = new ArrayList<>(ids.size());
+        cached.values().forEach(customer -> customers.add(new Customer(customer)));
+        List<Long> unknown = ids.stream().filter(id -> !cached.containsKey(id)).toList();
+        if (!unknown.isEmpty()) {
+            // misses are not put in the cache: a bulk put doesn't wait for a concurrent invalidation like a load does
+            customers.addAll(delegate.selectCustomersByIds(unknown));
+        }
+        return customers;
+    }
+
+    @Override
+    public boolean existPersonWithId(Long id) {
+        if (customersById.synchronous().getIfPresent(id) != null) {
+            return true;
+        }
+        return delegate.existPersonWithId(id);
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        return emailLoads.get(email, delegate::existPersonWithEmail);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        List<String> unknown = new ArrayList<>();
+        Map<String, Boolean> cached = emailExists.synchronous().getAllPresent(emails);
+        for (String email : emails) {
+            Boolean exists = cached.get(email);
+            if (exists == null) {
+                unknown.add(email);
+            } else if (exists) {
+                existing.add(email);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            existing.addAll(delegate.selectExistingEmails(unknown));
+        }
+        return existing;
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        try {
+            return delegate.insertCustomer(customer);
+        } finally {
+            invalidate(() -> emailExists.synchronous().invalidate(customer.getEmail()));
+        }
+    }
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        try {
+            return delegate.insertCustomers(customers);
+        } finally {
+            List<String> emails = customers.stream().map(Customer::getEmail).toList();
+            invalidate(() -> emailExists.synchronous().invalidateAll(emails));
+        }
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id) {
+        return deleted(id, delegate.deleteCustomerById(id));
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        return deleted(id, delegate.deleteCustomerById(id, versions));
+    }
+
+    private Optional<Customer> deleted(Long id, Optional<Customer> deleted) {
+        invalidate(() -> {
+            customersById.synchronous().invalidate(id);
+            deleted.ifPresent(customer -> emailExists.synchronous().invalidate(customer.getEmail()));
+        });
+        return deleted;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return update(update, () -> delegate.updateCustomer(update));
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return update(update, () -> delegate.updateCustomer(update, versions));
+    }
+
+    private Optional<Customer> update(CustomerUpdate update, Supplier<Optional<Customer>> write) {
+        Customer previous = customersById.synchronous().getIfPresent(update.id());
+        try {
+            return write.get();
+        } finally {
+            invalidate(() -> {
+                customersById.synchronous().invalidate(update.id());
+                if (update.email() != null) {
+                    emailExists.synchronous().invalidate(update.email());
+                    if (previous != null) {
+                        emailExists.synchronous().invalidate(previous.getEmail());
+                    } else {
+                        // the email being replaced is unknown, so any cached "taken" answer may be stale
+                        emailExists.synchronous().invalidateAll();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the invalidation now and, when the write is part of a transaction,
+     * once more after it ends: until the commit, a concurrent load still reads
+     * the old row and could put it back.
+     */
+    private static void invalidate(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomersImported(CustomersImportedEvent event) {
+        customersById.synchronous().invalidateAll();
+        emailExists.synchronous().invalidateAll();
+    }
+
+    /**
+     * Single-flight loads into one cache. The {@code customer.cache.loads}
+     * counter tells the loads that ran apart from the callers that joined one
+     * in flight, and from those turned away.
+     */
+    private final class Loads<K, V> {
+
+        private final AsyncCache<K, V> cache;
+        private final Counter leaders;
+        private final Counter followers;
+        private final Counter rejected;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Loads(AsyncCache<K, V> cache, String name, MeterRegistry meterRegistry) {
+            this.cache = cache;
+            this.leaders = loads(name, "leader", meterRegistry);
+            this.followers = loads(name, "coalesced", meterRegistry);
+            this.rejected = loads(name, "rejected", meterRegistry);
+            Gauge.builder("customer.cache.loads-in-flight", inFlight, AtomicInteger::get)
+                    .tag("cache", name)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * The value cached for {@code key}, loaded on the calling thread if
+         * there is none. A {@code null} value is handed out but not kept.
+         */
+        private V get(K key, Function<K, V> loader) {
+            Load<V> started = new Load<>();
+            CompletableFuture<V> cached = cache.get(key, (k, executor) -> started);
+            if (cached != started) {
+                return cached.isDone() ? await(cached) : follow(cached);
+            }
+            leaders.increment();
+            inFlight.incrementAndGet();
+            try {
+                V value = loader.apply(key);
+                started.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                started.fail(e);
+                throw e;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private V follow(CompletableFuture<V> cached) {
+            // only loads of this class are put in the cache
+            Load<?> load = (Load<?>) cached;
+            if (load.waiters.incrementAndGet() > maxWaiters) {
+                load.waiters.decrementAndGet();
+                rejected.increment();
+                throw new ServiceBusyException("too many concurrent lookups for the same customer, try again later");
+            }
+            followers.increment();
+            try {
+                return await(cached);
+            } finally {
+                load.waiters.decrementAndGet();
+            }
+        }
+    }
+
+    private static Counter loads(String cache, String result, MeterRegistry meterRegistry) {
+        return Counter.builder("customer.cache.loads")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static <V> V await(CompletableFuture<V> load) {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("interrupted while waiting for a customer lookup");
+        } catch (CancellationException e) {
+            if (load instanceof Load<?> failed && failed.failure != null) {
+                throw rethrow(failed.failure);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof RuntimeException e) {
+            return e;
+        }
+        throw (Error) failure;
+    }
+
+    /**
+     * A load in flight. A failed load is cancelled rather than failed, which
+     * Caffeine drops from the cache without logging it; the callers that
+     * waited for it get the failure itself.
+     */
+    private static final class Load<V> extends CompletableFuture<V> {
+
+        private final AtomicInteger waiters = new AtomicInteger();
+        private volatile Throwable failure;
+
+        private void fail(Throwable e) {
+            failure = e;
+            cancel(false);
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package com.ayoubhj.customer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory store that keeps customers in columns instead of objects: ids,
+ * versions and ages in primitive arrays, names and emails as length-prefixed UTF-8 in one
+ * off-heap arena. A row costs a few dozen bytes of heap however many customers
+ * there are, and the GC has nothing per row to trace. {@link Customer} objects
+ * are only built for what a call returns.
+ * <p>
+ * Ids are handed out in increasing order and rows are appended, so the id
+ * column stays sorted and lookups are binary searches. Emails are indexed by
+ * an open-addressing table of row numbers that compares against the arena
+ * bytes. Deleted rows and replaced strings are reclaimed by compacting once
+ * they make up half the arena. The arena is a single direct buffer, so names
+ * and emails are limited to 2 GB in total.
+ */
+@Repository("columnar")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ColumnarCustomerDataAccessService implements CustomerDao {
+
+    static final int STREAM_PAGE_SIZE = 1000;
+
+    private static final int INITIAL_ROWS = 1024;
+    private static final int INITIAL_ARENA_BYTES = 64 * 1024;
+    private static final int MAX_ARENA_BYTES = Integer.MAX_VALUE - 8;
+    private static final int NO_AGE = Integer.MIN_VALUE;
+    private static final int DELETED = -1;
+    private static final int EMPTY_SLOT = 0;
+    private static final int TOMBSTONE_SLOT = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TableVersion tableVersion = new TableVersion();
+
+    private long[] ids = new long[INITIAL_ROWS];
+    private long[] versions = new long[INITIAL_ROWS];
+    private int[] ages = new int[INITIAL_ROWS];
+    private int[] nameOffsets = new int[INITIAL_ROWS];
+    private int[] emailOffsets = new int[INITIAL_ROWS];
+    private int rows;
+    private int liveRows;
+    private long lastId;
+
+    private ByteBuffer arena = ByteBuffer.allocateDirect(INITIAL_ARENA_BYTES);
+    private int arenaGarbage;
+
+    // row + 1 per slot, so that 0 can mean empty
+    private int[] emailSlots = new int[INITIAL_ROWS * 2];
+    private int usedSlots;
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>(liveRows);
+            for (int row = 0; row < rows; row++) {
+                if (emailOffsets[row] != DELETED) {
+                    customers.add(materialize(row));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            int start = Arrays.binarySearch(ids, 0, rows, afterId);
+            start = start >= 0 ? start + 1 : -start - 1;
+            List<Customer> customers = new ArrayList<>(Math.min(limit, rows - start));
+            for (int row = start; row < rows && customers.size() < limit; row++) {
+                if (emailOffsets[row] != DELETED) {
+                    customers.add(materialize(row));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        // page through so that writers aren't blocked while the consumer runs
+        long afterId = 0;
+        List<Customer> page;
+        do {
+            page = selectCustomers(afterId, STREAM_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = findRow(id);
+            return row < 0 ? Optional.empty() : Optional.of(materialize(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>();
+            for (Long id : ids) {
+                int row = findRow(id);
+                if (row >= 0) {
+                    customers.add(materialize(row));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        int minAge = criteria.minAge() == null ? Integer.MIN_VALUE : criteria.minAge();
+        int maxAge = criteria.maxAge() == null ? Integer.MAX_VALUE : criteria.maxAge();
+        lock.readLock().lock();
+        try {
+            // the age column rules rows out before anything is decoded from the arena
+            List<Customer> matches = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                if (emailOffsets[row] == DELETED || ages[row] < minAge || ages[row] > maxAge) {
+                    continue;
+                }
+                Customer customer = materialize(row);
+                if (criteria.matches(customer)) {
+                    matches.add(customer);
+                }
+            }
+            matches.sort(criteria.comparator());
+            return matches.size() > criteria.limit() ? new ArrayList<>(matches.subList(0, criteria.limit())) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        Set<String> trigrams = Trigrams.of(query);
+        lock.readLock().lock();
+        try {
+            List<CustomerMatch> matches = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                if (emailOffsets[row] != DELETED) {
+                    CustomerMatch match = CustomerMatch.of(materialize(row), trigrams);
+                    if (match.similarity() >= threshold) {
+                        matches.add(match);
+                    }
+                }
+            }
+            matches.sort(CustomerMatch.RANKING);
+            return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            return append(customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        lock.writeLock().lock();
+        try {
+            List<Customer> inserted = new ArrayList<>();
+            for (Customer customer : customers) {
+                if (append(customer)) {
+                    inserted.add(customer);
+                }
+            }
+            return inserted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id) {
+        return delete(id, null);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        return delete(id, versions);
+    }
+
+    private Optional<Customer> delete(Long id, Collection<Long> expectedVersions) {
+        lock.writeLock().lock();
+        try {
+            int row = findRow(id);
+            if (row < 0 || (expectedVersions != null && !expectedVersions.contains(versions[row]))) {
+                return Optional.empty();
+            }
+            Customer customer = materialize(row);
+            removeFromEmailIndex(row);
+            arenaGarbage += stringSize(nameOffsets[row]) + stringSize(emailOffsets[row]);
+            emailOffsets[row] = DELETED;
+            liveRows--;
+            compactIfWasteful();
+            tableVersion.bump();
+            return Optional.of(customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return update(update, null);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return update(update, versions);
+    }
+
+    private Optional<Customer> update(CustomerUpdate update, Collection<Long> expectedVersions) {
+        lock.writeLock().lock();
+        try {
+            int row = findRow(update.id());
+            if (row < 0 || (expectedVersions != null && !expectedVersions.contains(versions[row]))) {
+                return Optional.empty();
+            }
+            Customer customer = materialize(row);
+            if (!update.changes(customer)) {
+                return Optional.empty();
+            }
+            String previousEmail = customer.getEmail();
+            update.applyTo(customer);
+
+            byte[] email = utf8(customer.getEmail());
+            boolean emailChanged = !customer.getEmail().equals(previousEmail);
+            if (emailChanged && findEmailSlot(email) >= 0) {
+                throw new DuplicateKeyException("email [%s] already exists".formatted(customer.getEmail()));
+            }
+            if (!customer.getName().equals(readString(nameOffsets[row]))) {
+                arenaGarbage += stringSize(nameOffsets[row]);
+                nameOffsets[row] = writeString(utf8(customer.getName()));
+            }
+            if (emailChanged) {
+                ensureEmailIndexCapacity();
+                removeFromEmailIndex(row);
+                arenaGarbage += stringSize(emailOffsets[row]);
+                emailOffsets[row] = writeString(email);
+                addToEmailIndex(row, email);
+            }
+            ages[row] = customer.getAge() == null ? NO_AGE : customer.getAge();
+            customer.setVersion(++versions[row]);
+            compactIfWasteful();
+            tableVersion.bump();
+            return Optional.of(customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long selectTableVersion() {
+        return tableVersion.get();
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        byte[] bytes = utf8(email);
+        lock.readLock().lock();
+        try {
+            return findEmailSlot(bytes) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        lock.readLock().lock();
+        try {
+            Set<String> existing = new HashSet<>();
+            for (String email : emails) {
+                if (findEmailSlot(utf8(email)) >= 0) {
+                    existing.add(email);
+                }
+            }
+            return existing;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existPersonWithId(Long id) {
+        lock.readLock().lock();
+        try {
+            return findRow(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Heap bytes held by the columns and the email index, without the arena.
+     */
+    public long heapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) (ids.length + versions.length) * Long.BYTES
+                    + (long) (ages.length + nameOffsets.length + emailOffsets.length + emailSlots.length) * Integer.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Off-heap bytes reserved for names and emails.
+     */
+    public long arenaBytes() {
+        lock.readLock().lock();
+        try {
+            return arena.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean append(Customer customer) {
+        byte[] email = utf8(customer.getEmail());
+        if (findEmailSlot(email) >= 0) {
+            return false;
+        }
+        ensureRowCapacity();
+        ensureEmailIndexCapacity();
+        int row = rows++;
+        long id = ++lastId;
+        ids[row] = id;
+        versions[row] = 1;
+        ages[row] = customer.getAge() == null ? NO_AGE : customer.getAge();
+        nameOffsets[row] = writeString(utf8(customer.getName()));
+        emailOffsets[row] = writeString(email);
+        addToEmailIndex(row, email);
+        liveRows++;
+        customer.setId(id);
+        customer.setVersion(1L);
+        tableVersion.bump();
+        return true;
+    }
+
+    private int findRow(long id) {
+        int row = Arrays.binarySearch(ids, 0, rows, id);
+        return row >= 0 && emailOffsets[row] != DELETED ? row : -1;
+    }
+
+    private Customer materialize(int row) {
+        int age = ages[row];
+        return new Customer(
+                ids[row],
+                readString(nameOffsets[row]),
+                readString(emailOffsets[row]),
+                age == NO_AGE ? null : age,
+                versions[row]
+        );
+    }
+
+    private void ensureRowCapacity() {
+        if (rows < ids.length) {
+            return;
+        }
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        emailOffsets = Arrays.copyOf(emailOffsets, capacity);
+    }
+
+    // strings --------------------------------------------------------------------------------------------------------
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private int writeString(byte[] bytes) {
+        int needed = Integer.BYTES + bytes.length;
+        if (arena.capacity() - arena.position() < needed) {
+            growArena(needed);
+        }
+        int offset = arena.position();
+        arena.putInt(bytes.length);
+        arena.put(bytes);
+        return offset;
+    }
+
+    private String readString(int offset) {
+        byte[] bytes = new byte[arena.getInt(offset)];
+        arena.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int stringSize(int offset) {
+        return Integer.BYTES + arena.getInt(offset);
+    }
+
+    private boolean stringEquals(int offset, byte[] bytes) {
+        if (arena.getInt(offset) != bytes.length) {
+            return false;
+        }
+        return arena.slice(offset + Integer.BYTES, bytes.length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    private void growArena(int needed) {
+        long required = (long) arena.position() + needed;
+        if (required > MAX_ARENA_BYTES) {
+            throw new IllegalStateException("customer arena is full");
+        }
+        int capacity = (int) Math.min(MAX_ARENA_BYTES, Math.max(required, (long) arena.capacity() * 2));
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        grown.put(arena.flip());
+        arena = grown;
+    }
+
+    private void compactIfWasteful() {
+        if (arenaGarbage < INITIAL_ARENA_BYTES || arenaGarbage < arena.position() / 2) {
+            return;
+        }
+        ByteBuffer compacted = ByteBuffer.allocateDirect(Math.max(INITIAL_ARENA_BYTES, (arena.position() - arenaGarbage) * 2));
+        ByteBuffer previous = arena;
+        arena = compacted;
+        int live = 0;
+        for (int row = 0; row < rows; row++) {
+            if (emailOffsets[row] == DELETED) {
+                continue;
+            }
+            ids[live] = ids[row];
+            versions[live] = versions[row];
+            ages[live] = ages[row];
+            nameOffsets[live] = copyString(previous, nameOffsets[row]);
+            emailOffsets[live] = copyString(previous, emailOffsets[row]);
+            live++;
+        }
+        rows = live;
+        arenaGarbage = 0;
+        rebuildEmailIndex(emailSlots.length);
+    }
+
+    private int copyString(ByteBuffer from, int offset) {
+        int length = Integer.BYTES + from.getInt(offset);
+        int copied = arena.position();
+        arena.put(from.slice(offset, length));
+        return copied;
+    }
+
+    // email index ----------------------------------------------------------------------------------------------------
+
+    private static int hash(byte[] bytes) {
+        int hash = Arrays.hashCode(bytes);
+        // murmur3 finalizer, linear probing needs well spread low bits
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private int findEmailSlot(byte[] email) {
+        int mask = emailSlots.length - 1;
+        for (int slot = hash(email) & mask; ; slot = (slot + 1) & mask) {
+            int entry = emailSlots[slot];
+            if (entry == EMPTY_SLOT) {
+                return -1;
+            }
+            if (entry != TOMBSTONE_SLOT && stringEquals(emailOffsets[entry - 1], email)) {
+                return slot;
+            }
+        }
+    }
+
+    private void ensureEmailIndexCapacity() {
+        // keep the load factor, tombstones included, at or below one half
+        if ((usedSlots + 1) * 2 > emailSlots.length) {
+            rebuildEmailIndex((liveRows + 1) * 4 > emailSlots.length ? emailSlots.length * 2 : emailSlots.length);
+        }
+    }
+
+    private void addToEmailIndex(int row, byte[] email) {
+        int mask = emailSlots.length - 1;
+        int slot = hash(email) & mask;
+        while (emailSlots[slot] != EMPTY_SLOT && emailSlots[slot] != TOMBSTONE_SLOT) {
+            slot = (slot + 1) & mask;
+        }
+        if (emailSlots[slot] == EMPTY_SLOT) {
+            usedSlots++;
+        }
+        emailSlots[slot] = row + 1;
+    }
+
+    private void removeFromEmailIndex(int row) {
+        int slot = findEmailSlot(utf8(readString(emailOffsets[row])));
+        emailSlots[slot] = TOMBSTONE_SLOT;
+    }
+
+    private void rebuildEmailIndex(int capacity) {
+        emailSlots = new int[capacity];
+        usedSlots = 0;
+        int mask = capacity - 1;
+        for (int row = 0; row < rows; row++) {
+            if (emailOffsets[row] == DELETED) {
+                continue;
+            }
+            byte[] email = utf8(readString(emailOffsets[row]));
+            int slot = hash(email) & mask;
+            while (emailSlots[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            emailSlots[slot] = row + 1;
+            usedSlots++;
+        }
+    }
+}
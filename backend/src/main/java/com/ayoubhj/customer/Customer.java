@@ -1,6 +1,9 @@
 package com.ayoubhj.customer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Generated;
+import org.hibernate.annotations.GenerationTime;
 
 
 @Entity
@@ -36,6 +39,14 @@ public class Customer{
     )
     private String email;
     private Integer age;
+    // kept by the triggers of V5__Add_Customer_Versions.sql, or by the in-memory and log stores themselves
+    @JsonIgnore
+    @Generated(GenerationTime.ALWAYS)
+    @Column(
+            insertable = false,
+            updatable = false
+    )
+    private Long version;
 
     public Customer() {
     }
@@ -46,6 +57,19 @@ public class Customer{
         this.age = age;
     }
 
+    public Customer(Long id, String name, String email, Integer age, Long version) {
+        this(id, name, email, age);
+        this.version = version;
+    }
+
+    /**
+     * A detached copy, for the stores and caches that must not hand out the
+     * instance they keep.
+     */
+    public Customer(Customer customer) {
+        this(customer.id, customer.name, customer.email, customer.age, customer.version);
+    }
+
     public Customer( String name, String email, Integer age) {
         this.name = name;
         this.email = email;
@@ -86,5 +110,13 @@ public class Customer{
         this.age = age;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
 
 }
@@ -0,0 +1,167 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.exception.RequestValidationException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Type-ahead over customer names and emails, answered from a
+ * {@link CustomerPrefixIndex} without touching the database.
+ * <p>
+ * The index is loaded from the table once the application is ready and then
+ * follows the {@link CustomerChangedEvent}s of {@link CustomerService}. A
+ * rebuild loads into a fresh index while changes keep going to both, then
+ * swaps it in. Until the first load completes, completions come from the
+ * changes seen so far only. Imports bypass the events and ask for a rebuild,
+ * rebuilds never overlap, see {@link SerialRebuild}. Compactions run on the
+ * rebuild thread too.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CustomerAutocomplete {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerAutocomplete.class);
+
+    static final int DEFAULT_LIMIT = 10;
+    static final int MAX_LIMIT = 100;
+
+    private final CustomerDao customerDao;
+    private final SerialRebuild rebuilds = new SerialRebuild("autocomplete-rebuild", this::build);
+    private final Timer rebuildTimer;
+    private final Timer compactionTimer;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private volatile CustomerPrefixIndex index = new CustomerPrefixIndex();
+    private volatile CustomerPrefixIndex building;
+    private volatile boolean ready;
+    private volatile long lastRebuildMillis;
+    private volatile long lastCompactionMillis;
+
+    public CustomerAutocomplete(@Qualifier("bulkhead") CustomerDao customerDao, MeterRegistry meterRegistry) {
+        this.customerDao = customerDao;
+        this.rebuildTimer = Timer.builder("customer.autocomplete.rebuild").register(meterRegistry);
+        this.compactionTimer = Timer.builder("customer.autocomplete.compaction").register(meterRegistry);
+        Gauge.builder("customer.autocomplete.size", this, autocomplete -> autocomplete.index.sizeInBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("customer.autocomplete.customers", this, autocomplete -> autocomplete.index.customerCount())
+                .register(meterRegistry);
+    }
+
+    public List<Customer> complete(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new RequestValidationException("q must not be blank");
+        }
+        int size = limit == null ? DEFAULT_LIMIT : limit;
+        if (size < 1 || size > MAX_LIMIT) {
+            throw new RequestValidationException("limit must be between 1 and %s".formatted(MAX_LIMIT));
+        }
+        return index.complete(query.strip(), size);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuilds.request();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomersImported(CustomersImportedEvent event) {
+        rebuilds.request();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        // read before the index, so a rebuild swapping in between can't miss the change
+        CustomerPrefixIndex next = building;
+        CustomerPrefixIndex current = index;
+        apply(current, event);
+        if (next != null && next != current) {
+            apply(next, event);
+        }
+        if (current.needsCompaction() && compactionScheduled.compareAndSet(false, true)) {
+            rebuilds.execute(this::compact);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        rebuilds.shutdown();
+    }
+
+    /**
+     * Loads every customer into a fresh index and swaps it in. Returns false
+     * if a rebuild was already running, that one runs again once it is done.
+     */
+    public boolean rebuild() {
+        return rebuilds.run();
+    }
+
+    private void build() {
+        try {
+            long start = System.nanoTime();
+            CustomerPrefixIndex next = new CustomerPrefixIndex();
+            next.startLoading();
+            building = next;
+            customerDao.streamAllCustomers(next::load);
+            next.finishLoading();
+            index = next;
+            ready = true;
+            long elapsed = System.nanoTime() - start;
+            rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            lastRebuildMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            LOGGER.info("autocomplete index rebuilt with {} customers, about {} KB, in {} ms",
+                    next.customerCount(), next.sizeInBytes() / 1024, lastRebuildMillis);
+        } catch (RuntimeException e) {
+            LOGGER.error("autocomplete index rebuild failed", e);
+            throw e;
+        } finally {
+            building = null;
+        }
+    }
+
+    public AutocompleteStats stats() {
+        CustomerPrefixIndex current = index;
+        return new AutocompleteStats(
+                ready,
+                rebuilds.isRunning(),
+                current.customerCount(),
+                current.sortedTermCount(),
+                current.recentTermCount(),
+                current.sizeInBytes(),
+                lastRebuildMillis,
+                lastCompactionMillis
+        );
+    }
+
+    private void compact() {
+        compactionScheduled.set(false);
+        CustomerPrefixIndex current = index;
+        long start = System.nanoTime();
+        if (current.needsCompaction() && current.compact()) {
+            long elapsed = System.nanoTime() - start;
+            compactionTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            lastCompactionMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        }
+    }
+
+    private static void apply(CustomerPrefixIndex index, CustomerChangedEvent event) {
+        if (event.isDeleted()) {
+            index.remove(event.id(), event.version());
+        } else {
+            index.put(event.customer());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ayoubhj.customer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record CustomerBulkRegistrationResult(
+        int index,
+        String email,
+        Status status
+) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE_EMAIL,
+        INVALID
+    }
+
+    /**
+     * One result per request, in request order. A {@code null} request has no email.
+     */
+    static List<CustomerBulkRegistrationResult> of(List<CustomerRegistrationRequest> requests, Status[] statuses) {
+        List<CustomerBulkRegistrationResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            results.add(new CustomerBulkRegistrationResult(i, request == null ? null : request.email(), statuses[i]));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,27 @@
+package com.ayoubhj.customer;
+
+/**
+ * Published by {@link CustomerService} once a write went through, so
+ * in-process views of the data can follow it. {@code customer} is the row as
+ * written, {@code null} when it was deleted. {@code version} is the version
+ * written, or the one the row had when it was deleted; listeners can tell
+ * from it an event that arrives after a newer one for the same id.
+ */
+public record CustomerChangedEvent(
+        Long id,
+        Customer customer,
+        Long version
+) {
+
+    static CustomerChangedEvent saved(Customer customer) {
+        return new CustomerChangedEvent(customer.getId(), customer, customer.getVersion());
+    }
+
+    static CustomerChangedEvent deleted(Customer customer) {
+        return new CustomerChangedEvent(customer.getId(), null, customer.getVersion());
+    }
+
+    public boolean isDeleted() {
+        return customer == null;
+    }
+}
@@ -1,30 +1,125 @@
 package com.ayoubhj.customer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("api/v1/customers")
 public class CustomerController {
 
 
     private final  CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final CustomerCsvImportService customerCsvImportService;
+    private final CustomerAutocomplete customerAutocomplete;
+    private final CustomerResponseCache customerResponseCache;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              ObjectMapper objectMapper,
+                              CustomerCsvImportService customerCsvImportService,
+                              CustomerAutocomplete customerAutocomplete,
+                              CustomerResponseCache customerResponseCache) {
         this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.customerCsvImportService = customerCsvImportService;
+        this.customerAutocomplete = customerAutocomplete;
+        this.customerResponseCache = customerResponseCache;
     }
 
+    /**
+     * The whole table as one JSON array, kept for the clients written against
+     * it. It is rendered once per table version and served compressed from the
+     * {@link CustomerResponseCache}, and streamed once it outgrows a cache
+     * entry, so its cost doesn't grow per request. Clients that want bounded
+     * pages use {@code /page} with {@code after} and {@code limit}.
+     */
     @GetMapping
-    public ResponseEntity<List<Customer>> getAllCustomers(){
-        return new ResponseEntity<List<Customer>>(customerService.getAllCustomers(), HttpStatus.OK);
+    public ResponseEntity<?> getAllCustomers(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        String etag = customerService.getCustomersETag();
+        String match = ETags.matchIfNoneMatch(ifNoneMatch, etag);
+        if(match != null){
+            return new ResponseEntity<>(cachedHeaders(match), HttpStatus.NOT_MODIFIED);
+        }
+        if(customerResponseCache.isOversized("all")){
+            return streamAllCustomers(etag, customerResponseCache.negotiate(acceptEncoding));
+        }
+        return cachedResponse(customerResponseCache.get("all", etag, customerService::getAllCustomers, acceptEncoding));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<byte[]> getCustomers(@RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        String etag = customerService.getCustomersETag();
+        String match = ETags.matchIfNoneMatch(ifNoneMatch, etag);
+        if(match != null){
+            return new ResponseEntity<>(cachedHeaders(match), HttpStatus.NOT_MODIFIED);
+        }
+        String key = "page?after=%s&limit=%s".formatted(after, limit);
+        return cachedResponse(customerResponseCache.get(key, etag, () -> customerService.getCustomers(after, limit), acceptEncoding));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCustomers(){
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                writeAllCustomers(generator, true);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<Customer>> searchCustomers(@RequestParam(required = false) Integer minAge,
+                                                          @RequestParam(required = false) Integer maxAge,
+                                                          @RequestParam(required = false) String name,
+                                                          @RequestParam(required = false) String emailDomain,
+                                                          @RequestParam(required = false) String sort,
+                                                          @RequestParam(required = false) Integer limit){
+        return new ResponseEntity<List<Customer>>(
+                customerService.searchCustomers(minAge, maxAge, name, emailDomain, sort, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("/search/fuzzy")
+    public ResponseEntity<List<CustomerMatch>> fuzzySearchCustomers(@RequestParam String q,
+                                                                    @RequestParam(required = false) Integer limit){
+        return new ResponseEntity<List<CustomerMatch>>(customerService.fuzzySearchCustomers(q, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<Customer>> autocomplete(@RequestParam String q,
+                                                       @RequestParam(required = false) Integer limit){
+        return new ResponseEntity<List<Customer>>(customerAutocomplete.complete(q, limit), HttpStatus.OK);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Customer> getCustomerById(@PathVariable Long id){
-        return new ResponseEntity<Customer>(customerService.getCustomerById(id), HttpStatus.OK);
+    public ResponseEntity<Customer> getCustomerById(@PathVariable Long id,
+                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        // tag and body come from the same read, a cached customer goes out with the version it was cached with
+        Customer customer = customerService.getCustomerById(id);
+        String etag = ETags.of(customer);
+        if(ETags.matchesIfNoneMatch(ifNoneMatch, etag)){
+            return new ResponseEntity<>(eTagHeader(etag), HttpStatus.NOT_MODIFIED);
+        }
+        return new ResponseEntity<Customer>(customer, eTagHeader(etag), HttpStatus.OK);
     }
 
     @PostMapping
@@ -33,15 +128,90 @@ public class CustomerController {
         return new ResponseEntity<>(HttpStatus.CREATED);
     }
 
+    @PostMapping("/lookup")
+    public ResponseEntity<CustomerLookupResult> lookupCustomers(@RequestBody List<Long> ids){
+        return new ResponseEntity<CustomerLookupResult>(customerService.lookupCustomers(ids), HttpStatus.OK);
+    }
+
+    @PostMapping("/bulk")
+    public ResponseEntity<List<CustomerBulkRegistrationResult>> createCustomers(@RequestBody List<CustomerRegistrationRequest> customers){
+        return new ResponseEntity<List<CustomerBulkRegistrationResult>>(customerService.insertCustomers(customers), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<CustomerImportResult> importCustomers(InputStream csv){
+        return new ResponseEntity<CustomerImportResult>(customerCsvImportService.importCustomers(csv), HttpStatus.OK);
+    }
+
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteCustomer(@PathVariable Long id){
-        customerService.deleteCustomer(id);
+    public ResponseEntity<?> deleteCustomer(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        customerService.deleteCustomer(id, ifMatch);
         return new ResponseEntity<>(HttpStatus.ACCEPTED);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateCustomer(@PathVariable Long id,@RequestBody UpdateRequest updateRequest){
-        customerService.updateCustomer(id,updateRequest);
-        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    public ResponseEntity<?> updateCustomer(@PathVariable Long id,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                            @RequestBody UpdateRequest updateRequest){
+        Customer updated = customerService.updateCustomer(id, updateRequest, ifMatch);
+        return new ResponseEntity<>(eTagHeader(ETags.of(updated)), HttpStatus.ACCEPTED);
+    }
+
+    private static ResponseEntity<byte[]> cachedResponse(CustomerResponseCache.Encoded response){
+        return new ResponseEntity<byte[]>(response.body(), encodedHeaders(response.etag(), response.coding()), HttpStatus.OK);
+    }
+
+    /**
+     * Writes the full list as it is read, for lists too large to cache.
+     */
+    private ResponseEntity<StreamingResponseBody> streamAllCustomers(String etag, CustomerResponseCache.Coding coding){
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory()
+                    .createGenerator(customerResponseCache.compressing(outputStream, coding))) {
+                generator.writeStartArray();
+                writeAllCustomers(generator, false);
+                generator.writeEndArray();
+            }
+        };
+        return new ResponseEntity<StreamingResponseBody>(body, encodedHeaders(ETags.of(etag, coding), coding), HttpStatus.OK);
+    }
+
+    private void writeAllCustomers(JsonGenerator generator, boolean newlineDelimited){
+        // writeObject flushes after every customer, which would end a compressed block or a chunk each time
+        generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        customerService.exportCustomers(customer -> {
+            try {
+                generator.writeObject(customer);
+                if(newlineDelimited){
+                    generator.writeRaw('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static HttpHeaders encodedHeaders(String etag, CustomerResponseCache.Coding coding){
+        HttpHeaders headers = cachedHeaders(etag);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if(coding != CustomerResponseCache.Coding.IDENTITY){
+            headers.set(HttpHeaders.CONTENT_ENCODING, coding.token());
+        }
+        return headers;
+    }
+
+    private static HttpHeaders cachedHeaders(String etag){
+        HttpHeaders headers = eTagHeader(etag);
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        return headers;
+    }
+
+    private static HttpHeaders eTagHeader(String etag){
+        HttpHeaders headers = new HttpHeaders();
+        if(etag != null){
+            headers.setETag(etag);
+        }
+        return headers;
     }
 }
@@ -0,0 +1,126 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.exception.RequestValidationException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+
+/**
+ * Loads large CSV files (header line {@code name,email,age}) with PostgreSQL COPY.
+ * The request body is pushed to the server in fixed size chunks, so memory stays
+ * bounded and a slow database naturally slows down the upload. Rows land in a
+ * temporary staging table first and are merged into {@code customer} with a single
+ * statement that skips emails already taken.
+ * <p>
+ * An import holds its connection for the whole upload, so it takes a stream
+ * permit of the {@link DatabaseBulkhead} before its transaction gets one.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CustomerCsvImportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerCsvImportService.class);
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final long PROGRESS_INTERVAL_ROWS = 100_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabaseBulkhead bulkhead;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CustomerCsvImportService(JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    DatabaseBulkhead bulkhead,
+                                    ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.bulkhead = bulkhead;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public CustomerImportResult importCustomers(InputStream csv) {
+        return bulkhead.stream(() -> transactionTemplate.execute(status -> load(csv)));
+    }
+
+    private CustomerImportResult load(InputStream csv) {
+        long start = System.nanoTime();
+
+        jdbcTemplate.execute("""
+                CREATE TEMP TABLE customer_import (name TEXT, email TEXT, age INT) ON COMMIT DROP
+                """);
+
+        long rowsRead;
+        try {
+            rowsRead = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> copy(connection.unwrap(PGConnection.class), csv, start));
+        } catch (DataIntegrityViolationException e) {
+            throw new RequestValidationException("invalid csv: " + e.getMostSpecificCause().getMessage());
+        }
+
+        var sql = """
+                   INSERT INTO customer (name,email,age)
+                   SELECT DISTINCT ON (email) name,email,age FROM customer_import
+                   WHERE name IS NOT NULL AND email IS NOT NULL AND age IS NOT NULL
+                   ORDER BY email
+                   ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                   """;
+        long rowsInserted = jdbcTemplate.update(sql);
+
+        if (rowsInserted > 0) {
+            eventPublisher.publishEvent(new CustomersImportedEvent(rowsInserted));
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        LOGGER.info("customer import finished: {} rows read, {} inserted in {} ms", rowsRead, rowsInserted, elapsedMillis);
+
+        return new CustomerImportResult(rowsRead, rowsInserted, rowsRead - rowsInserted, elapsedMillis);
+    }
+
+    private long copy(PGConnection connection, InputStream csv, long start) throws SQLException {
+        CopyIn copyIn = connection.getCopyAPI()
+                .copyIn("COPY customer_import (name,email,age) FROM STDIN WITH (FORMAT csv, HEADER true)");
+        try {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            long lines = 0;
+            long nextReport = PROGRESS_INTERVAL_ROWS;
+            int read;
+            while ((read = csv.read(buffer)) != -1) {
+                copyIn.writeToCopy(buffer, 0, read);
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                if (lines >= nextReport) {
+                    logProgress(lines, start);
+                    nextReport = lines + PROGRESS_INTERVAL_ROWS;
+                }
+            }
+            return copyIn.endCopy();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void logProgress(long rows, long start) {
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+        LOGGER.info("customer import: {} rows copied ({} rows/sec)", rows, Math.round(rows / seconds));
+    }
+}
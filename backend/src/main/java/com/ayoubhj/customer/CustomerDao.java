@@ -1,23 +1,67 @@
 package com.ayoubhj.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 
 public interface CustomerDao {
 
     List<Customer> selectAllCustomers();
 
+    List<Customer> selectCustomers(Long afterId, int limit);
+
+    void streamAllCustomers(Consumer<Customer> consumer);
+
     Optional<Customer> selectCustomerById(Long id);
 
-    void insertCustomer(Customer customer);
+    List<Customer> selectCustomersByIds(Collection<Long> ids);
+
+    List<Customer> searchCustomers(CustomerSearchCriteria criteria);
+
+    /**
+     * Customers whose name or email contains something close to {@code query},
+     * best match first.
+     *
+     * @param threshold lowest word similarity, between 0 and 1, that counts as a match
+     */
+    List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit);
+
+    boolean insertCustomer(Customer customer);
 
-    void deleteCustomerById(Long id);
+    List<Customer> insertCustomers(List<Customer> customers);
 
-    void updateCustomer(Customer customer);
+    Optional<Customer> deleteCustomerById(Long id);
+
+    /**
+     * Deletes the customer only if its version is one of {@code versions},
+     * checked atomically with the delete.
+     */
+    Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions);
+
+    /**
+     * Fails with a {@link org.springframework.dao.DuplicateKeyException} if the new email is taken.
+     */
+    Optional<Customer> updateCustomer(CustomerUpdate update);
+
+    /**
+     * Same as {@link #updateCustomer(CustomerUpdate)}, only if the customer's
+     * version is one of {@code versions}, checked atomically with the update.
+     */
+    Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions);
+
+    /**
+     * A number that changes with every write that changes a customer, for the
+     * ETag of the whole collection. Only ever compared for equality.
+     */
+    long selectTableVersion();
 
     boolean existPersonWithEmail(String email);
 
+    Set<String> selectExistingEmails(Collection<String> emails);
+
     boolean existPersonWithId(Long id);
 
 }
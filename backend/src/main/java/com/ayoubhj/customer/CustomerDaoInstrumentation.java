@@ -0,0 +1,36 @@
+package com.ayoubhj.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Wraps the storage DAOs listed in {@code customer.dao.instrumented} in an
+ * {@link InstrumentedCustomerDao}. The caching and filtering decorators are
+ * left out on purpose: they listen for events on their own bean and their
+ * effect already shows in how often the storage DAO is called.
+ */
+@Component
+public class CustomerDaoInstrumentation implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Set<String> instrumented;
+
+    public CustomerDaoInstrumentation(ObjectProvider<MeterRegistry> meterRegistry,
+                                      @Value("${customer.dao.instrumented:jdbc,jpa,list,columnar,log}") Set<String> instrumented) {
+        this.meterRegistry = meterRegistry;
+        this.instrumented = instrumented;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof CustomerDao customerDao && instrumented.contains(beanName)) {
+            return new InstrumentedCustomerDao(beanName, customerDao, meterRegistry.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,9 @@
+package com.ayoubhj.customer;
+
+public record CustomerImportResult(
+        long rowsRead,
+        long rowsInserted,
+        long rowsSkipped,
+        long elapsedMillis
+) {
+}
@@ -1,14 +1,28 @@
 package com.ayoubhj.customer;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 
 @Repository("jpa")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerJPADataAccessService implements CustomerDao {
 
+    static final int INSERT_BATCH_SIZE = 1000;
+
     private final CustomerRepository customerRepository;
 
     public CustomerJPADataAccessService(CustomerRepository customerRepository) {
@@ -20,24 +34,127 @@ public class CustomerJPADataAccessService implements CustomerDao {
         return customerRepository.findAll();
     }
 
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return customerRepository.findByIdGreaterThan(
+                afterId,
+                PageRequest.of(0, limit, Sort.by("id"))
+        );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        try (Stream<Customer> customers = customerRepository.streamAllCustomers()) {
+            customers.forEach(consumer);
+        }
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
         return customerRepository.findById(id);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return customerRepository.findAllById(ids);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        Sort.Direction direction = criteria.descending() ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, criteria.sortBy().property());
+        if (criteria.sortBy() != CustomerSearchCriteria.SortBy.ID) {
+            sort = sort.and(Sort.by(direction, "id"));
+        }
+        return customerRepository.findAll(CustomerSpecifications.of(criteria), sort, criteria.limit());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        customerRepository.setWordSimilarityThreshold(String.valueOf(threshold));
+        return customerRepository.fuzzySearch(query, limit).stream()
+                .map(row -> new CustomerMatch(customer(row), ((Number) row[5]).doubleValue()))
+                .toList();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        try {
+            customerRepository.save(customer);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            if (EmailConflicts.isEmailConflict(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        List<Customer> inserted = new ArrayList<>(customers.size());
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            List<Customer> chunk = customers.subList(from, Math.min(from + INSERT_BATCH_SIZE, customers.size()));
+            customerRepository.insertSkippingTakenEmails(
+                            chunk.stream().map(Customer::getName).toArray(String[]::new),
+                            chunk.stream().map(Customer::getEmail).toArray(String[]::new),
+                            chunk.stream().map(Customer::getAge).toArray(Integer[]::new))
+                    .forEach(row -> inserted.add(customer(row)));
+        }
+        return inserted;
+    }
+
+    @Override
+    @Transactional
+    public Optional<Customer> deleteCustomerById(Long id){
+        return customerRepository.deleteReturning(id).stream()
+                .findFirst()
+                .map(CustomerJPADataAccessService::customer);
     }
 
     @Override
-    public void deleteCustomerById(Long id){
-        customerRepository.deleteById(id);
+    @Transactional
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions){
+        // the version check is part of the DELETE, so it can't change in between
+        return customerRepository.deleteReturning(id, versions.toArray(Long[]::new)).stream()
+                .findFirst()
+                .map(CustomerJPADataAccessService::customer);
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customerRepository.save(customer);
+    @Transactional
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return update(update, () -> customerRepository.updateReturning(
+                update.id(), update.name(), update.email(), update.age()));
+    }
+
+    @Override
+    @Transactional
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        // the version check is part of the UPDATE, so it can't change in between
+        return update(update, () -> customerRepository.updateReturning(
+                update.id(), update.name(), update.email(), update.age(), versions.toArray(Long[]::new)));
+    }
+
+    private Optional<Customer> update(CustomerUpdate update, Supplier<List<Object[]>> statement) {
+        try {
+            return statement.get().stream()
+                    .findFirst()
+                    .map(CustomerJPADataAccessService::customer);
+        } catch (DataIntegrityViolationException e) {
+            throw EmailConflicts.translate(e, update.email());
+        }
+    }
+
+    @Override
+    public long selectTableVersion() {
+        return customerRepository.selectTableVersion();
     }
 
     @Override
@@ -45,9 +162,27 @@ public class CustomerJPADataAccessService implements CustomerDao {
         return customerRepository.existsCustomerByEmail(email);
     }
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return customerRepository.findExistingEmails(emails);
+    }
+
     @Override
     public boolean existPersonWithId(Long id) {
         return customerRepository.existsCustomerById(id);
     }
 
+    // id, name, email, age, version as the native queries select them
+    private static Customer customer(Object[] row) {
+        return new Customer(
+                ((Number) row[0]).longValue(),
+                (String) row[1],
+                (String) row[2],
+                ((Number) row[3]).intValue(),
+                ((Number) row[4]).longValue()
+        );
+    }
 }
@@ -1,14 +1,31 @@
 package com.ayoubhj.customer;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
-
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jdbc")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerJdbcDataAccessService implements CustomerDao{
 
+    static final int STREAM_FETCH_SIZE = 1000;
+    static final int INSERT_BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
 
@@ -20,7 +37,7 @@ public class CustomerJdbcDataAccessService implements CustomerDao{
     @Override
     public List<Customer> selectAllCustomers() {
         var sql = """
-                   SELECT id,name,email,age FROM customer;  
+                   SELECT id,name,email,age,version FROM customer;  
                    """;
 
         List<Customer> customers = jdbcTemplate.query(sql,customerRowMapper);
@@ -28,10 +45,45 @@ public class CustomerJdbcDataAccessService implements CustomerDao{
         return customers ;
     }
 
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        var sql = """
+                   SELECT id,name,email,age,version FROM customer
+                   WHERE id > ?
+                   ORDER BY id
+                   LIMIT ?
+                   """;
+
+        return jdbcTemplate.query(sql,customerRowMapper,afterId,limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        var sql = """
+                   SELECT id,name,email,age,version FROM customer ORDER BY id
+                   """;
+
+        // pgjdbc only uses a server-side cursor when auto-commit is off and a fetch size is set,
+        // otherwise the whole result set is buffered in the driver before the first row is handed out
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            sql,
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY
+                    );
+                    statement.setFetchSize(STREAM_FETCH_SIZE);
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(customerRowMapper.mapRow(rs, rs.getRow()))
+        );
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
         var sql = """
-                   SELECT id,name,email,age FROM customer where id = ?;  
+                   SELECT id,name,email,age,version FROM customer where id = ?;  
                    """;
 
         Optional<Customer> customer = jdbcTemplate.query(sql,customerRowMapper,id)
@@ -41,69 +93,222 @@ public class CustomerJdbcDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        var sql = """
+                   SELECT id,name,email,age,version FROM customer where id = ANY(?)
+                   """;
+
+        return jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setArray(1, connection.createArrayOf("bigint", ids.toArray(Long[]::new)));
+                    return statement;
+                },
+                customerRowMapper
+        );
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        CustomerSearchSql search = CustomerSearchSql.of(criteria, index -> "?");
+        return jdbcTemplate.query(search.sql(), customerRowMapper, search.parameters().toArray());
+    }
+
+    @Override
+    public List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        var sql = """
+                   SELECT id,name,email,age,version,
+                          greatest(word_similarity(?, name), word_similarity(?, email)) AS similarity
+                   FROM customer
+                   WHERE ? <% name OR ? <% email
+                   ORDER BY similarity DESC, id
+                   LIMIT ?
+                   """;
+
+        // "<%" reads the threshold from the session, so both statements have to run on the same connection, in one
+        // transaction: a transaction-local setting doesn't stay behind on the pooled connection
+        return jdbcTemplate.execute((ConnectionCallback<List<CustomerMatch>>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT set_config('pg_trgm.word_similarity_threshold', ?, true)")) {
+                    statement.setString(1, String.valueOf(threshold));
+                    statement.execute();
+                }
+                List<CustomerMatch> matches = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (int i = 1; i <= 4; i++) {
+                        statement.setString(i, query);
+                    }
+                    statement.setInt(5, limit);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            matches.add(new CustomerMatch(customerRowMapper.mapRow(rs, matches.size()), rs.getDouble("similarity")));
+                        }
+                    }
+                }
+                if (autoCommit) {
+                    connection.commit();
+                }
+                return matches;
+            } catch (SQLException | RuntimeException e) {
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
          var sql = """
-                   INSERT INTO customer (name,email,age) VALUES (?,?,?) 
+                   INSERT INTO customer (name,email,age) VALUES (?,?,?)
+                   ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                   RETURNING id,version
                    """;
-         int update =
-                 jdbcTemplate.update(sql,
+         Optional<Customer> inserted =
+                 jdbcTemplate.query(sql,
+                         (rs, rowNum) -> new Customer(rs.getLong("id"), null, null, null, rs.getLong("version")),
                          customer.getName(),
                          customer.getEmail(),
                          customer.getAge()
-                 );
-        System.out.println("jdbcTemplate.update from insert method = " + update);
+                 ).stream().findFirst();
+
+         inserted.ifPresent(row -> {
+             customer.setId(row.getId());
+             customer.setVersion(row.getVersion());
+         });
+         return inserted.isPresent();
+    }
+
+    @Override
+    @Transactional
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        // one multi-row INSERT per chunk: the columns travel as three arrays and unnest() turns them back
+        // into rows. RETURNING tells exactly which rows went in, a concurrent registration of the same
+        // email is skipped by ON CONFLICT instead of failing the whole chunk.
+        var sql = """
+                   INSERT INTO customer (name,email,age)
+                   SELECT * FROM unnest(?::text[], ?::text[], ?::int[])
+                   ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                   RETURNING id,name,email,age,version
+                   """;
+
+        List<Customer> inserted = new ArrayList<>(customers.size());
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            List<Customer> chunk = customers.subList(from, Math.min(from + INSERT_BATCH_SIZE, customers.size()));
+            inserted.addAll(jdbcTemplate.query(
+                    connection -> {
+                        PreparedStatement statement = connection.prepareStatement(sql);
+                        statement.setArray(1, connection.createArrayOf("text", chunk.stream().map(Customer::getName).toArray(String[]::new)));
+                        statement.setArray(2, connection.createArrayOf("text", chunk.stream().map(Customer::getEmail).toArray(String[]::new)));
+                        statement.setArray(3, connection.createArrayOf("int4", chunk.stream().map(Customer::getAge).toArray(Integer[]::new)));
+                        return statement;
+                    },
+                    customerRowMapper
+            ));
+        }
+        return inserted;
     }
 
     @Override
-    public void deleteCustomerById(Long id) {
+    public Optional<Customer> deleteCustomerById(Long id) {
         var sql = """
-                   DELETE from customer  where id = ? 
+                   DELETE from customer  where id = ?
+                   RETURNING id,name,email,age,version
                    """;
-        int update =
-                jdbcTemplate.update(sql,id);
 
-        System.out.println("jdbcTemplate.update from delete method = " + update);
+        return jdbcTemplate.query(sql,customerRowMapper,id)
+                .stream().findFirst();
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        var sql = """
+                   DELETE from customer  where id = ? AND version = ANY(?)
+                   RETURNING id,name,email,age,version
+                   """;
 
-        if(customer.getName() != null){
-            String sql = "UPDATE customer SET name = ? where id = ?";
+        return jdbcTemplate.query(sql,customerRowMapper,id,versions.toArray(Long[]::new))
+                .stream().findFirst();
+    }
 
-            int update =
-                    jdbcTemplate.update(sql,
-                            customer.getName(),
-                            customer.getId()
-                    );
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return update(update, null);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return update(update, versions);
+    }
 
-            System.out.println("jdbcTemplate.update from update name method = " + update);
+    private Optional<Customer> update(CustomerUpdate update, Collection<Long> versions) {
+        List<String> assignments = new ArrayList<>(3);
+        List<String> changes = new ArrayList<>(3);
+        List<Object> values = new ArrayList<>(3);
 
+        if(update.name() != null){
+            assignments.add("name = ?");
+            changes.add("name IS DISTINCT FROM ?");
+            values.add(update.name());
         }
 
-        if(customer.getEmail() != null){
-            String sql = "UPDATE customer SET email = ? where id = ? ";
+        if(update.email() != null){
+            assignments.add("email = ?");
+            changes.add("email IS DISTINCT FROM ?");
+            values.add(update.email());
+        }
 
-            int update =
-                    jdbcTemplate.update(sql,
-                            customer.getEmail(),
-                            customer.getId()
-                    );
-            System.out.println("jdbcTemplate.update from update email method = " + update);
+        if(update.age() != null){
+            assignments.add("age = ?");
+            changes.add("age IS DISTINCT FROM ?");
+            values.add(update.age());
         }
 
-        if(customer.getAge() != null){
-            String sql = "UPDATE customer SET age = ? where id = ? ";
+        if(assignments.isEmpty()){
+            return Optional.empty();
+        }
 
-            int update =
-                    jdbcTemplate.update(sql,
-                            customer.getAge(),
-                            customer.getId()
-                    );
+        // the change guard makes a no-op PUT match no row, so "nothing changed" needs no prior SELECT
+        String sql = "UPDATE customer SET " + String.join(", ", assignments)
+                + " WHERE id = ?" + (versions == null ? "" : " AND version = ANY(?)")
+                + " AND (" + String.join(" OR ", changes) + ")"
+                + " RETURNING id,name,email,age,version";
+
+        List<Object> args = new ArrayList<>(values);
+        args.add(update.id());
+        if(versions != null){
+            args.add(versions.toArray(Long[]::new));
+        }
+        args.addAll(values);
 
-            System.out.println("jdbcTemplate.update from update age method = " + update);
+        try {
+            return jdbcTemplate.query(sql, customerRowMapper, args.toArray())
+                    .stream().findFirst();
+        } catch (DataIntegrityViolationException e) {
+            throw EmailConflicts.translate(e, update.email());
         }
+    }
 
+    @Override
+    public long selectTableVersion() {
+        // kept in slots by the triggers of V5__Add_Customer_Versions.sql, so that writers don't wait for each other
+        var sql = """
+                   SELECT sum(version)::bigint FROM customer_table_version_slot
+                   """;
+        return jdbcTemplate.queryForObject(sql, Long.class);
     }
 
     @Override
@@ -118,6 +323,27 @@ public class CustomerJdbcDataAccessService implements CustomerDao{
 
     }
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        var sql = """
+                   SELECT email FROM customer where email = ANY(?)
+                   """;
+
+        List<String> existing = jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setArray(1, connection.createArrayOf("text", emails.toArray(String[]::new)));
+                    return statement;
+                },
+                (rs, rowNum) -> rs.getString("email")
+        );
+
+        return new HashSet<>(existing);
+    }
+
     @Override
     public boolean existPersonWithId(Long id) {
         var sql = """
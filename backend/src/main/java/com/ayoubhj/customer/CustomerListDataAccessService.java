@@ -1,64 +1,219 @@
 package com.ayoubhj.customer;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/**
+ * In-memory store indexed by id (ordered, for keyset pagination) and by email.
+ * <p>
+ * Reads don't lock: each one goes to a single concurrent map, and stored
+ * customers are never mutated, an update swaps in a new copy. Writes take one
+ * lock so that email uniqueness and both indexes change together. Callers
+ * only ever get copies.
+ * <p>
+ * Each customer keeps a version, 1 when inserted and one more per update
+ * that changes it, the same as the database triggers keep. The table
+ * version is bumped by every such write, under the write lock.
+ */
 @Repository("list")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerListDataAccessService implements CustomerDao {
 
-    private static  final List<Customer> customers ;
+    private final NavigableMap<Long, Customer> customersById = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final TableVersion tableVersion = new TableVersion();
 
-    static {
-        customers = new ArrayList<>();
-        Customer customer = new Customer(1L,"Ayoub","Ayoub@gmail.com",22);
-        Customer customer1 = new Customer(2L,"Alya","alya@gmail.com",20);
-        customers.add(customer);
-        customers.add(customer1);
+    public CustomerListDataAccessService() {
+        insertCustomer(new Customer("Ayoub", "Ayoub@gmail.com", 22));
+        insertCustomer(new Customer("Alya", "alya@gmail.com", 20));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return customersById.values().stream()
+                .map(Customer::new)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return customersById.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(Customer::new)
+                .toList();
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        customersById.values().forEach(customer -> consumer.accept(new Customer(customer)));
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
-        return customers.stream()
-                .filter( c -> c.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(customersById.get(id))
+                .map(Customer::new);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .map(Customer::new)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        return customersById.values().stream()
+                .filter(criteria::matches)
+                .sorted(criteria.comparator())
+                .limit(criteria.limit())
+                .map(Customer::new)
+                .toList();
+    }
+
+    @Override
+    public List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        Set<String> trigrams = Trigrams.of(query);
+        return customersById.values().stream()
+                .map(customer -> CustomerMatch.of(customer, trigrams))
+                .filter(match -> match.similarity() >= threshold)
+                .sorted(CustomerMatch.RANKING)
+                .limit(limit)
+                .map(match -> new CustomerMatch(new Customer(match.customer()), match.similarity()))
+                .toList();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        writeLock.lock();
+        try {
+            if (idsByEmail.containsKey(customer.getEmail())) {
+                return false;
+            }
+            long id = lastId.incrementAndGet();
+            customer.setId(id);
+            customer.setVersion(1L);
+            customersById.put(id, new Customer(customer));
+            idsByEmail.put(customer.getEmail(), id);
+            tableVersion.bump();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customer.setId(customers.get(customers.size() - 1).getId() + 1);
-        customers.add(customer);
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        List<Customer> inserted = new ArrayList<>();
+        for (Customer customer : customers) {
+            if (insertCustomer(customer)) {
+                inserted.add(customer);
+            }
+        }
+        return inserted;
     }
 
     @Override
-    public void deleteCustomerById(Long id) {
-        customers.stream()
-                .filter( c -> c.getId().equals(id))
-                .findFirst()
-                .ifPresent(o -> customers.remove(o));
+    public Optional<Customer> deleteCustomerById(Long id) {
+        return delete(id, null);
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-         customers.add(customer);
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        return delete(id, versions);
+    }
+
+    private Optional<Customer> delete(Long id, Collection<Long> versions) {
+        writeLock.lock();
+        try {
+            Customer customer = customersById.get(id);
+            if (customer == null || (versions != null && !versions.contains(customer.getVersion()))) {
+                return Optional.empty();
+            }
+            customersById.remove(id);
+            idsByEmail.remove(customer.getEmail());
+            tableVersion.bump();
+            return Optional.of(new Customer(customer));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return update(update, null);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return update(update, versions);
+    }
+
+    private Optional<Customer> update(CustomerUpdate update, Collection<Long> versions) {
+        writeLock.lock();
+        try {
+            Customer current = customersById.get(update.id());
+            if (current == null || (versions != null && !versions.contains(current.getVersion()))
+                    || !update.changes(current)) {
+                return Optional.empty();
+            }
+            Customer updated = new Customer(current);
+            update.applyTo(updated);
+            updated.setVersion(current.getVersion() + 1);
+            if (!updated.getEmail().equals(current.getEmail())) {
+                if (idsByEmail.containsKey(updated.getEmail())) {
+                    throw new DuplicateKeyException("email [%s] already exists".formatted(updated.getEmail()));
+                }
+                idsByEmail.put(updated.getEmail(), updated.getId());
+                idsByEmail.remove(current.getEmail());
+            }
+            customersById.put(updated.getId(), updated);
+            tableVersion.bump();
+            return Optional.of(new Customer(updated));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long selectTableVersion() {
+        return tableVersion.get();
     }
 
     @Override
     public boolean existPersonWithEmail(String email) {
-        return customers.stream()
-                .anyMatch( c -> c.getEmail().equals(email));
+        return idsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(idsByEmail::containsKey)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public boolean existPersonWithId(Long id) {
-        return customers.stream()
-                .anyMatch( c -> c.getId().equals(id));
+        return customersById.containsKey(id);
     }
 }
@@ -0,0 +1,32 @@
+package com.ayoubhj.customer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public record CustomerLookupResult(
+        List<Customer> customers,
+        List<Long> missingIds
+) {
+
+    /**
+     * Puts the customers found in the order their ids were asked for.
+     */
+    static CustomerLookupResult of(Collection<Long> ids, Collection<Customer> found) {
+        Map<Long, Customer> byId = new HashMap<>();
+        found.forEach(customer -> byId.put(customer.getId(), customer));
+        List<Customer> customers = new ArrayList<>(byId.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : ids) {
+            Customer customer = byId.get(id);
+            if (customer == null) {
+                missingIds.add(id);
+            } else {
+                customers.add(customer);
+            }
+        }
+        return new CustomerLookupResult(customers, missingIds);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ayoubhj.customer;
+
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * A fuzzy search hit. {@code similarity} is the better word similarity of
+ * the query to the name or to the email, between 0 and 1.
+ */
+public record CustomerMatch(
+        Customer customer,
+        double similarity
+) {
+
+    static final Comparator<CustomerMatch> RANKING = Comparator.comparingDouble(CustomerMatch::similarity).reversed()
+            .thenComparing(match -> match.customer().getId());
+
+    static CustomerMatch of(Customer customer, Set<String> queryTrigrams) {
+        return new CustomerMatch(customer, Math.max(
+                Trigrams.wordSimilarity(queryTrigrams, customer.getName()),
+                Trigrams.wordSimilarity(queryTrigrams, customer.getEmail())
+        ));
+    }
+}
@@ -0,0 +1,9 @@
+package com.ayoubhj.customer;
+
+import java.util.List;
+
+public record CustomerPage(
+        List<Customer> customers,
+        String nextCursor
+) {
+}
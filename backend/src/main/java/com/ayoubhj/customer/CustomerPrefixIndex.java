@@ -0,0 +1,374 @@
+package com.ayoubhj.customer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix index over the lower-cased names and emails of customers. Terms
+ * sit in two parallel sorted arrays, built in one go by {@link #compact()},
+ * plus a skip list of the terms written since. Terms are never removed: a
+ * term only counts while it is still the name or email of its customer, so
+ * updated and deleted customers leave the results right away and their
+ * stale terms are dropped at the next compaction.
+ * <p>
+ * Changes can arrive out of order. A put older than the customer it would
+ * replace, by {@link Customer#getVersion()}, is ignored, and a removal leaves
+ * a tombstone with the version deleted so that a late put can't bring the
+ * customer back. Ids are never reused, so tombstones stay for the life of the
+ * index; each is a fraction of the entry it replaces.
+ * <p>
+ * Completions are ordered by the matching term, then by id. Lookups take no
+ * lock. Writes share a read lock that compaction takes exclusively, only to
+ * swap the skip lists.
+ */
+final class CustomerPrefixIndex {
+
+    static final int MIN_COMPACTION_SIZE = 1024;
+
+    // rough per-object sizes on a 64-bit JVM with compressed oops, for sizeInBytes()
+    private static final long ENTRY_BYTES = 32 + 16 + 24 + 56;
+    private static final long STRING_BYTES = 24 + 16;
+    private static final long POSTING_BYTES = 24 + 24 + 12;
+    private static final long TOMBSTONE_BYTES = 32 + 16 + 16;
+
+    private static final Comparator<Posting> ORDER = Comparator.comparing(Posting::term)
+            .thenComparingLong(Posting::id);
+
+    private record Entry(Customer customer, String name, String email) {
+
+        boolean hasTerm(String term) {
+            return name.equals(term) || email.equals(term);
+        }
+    }
+
+    private record Posting(String term, long id) {
+    }
+
+    private record Sorted(String[] terms, long[] ids) {
+
+        static final Sorted EMPTY = new Sorted(new String[0], new long[0]);
+    }
+
+    private static final class Recent {
+
+        final ConcurrentSkipListSet<Posting> postings = new ConcurrentSkipListSet<>(ORDER);
+        final AtomicInteger size = new AtomicInteger();
+
+        void add(Posting posting) {
+            if (postings.add(posting)) {
+                size.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * {@code frozen} holds the terms a running compaction is sorting in, until it publishes them.
+     */
+    private record State(Sorted sorted, Recent frozen, Recent recent) {
+    }
+
+    private final Map<Long, Entry> customers = new ConcurrentHashMap<>();
+    // written only inside customers.compute() for the same id, which orders it with the entries
+    private final Map<Long, Long> tombstones = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final AtomicLong entryBytes = new AtomicLong();
+    private volatile State state = new State(Sorted.EMPTY, null, new Recent());
+    private volatile Set<Long> touchedWhileLoading;
+
+    /**
+     * Starts a bulk load. Until {@link #finishLoading()}, {@link #load} skips
+     * the customers that were put or removed since, their row may be older.
+     */
+    void startLoading() {
+        touchedWhileLoading = ConcurrentHashMap.newKeySet();
+    }
+
+    void load(Customer customer) {
+        Set<Long> touched = touchedWhileLoading;
+        Entry entry = entry(customer);
+        Entry current = customers.compute(customer.getId(),
+                (id, existing) -> existing != null || (touched != null && touched.contains(id)) ? existing : entry);
+        if (current == entry) {
+            entryBytes.addAndGet(sizeOf(entry));
+        }
+    }
+
+    /**
+     * Ends a bulk load and sorts everything loaded into the arrays.
+     */
+    void finishLoading() {
+        touchedWhileLoading = null;
+        compact();
+    }
+
+    /**
+     * Adds or replaces the customer, unless what the index holds for its id
+     * is as recent or more.
+     */
+    void put(Customer customer) {
+        Entry entry = entry(customer);
+        lock.readLock().lock();
+        try {
+            touch(customer.getId());
+            Entry[] replaced = new Entry[1];
+            Entry current = customers.compute(customer.getId(), (id, existing) -> {
+                if (isStale(customer.getVersion(), existing, tombstones.get(id))) {
+                    return existing;
+                }
+                replaced[0] = existing;
+                return entry;
+            });
+            if (current != entry) {
+                return;
+            }
+            Entry previous = replaced[0];
+            entryBytes.addAndGet(sizeOf(entry) - (previous == null ? 0 : sizeOf(previous)));
+            Recent recent = state.recent;
+            if (previous == null || !previous.name.equals(entry.name)) {
+                recent.add(new Posting(entry.name, customer.getId()));
+            }
+            if (previous == null || !previous.email.equals(entry.email)) {
+                recent.add(new Posting(entry.email, customer.getId()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the customer and remembers that {@code version} was deleted.
+     * A {@code null} version outlasts every put.
+     */
+    void remove(Long id, Long version) {
+        lock.readLock().lock();
+        try {
+            touch(id);
+            Entry[] removed = new Entry[1];
+            customers.compute(id, (key, existing) -> {
+                if (tombstones.put(key, version == null ? Long.MAX_VALUE : version) == null) {
+                    entryBytes.addAndGet(TOMBSTONE_BYTES);
+                }
+                removed[0] = existing;
+                return null;
+            });
+            if (removed[0] != null) {
+                entryBytes.addAndGet(-sizeOf(removed[0]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code limit} customers with a name or email starting with
+     * {@code prefix}, ignoring case.
+     */
+    List<Customer> complete(String prefix, int limit) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        State current = state;
+
+        // the first `limit` customers of each source are enough to find the first `limit` overall
+        List<Posting> candidates = new ArrayList<>();
+        collect(current.sorted, from, limit, candidates);
+        if (current.frozen != null) {
+            collect(current.frozen, from, limit, candidates);
+        }
+        collect(current.recent, from, limit, candidates);
+        candidates.sort(ORDER);
+
+        Set<Long> seen = new HashSet<>();
+        List<Customer> completions = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (Posting posting : candidates) {
+            if (completions.size() == limit) {
+                break;
+            }
+            Entry entry = customers.get(posting.id);
+            if (entry != null && entry.hasTerm(posting.term) && seen.add(posting.id)) {
+                completions.add(new Customer(entry.customer));
+            }
+        }
+        return completions;
+    }
+
+    boolean needsCompaction() {
+        State current = state;
+        return current.recent.size.get() > Math.max(MIN_COMPACTION_SIZE, current.sorted.terms.length / 8);
+    }
+
+    /**
+     * Sorts every live term into new arrays and drops the skip list. Returns
+     * false without doing anything if a compaction is already running.
+     */
+    boolean compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            lock.writeLock().lock();
+            try {
+                State current = state;
+                state = new State(current.sorted, current.recent, new Recent());
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // every write from before the swap is in the map, later ones are in the new skip list
+            Sorted sorted = sort();
+
+            lock.writeLock().lock();
+            try {
+                state = new State(sorted, null, state.recent);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    int customerCount() {
+        return customers.size();
+    }
+
+    int sortedTermCount() {
+        return state.sorted.terms.length;
+    }
+
+    int recentTermCount() {
+        State current = state;
+        return current.recent.size.get() + (current.frozen == null ? 0 : current.frozen.size.get());
+    }
+
+    /**
+     * An estimate of the heap the index holds, customers included.
+     */
+    long sizeInBytes() {
+        return entryBytes.get() + 32 + 12L * sortedTermCount() + POSTING_BYTES * recentTermCount();
+    }
+
+    private Sorted sort() {
+        List<Posting> postings = new ArrayList<>(customers.size() * 2);
+        customers.forEach((id, entry) -> {
+            postings.add(new Posting(entry.name, id));
+            if (!entry.email.equals(entry.name)) {
+                postings.add(new Posting(entry.email, id));
+            }
+        });
+        Posting[] array = postings.toArray(Posting[]::new);
+        postings.clear();
+        Arrays.parallelSort(array, ORDER);
+
+        String[] terms = new String[array.length];
+        long[] ids = new long[array.length];
+        for (int i = 0; i < array.length; i++) {
+            terms[i] = array[i].term;
+            ids[i] = array[i].id;
+        }
+        return new Sorted(terms, ids);
+    }
+
+    private void collect(Sorted sorted, String prefix, int limit, List<Posting> candidates) {
+        Set<Long> seen = new HashSet<>();
+        for (int i = lowerBound(sorted.terms, prefix); i < sorted.terms.length && seen.size() < limit; i++) {
+            if (!sorted.terms[i].startsWith(prefix)) {
+                break;
+            }
+            Posting posting = new Posting(sorted.terms[i], sorted.ids[i]);
+            if (isLive(posting) && seen.add(posting.id)) {
+                candidates.add(posting);
+            }
+        }
+    }
+
+    private void collect(Recent recent, String prefix, int limit, List<Posting> candidates) {
+        Set<Long> seen = new HashSet<>();
+        Iterator<Posting> postings = recent.postings.tailSet(new Posting(prefix, Long.MIN_VALUE)).iterator();
+        while (postings.hasNext() && seen.size() < limit) {
+            Posting posting = postings.next();
+            if (!posting.term.startsWith(prefix)) {
+                break;
+            }
+            if (isLive(posting) && seen.add(posting.id)) {
+                candidates.add(posting);
+            }
+        }
+    }
+
+    private boolean isLive(Posting posting) {
+        Entry entry = customers.get(posting.id);
+        return entry != null && entry.hasTerm(posting.term);
+    }
+
+    /**
+     * Whether a put of {@code version} comes after the customer or the
+     * deletion already in the index. A put without a version always applies.
+     */
+    private static boolean isStale(Long version, Entry existing, Long deletedVersion) {
+        if (version == null) {
+            return false;
+        }
+        if (deletedVersion != null && version <= deletedVersion) {
+            return true;
+        }
+        Long existingVersion = existing == null ? null : existing.customer.getVersion();
+        return existingVersion != null && version <= existingVersion;
+    }
+
+    private void touch(Long id) {
+        Set<Long> touched = touchedWhileLoading;
+        if (touched != null) {
+            touched.add(id);
+        }
+    }
+
+    private static int lowerBound(String[] terms, String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Entry entry(Customer customer) {
+        return new Entry(
+                new Customer(customer),
+                customer.getName().toLowerCase(Locale.ROOT),
+                customer.getEmail().toLowerCase(Locale.ROOT)
+        );
+    }
+
+    private static long sizeOf(Entry entry) {
+        Customer customer = entry.customer;
+        long size = ENTRY_BYTES + 2 * STRING_BYTES + customer.getName().length() + customer.getEmail().length();
+        // toLowerCase() hands back the same string when there is nothing to change
+        if (entry.name != customer.getName()) {
+            size += STRING_BYTES + entry.name.length();
+        }
+        if (entry.email != customer.getEmail()) {
+            size += STRING_BYTES + entry.email.length();
+        }
+        return size;
+    }
+}
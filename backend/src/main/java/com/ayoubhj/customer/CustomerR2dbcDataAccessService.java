@@ -0,0 +1,276 @@
+package com.ayoubhj.customer;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Repository("r2dbc")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+
+    static final int STREAM_FETCH_SIZE = 1000;
+    static final int INSERT_BATCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+
+    public CustomerR2dbcDataAccessService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                   SELECT id,name,email,age FROM customer ORDER BY id
+                   """;
+
+        // with a fetch size the driver pulls rows through a portal as the subscriber asks for them,
+        // instead of reading the whole result into memory
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomers(Long afterId, int limit) {
+        var sql = """
+                   SELECT id,name,email,age FROM customer
+                   WHERE id > $1
+                   ORDER BY id
+                   LIMIT $2
+                   """;
+
+        return databaseClient.sql(sql)
+                .bind(0, afterId)
+                .bind(1, limit)
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Long id) {
+        var sql = """
+                   SELECT id,name,email,age FROM customer where id = $1
+                   """;
+
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .one();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        var sql = """
+                   SELECT id,name,email,age FROM customer where id = ANY($1)
+                   """;
+
+        return databaseClient.sql(sql)
+                .bind(0, ids.toArray(Long[]::new))
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        CustomerSearchSql search = CustomerSearchSql.of(criteria, index -> "$" + index);
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(search.sql());
+        List<Object> parameters = search.parameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            spec = spec.bind(i, parameters.get(i));
+        }
+        return spec.map(CustomerR2dbcDataAccessService::toCustomer).all();
+    }
+
+    @Override
+    public Flux<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        var sql = """
+                   SELECT id,name,email,age,
+                          greatest(word_similarity($1, name), word_similarity($1, email)) AS similarity
+                   FROM customer
+                   WHERE $1 <% name OR $1 <% email
+                   ORDER BY similarity DESC, id
+                   LIMIT $2
+                   """;
+
+        // "<%" reads the threshold from the session, so both statements have to run on the same connection, in one
+        // transaction: a transaction-local setting doesn't stay behind on the pooled connection
+        return databaseClient.inConnectionMany(connection -> {
+            Flux<CustomerMatch> matches = Flux.from(connection
+                            .createStatement("SELECT set_config('pg_trgm.word_similarity_threshold', $1, true)")
+                            .bind(0, String.valueOf(threshold))
+                            .execute())
+                    .flatMap(result -> result.map(row -> row.get(0, String.class)))
+                    .thenMany(connection.createStatement(sql)
+                            .bind(0, query)
+                            .bind(1, limit)
+                            .execute())
+                    .flatMap(result -> result.map(row -> new CustomerMatch(toCustomer(row), row.get("similarity", Double.class))));
+            if (!connection.isAutoCommit()) {
+                return matches;
+            }
+            return Flux.usingWhen(
+                    Mono.from(connection.beginTransaction()).thenReturn(connection),
+                    transaction -> matches,
+                    Connection::commitTransaction,
+                    (transaction, error) -> transaction.rollbackTransaction(),
+                    Connection::rollbackTransaction);
+        });
+    }
+
+    @Override
+    public Mono<Customer> insertCustomer(Customer customer) {
+        var sql = """
+                   INSERT INTO customer (name,email,age) VALUES ($1,$2,$3)
+                   ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                   RETURNING id
+                   """;
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind(0, customer.getName())
+                .bind(1, customer.getEmail());
+        spec = customer.getAge() == null ? spec.bindNull(2, Integer.class) : spec.bind(2, customer.getAge());
+        return spec
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> new Customer(id, customer.getName(), customer.getEmail(), customer.getAge()));
+    }
+
+    @Override
+    public Flux<Customer> insertCustomers(List<Customer> customers) {
+        var sql = """
+                   INSERT INTO customer (name,email,age)
+                   SELECT * FROM unnest($1::text[], $2::text[], $3::int[])
+                   ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                   RETURNING id,name,email,age
+                   """;
+
+        List<List<Customer>> chunks = new ArrayList<>();
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            chunks.add(customers.subList(from, Math.min(from + INSERT_BATCH_SIZE, customers.size())));
+        }
+        return Flux.fromIterable(chunks)
+                .concatMap(chunk -> databaseClient.sql(sql)
+                        .bind(0, chunk.stream().map(Customer::getName).toArray(String[]::new))
+                        .bind(1, chunk.stream().map(Customer::getEmail).toArray(String[]::new))
+                        .bind(2, chunk.stream().map(Customer::getAge).toArray(Integer[]::new))
+                        .map(CustomerR2dbcDataAccessService::toCustomer)
+                        .all());
+    }
+
+    @Override
+    public Mono<Customer> deleteCustomerById(Long id) {
+        var sql = """
+                   DELETE from customer where id = $1
+                   RETURNING id,name,email,age
+                   """;
+
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .one();
+    }
+
+    @Override
+    public Mono<Customer> updateCustomer(CustomerUpdate update) {
+        List<String> assignments = new ArrayList<>(3);
+        List<String> changes = new ArrayList<>(3);
+        List<Object> values = new ArrayList<>(3);
+
+        if(update.name() != null){
+            values.add(update.name());
+            assignments.add("name = $" + values.size());
+            changes.add("name IS DISTINCT FROM $" + values.size());
+        }
+
+        if(update.email() != null){
+            values.add(update.email());
+            assignments.add("email = $" + values.size());
+            changes.add("email IS DISTINCT FROM $" + values.size());
+        }
+
+        if(update.age() != null){
+            values.add(update.age());
+            assignments.add("age = $" + values.size());
+            changes.add("age IS DISTINCT FROM $" + values.size());
+        }
+
+        if(assignments.isEmpty()){
+            return Mono.empty();
+        }
+
+        // numbered parameters can be referenced twice, so the change guard reuses the SET values
+        String sql = "UPDATE customer SET " + String.join(", ", assignments)
+                + " WHERE id = $" + (values.size() + 1) + " AND (" + String.join(" OR ", changes) + ")"
+                + " RETURNING id,name,email,age";
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (int i = 0; i < values.size(); i++) {
+            spec = spec.bind(i, values.get(i));
+        }
+        return spec.bind(values.size(), update.id())
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .one()
+                .onErrorMap(DataIntegrityViolationException.class, e -> EmailConflicts.translate(e, update.email()));
+    }
+
+    @Override
+    public Mono<Boolean> existPersonWithEmail(String email) {
+        var sql = """
+                   SELECT EXISTS (SELECT 1 FROM customer where email = $1)
+                   """;
+
+        return databaseClient.sql(sql)
+                .bind(0, email)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Flux<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Flux.empty();
+        }
+        var sql = """
+                   SELECT email FROM customer where email = ANY($1)
+                   """;
+
+        return databaseClient.sql(sql)
+                .bind(0, emails.toArray(String[]::new))
+                .map(row -> row.get("email", String.class))
+                .all();
+    }
+
+    @Override
+    public Mono<Boolean> existPersonWithId(Long id) {
+        var sql = """
+                   SELECT EXISTS (SELECT 1 FROM customer where id = $1)
+                   """;
+
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    private static Customer toCustomer(Readable row) {
+        return new Customer(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class)
+        );
+    }
+}
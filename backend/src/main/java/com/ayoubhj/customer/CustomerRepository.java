@@ -1,11 +1,97 @@
 package com.ayoubhj.customer;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
-public interface CustomerRepository extends JpaRepository<Customer,Long> {
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+
+public interface CustomerRepository extends JpaRepository<Customer,Long>, CustomerSearchRepository {
 
     boolean existsCustomerByEmail(String email);
     boolean existsCustomerById(Long id);
+    List<Customer> findByIdGreaterThan(Long id, Pageable pageable);
+
+    @Query("select c.email from Customer c where c.email in :emails")
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    // kept in slots by the triggers of V5__Add_Customer_Versions.sql, so that writers don't wait for each other
+    @Query(value = "SELECT CAST(sum(version) AS bigint) FROM customer_table_version_slot", nativeQuery = true)
+    long selectTableVersion();
+
+    @Query(value = "SELECT set_config('pg_trgm.word_similarity_threshold', :threshold, true)", nativeQuery = true)
+    String setWordSimilarityThreshold(String threshold);
+
+    @Query(value = """
+            SELECT id, name, email, age, version,
+                   greatest(word_similarity(:query, name), word_similarity(:query, email)) AS similarity
+            FROM customer
+            WHERE :query <% name OR :query <% email
+            ORDER BY similarity DESC, id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Object[]> fuzzySearch(String query, int limit);
+
+    // the JDBC insert in JPA: one statement per chunk, emails taken meanwhile are skipped rather than failing it
+    @Query(value = """
+            INSERT INTO customer (name, email, age)
+            SELECT * FROM unnest(CAST(:names AS text[]), CAST(:emails AS text[]), CAST(:ages AS int[]))
+            ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+            RETURNING id, name, email, age, version
+            """, nativeQuery = true)
+    List<Object[]> insertSkippingTakenEmails(String[] names, String[] emails, Integer[] ages);
+
+    // the JDBC delete in JPA: one statement, the row comes back from RETURNING instead of a load first
+    @Query(value = """
+            DELETE FROM customer WHERE id = :id
+            RETURNING id, name, email, age, version
+            """, nativeQuery = true)
+    List<Object[]> deleteReturning(Long id);
+
+    @Query(value = """
+            DELETE FROM customer WHERE id = :id AND version = ANY(CAST(:versions AS bigint[]))
+            RETURNING id, name, email, age, version
+            """, nativeQuery = true)
+    List<Object[]> deleteReturning(Long id, Long[] versions);
+
+    // the JDBC update in JPA: null fields keep their value, and the change guard makes a no-op PUT match no row
+    @Query(value = """
+            UPDATE customer
+            SET name = coalesce(CAST(:name AS text), name),
+                email = coalesce(CAST(:email AS text), email),
+                age = coalesce(CAST(:age AS int), age)
+            WHERE id = :id
+              AND (name IS DISTINCT FROM coalesce(CAST(:name AS text), name)
+                OR email IS DISTINCT FROM coalesce(CAST(:email AS text), email)
+                OR age IS DISTINCT FROM coalesce(CAST(:age AS int), age))
+            RETURNING id, name, email, age, version
+            """, nativeQuery = true)
+    List<Object[]> updateReturning(Long id, String name, String email, Integer age);
+
+    @Query(value = """
+            UPDATE customer
+            SET name = coalesce(CAST(:name AS text), name),
+                email = coalesce(CAST(:email AS text), email),
+                age = coalesce(CAST(:age AS int), age)
+            WHERE id = :id AND version = ANY(CAST(:versions AS bigint[]))
+              AND (name IS DISTINCT FROM coalesce(CAST(:name AS text), name)
+                OR email IS DISTINCT FROM coalesce(CAST(:email AS text), email)
+                OR age IS DISTINCT FROM coalesce(CAST(:age AS int), age))
+            RETURNING id, name, email, age, version
+            """, nativeQuery = true)
+    List<Object[]> updateReturning(Long id, String name, String email, Integer age, Long[] versions);
+
+    // constructor expression so rows are not attached to the persistence context while streaming
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.ayoubhj.customer.Customer(c.id, c.name, c.email, c.age, c.version) from Customer c order by c.id")
+    Stream<Customer> streamAllCustomers();
 
 }
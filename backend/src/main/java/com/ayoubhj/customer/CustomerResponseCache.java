@@ -0,0 +1,315 @@
+package com.ayoubhj.customer;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.ayoubhj.exception.ServiceBusyException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rendered JSON of the customer list responses, kept with gzip and brotli
+ * variants so that repeated requests are answered without Jackson or a
+ * compressor. Entries are keyed by the request and the coding, and tagged
+ * with the table ETag they were rendered under; an entry with another tag is
+ * rendered again. A coding is only compressed once a request asks for it.
+ * {@link CustomerService} writes and imports drop every entry right away, the
+ * tag covers the writes that don't go through it. Each coding goes out under
+ * its own tag, see {@link ETags#of(String, Coding)}.
+ * <p>
+ * The cache is bounded by the bytes of all variants together. A response
+ * larger than {@code customer.response-cache.maximum-entry-size} is served
+ * once without being kept, and its key is reported by {@link #isOversized}
+ * from then on so that callers stream it instead of paying for the full
+ * render on every request.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CustomerResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerResponseCache.class);
+
+    // below this a compressed variant saves less than its headers and the CPU cost
+    static final int MIN_COMPRESSED_SIZE = 1024;
+    // 11 takes seconds for the full list and compresses only a few percent better
+    static final int BROTLI_QUALITY = 5;
+
+    public enum Coding {
+        BROTLI("br"),
+        GZIP("gzip"),
+        IDENTITY("identity");
+
+        private final String token;
+
+        Coding(String token) {
+            this.token = token;
+        }
+
+        public String token() {
+            return token;
+        }
+    }
+
+    /**
+     * One representation of a rendered response, ready to be written as is.
+     */
+    public record Encoded(String etag, Coding coding, byte[] body) {
+    }
+
+    /**
+     * The body kept for a requested coding. It is the identity one when
+     * compressing didn't pay off.
+     */
+    record Rendered(String etag, Coding coding, byte[] body) {
+    }
+
+    private record Variant(String key, Coding coding) {
+    }
+
+    private record Flight(String key, String etag, Coding coding) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Variant, Rendered> responses;
+    private final Map<Flight, CompletableFuture<Rendered>> rendering = new ConcurrentHashMap<>();
+    private final Set<String> oversized = ConcurrentHashMap.newKeySet();
+    private final long maximumEntrySize;
+    private final boolean brotli;
+    private final Timer renderTimer;
+    private final Map<Coding, Counter> served = new EnumMap<>(Coding.class);
+
+    public CustomerResponseCache(ObjectMapper objectMapper,
+                                 @Value("${customer.response-cache.maximum-size:64MB}") DataSize maximumSize,
+                                 @Value("${customer.response-cache.maximum-entry-size:16MB}") DataSize maximumEntrySize,
+                                 MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((Variant variant, Rendered rendered) -> rendered.body().length)
+                .recordStats()
+                .build();
+        // Caffeine evicts an entry heavier than the whole cache right away
+        this.maximumEntrySize = Math.min(maximumEntrySize.toBytes(), maximumSize.toBytes());
+        this.brotli = Brotli4jLoader.isAvailable();
+        if (!brotli) {
+            LOGGER.warn("brotli is not available, customer responses are cached with gzip only",
+                    Brotli4jLoader.getUnavailabilityCause());
+        }
+        this.renderTimer = Timer.builder("customer.response-cache.render").register(meterRegistry);
+        for (Coding coding : Coding.values()) {
+            served.put(coding, Counter.builder("customer.response-cache.responses")
+                    .tag("encoding", coding.token())
+                    .register(meterRegistry));
+        }
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "customer.response");
+        Gauge.builder("customer.response-cache.size", responses, CustomerResponseCache::weightedSize)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Caffeine updates the weighted size in its asynchronous maintenance, the
+     * pending writes are applied first so that the gauge doesn't lag behind.
+     */
+    private static double weightedSize(Cache<Variant, Rendered> cache) {
+        cache.cleanUp();
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    /**
+     * The response cached for {@code key} under {@code etag}, rendered from
+     * {@code body} first if there is none, in the best coding the
+     * {@code Accept-Encoding} header allows.
+     */
+    public Encoded get(String key, String etag, Supplier<?> body, String acceptEncoding) {
+        Rendered rendered = variant(key, etag, negotiate(acceptEncoding), body);
+        served.get(rendered.coding()).increment();
+        return new Encoded(ETags.of(rendered.etag(), rendered.coding()), rendered.coding(), rendered.body());
+    }
+
+    /**
+     * Whether a render of {@code key} came out larger than an entry may be.
+     * The list only grows back slowly, so the key is never cleared.
+     */
+    public boolean isOversized(String key) {
+        return oversized.contains(key);
+    }
+
+    /**
+     * Wraps {@code out} in the compressor of {@code coding}, for a response
+     * streamed rather than cached.
+     */
+    public OutputStream compressing(OutputStream out, Coding coding) throws IOException {
+        return switch (coding) {
+            case BROTLI -> new BrotliOutputStream(out, new Encoder.Parameters().setQuality(BROTLI_QUALITY));
+            case GZIP -> new GZIPOutputStream(out, 64 * 1024);
+            case IDENTITY -> out;
+        };
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        responses.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomersImported(CustomersImportedEvent event) {
+        responses.invalidateAll();
+    }
+
+    private Rendered variant(String key, String etag, Coding coding, Supplier<?> body) {
+        Rendered rendered = responses.getIfPresent(new Variant(key, coding));
+        if (rendered == null || !rendered.etag().equals(etag)) {
+            rendered = renderOnce(new Flight(key, etag, coding), body);
+        }
+        return rendered;
+    }
+
+    /**
+     * Concurrent misses on one key, tag and coding wait for a single render.
+     * It runs outside the cache's locks: writes invalidate the cache while
+     * they still hold their connection, and a render needs one to load the
+     * body.
+     */
+    private Rendered renderOnce(Flight flight, Supplier<?> body) {
+        CompletableFuture<Rendered> started = new CompletableFuture<>();
+        CompletableFuture<Rendered> inFlight = rendering.putIfAbsent(flight, started);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            Rendered rendered = render(flight, body);
+            if (rendered.body().length <= maximumEntrySize) {
+                responses.put(new Variant(flight.key(), flight.coding()), rendered);
+            } else if (oversized.add(flight.key())) {
+                LOGGER.info("customer response {} is {} KB, it is streamed from now on",
+                        flight.key(), rendered.body().length / 1024);
+            }
+            started.complete(rendered);
+            return rendered;
+        } catch (RuntimeException | Error e) {
+            started.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(flight, started);
+        }
+    }
+
+    private static Rendered await(CompletableFuture<Rendered> inFlight) {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("interrupted while waiting for a customer response");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw (Error) e.getCause();
+        }
+    }
+
+    private Rendered render(Flight flight, Supplier<?> body) {
+        if (flight.coding() == Coding.IDENTITY) {
+            return renderTimer.record(() -> new Rendered(flight.etag(), Coding.IDENTITY, writeJson(body.get())));
+        }
+        Rendered json = variant(flight.key(), flight.etag(), Coding.IDENTITY, body);
+        if (json.body().length < MIN_COMPRESSED_SIZE) {
+            return json;
+        }
+        byte[] compressed = renderTimer.record(() -> flight.coding() == Coding.BROTLI ? brotli(json.body()) : gzip(json.body()));
+        return compressed.length < json.body().length ? new Rendered(flight.etag(), flight.coding(), compressed) : json;
+    }
+
+    /**
+     * Picks brotli, then gzip, then identity, among the codings the header
+     * accepts with a non-zero quality and this instance can produce. Without
+     * a header, or when nothing else fits, the response goes out as is.
+     */
+    public Coding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return Coding.IDENTITY;
+        }
+        Map<String, Double> qualities = new HashMap<>();
+        for (String part : acceptEncoding.split(",")) {
+            String[] parameters = part.split(";");
+            String coding = parameters[0].strip().toLowerCase(Locale.ROOT);
+            double quality = 1.0;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].strip().toLowerCase(Locale.ROOT);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (!coding.isEmpty()) {
+                qualities.put(coding, quality);
+            }
+        }
+        for (Coding coding : new Coding[]{Coding.BROTLI, Coding.GZIP}) {
+            Double quality = qualities.getOrDefault(coding.token(), qualities.get("*"));
+            if (quality != null && quality > 0 && (coding != Coding.BROTLI || brotli)) {
+                return coding;
+            }
+        }
+        return Coding.IDENTITY;
+    }
+
+    private byte[] writeJson(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("could not render customer response", e);
+        }
+    }
+
+    static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] brotli(byte[] json) {
+        try {
+            return Encoder.compress(json, new Encoder.Parameters().setQuality(BROTLI_QUALITY));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
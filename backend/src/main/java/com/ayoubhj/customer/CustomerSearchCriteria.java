@@ -0,0 +1,87 @@
+package com.ayoubhj.customer;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Filters of a customer search, a {@code null} filter matches everything.
+ * The name prefix and the email domain (the part after the {@code @}) are
+ * compared case-insensitively. Results are ordered by {@code sortBy} and
+ * then by id, so equal keys still come back in a stable order.
+ */
+public record CustomerSearchCriteria(
+        Integer minAge,
+        Integer maxAge,
+        String namePrefix,
+        String emailDomain,
+        SortBy sortBy,
+        boolean descending,
+        int limit
+) {
+
+    public enum SortBy {
+        ID("id"),
+        NAME("name"),
+        EMAIL("email"),
+        AGE("age");
+
+        private final String property;
+
+        SortBy(String property) {
+            this.property = property;
+        }
+
+        /**
+         * The entity property, which is also the column name.
+         */
+        public String property() {
+            return property;
+        }
+    }
+
+    /**
+     * Evaluates the filters in memory, for the stores that have no query language.
+     */
+    public boolean matches(Customer customer) {
+        Integer age = customer.getAge();
+        if (minAge != null && (age == null || age < minAge)) {
+            return false;
+        }
+        if (maxAge != null && (age == null || age > maxAge)) {
+            return false;
+        }
+        if (namePrefix != null && !lowerCase(customer.getName()).startsWith(lowerCase(namePrefix))) {
+            return false;
+        }
+        return emailDomain == null || emailDomain(customer.getEmail()).equals(lowerCase(emailDomain));
+    }
+
+    public Comparator<Customer> comparator() {
+        Comparator<Customer> comparator = switch (sortBy) {
+            case ID -> Comparator.comparing(Customer::getId);
+            case NAME -> Comparator.comparing(Customer::getName, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                    .thenComparing(Customer::getId);
+            case EMAIL -> Comparator.comparing(Customer::getEmail, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                    .thenComparing(Customer::getId);
+            case AGE -> Comparator.comparing(Customer::getAge, Comparator.nullsLast(Comparator.<Integer>naturalOrder()))
+                    .thenComparing(Customer::getId);
+        };
+        return descending ? comparator.reversed() : comparator;
+    }
+
+    /**
+     * Same as the {@code email_domain} SQL function of the schema.
+     */
+    static String emailDomain(String email) {
+        int at = email.indexOf('@');
+        if (at < 0) {
+            return "";
+        }
+        int end = email.indexOf('@', at + 1);
+        return lowerCase(email.substring(at + 1, end < 0 ? email.length() : end));
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,15 @@
+package com.ayoubhj.customer;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Repository fragment for a bounded specification query. Unlike
+ * {@code JpaSpecificationExecutor.findAll(spec, pageable)} it runs no count query.
+ */
+public interface CustomerSearchRepository {
+
+    List<Customer> findAll(Specification<Customer> specification, Sort sort, int limit);
+}
@@ -0,0 +1,78 @@
+package com.ayoubhj.customer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Builds the search query for the SQL DAOs. Every filter is written the way
+ * its index in {@code V3__Add_Customer_Search_Indexes.sql} is defined, so
+ * Postgres can use an index scan for it, or combine them with a bitmap AND.
+ * Values are always bound. The sort column comes from
+ * {@link CustomerSearchCriteria.SortBy}, never from the request.
+ */
+final class CustomerSearchSql {
+
+    private final String sql;
+    private final List<Object> parameters;
+
+    private CustomerSearchSql(String sql, List<Object> parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @param placeholder the placeholder for the n-th parameter, counting from 1
+     */
+    static CustomerSearchSql of(CustomerSearchCriteria criteria, IntFunction<String> placeholder) {
+        List<Object> parameters = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (criteria.minAge() != null) {
+            parameters.add(criteria.minAge());
+            conditions.add("age >= " + placeholder.apply(parameters.size()));
+        }
+        if (criteria.maxAge() != null) {
+            parameters.add(criteria.maxAge());
+            conditions.add("age <= " + placeholder.apply(parameters.size()));
+        }
+        if (criteria.namePrefix() != null) {
+            parameters.add(escapeLike(criteria.namePrefix()) + "%");
+            conditions.add("lower(name) LIKE lower(" + placeholder.apply(parameters.size()) + ")");
+        }
+        if (criteria.emailDomain() != null) {
+            parameters.add(criteria.emailDomain());
+            conditions.add("email_domain(email) = lower(" + placeholder.apply(parameters.size()) + ")");
+        }
+
+        String direction = criteria.descending() ? " DESC" : "";
+        StringBuilder sql = new StringBuilder("SELECT id,name,email,age,version FROM customer");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ");
+        if (criteria.sortBy() != CustomerSearchCriteria.SortBy.ID) {
+            sql.append(criteria.sortBy().property()).append(direction).append(", ");
+        }
+        sql.append("id").append(direction);
+        parameters.add(criteria.limit());
+        sql.append(" LIMIT ").append(placeholder.apply(parameters.size()));
+        return new CustomerSearchSql(sql.toString(), parameters);
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    List<Object> parameters() {
+        return parameters;
+    }
+
+    /**
+     * Escapes the LIKE wildcards with Postgres' default escape character.
+     */
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
@@ -2,36 +2,166 @@ package com.ayoubhj.customer;
 
 import com.ayoubhj.exception.DuplicateResourceException;
 import com.ayoubhj.exception.NoDataChangeException;
+import com.ayoubhj.exception.PreconditionFailedException;
+import com.ayoubhj.exception.RequestValidationException;
 import com.ayoubhj.exception.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 @Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerService {
 
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BULK_SIZE = 10_000;
+    static final int MAX_LOOKUP_SIZE = 1000;
+    static final int MIN_FUZZY_QUERY_LENGTH = 3;
+
     private final CustomerDao customerDao;
+    private final double fuzzySearchThreshold;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao) {
+    public CustomerService(@Qualifier("cached") CustomerDao customerDao,
+                           @Value("${customer.fuzzy-search.threshold:0.5}") double fuzzySearchThreshold,
+                           ApplicationEventPublisher eventPublisher) {
         this.customerDao = customerDao;
+        this.fuzzySearchThreshold = fuzzySearchThreshold;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<Customer> getAllCustomers(){
          return customerDao.selectAllCustomers();
     }
 
+    /**
+     * Changes whenever any customer is inserted, updated or deleted. Read it
+     * before the customers: a write committing in between then only costs the
+     * client one extra full response.
+     */
+    public String getCustomersETag(){
+        return ETags.of(customerDao.selectTableVersion());
+    }
+
+    public CustomerPage getCustomers(String after, Integer limit){
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            throw new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+
+        // fetch one extra row to know whether another page exists without a count(*)
+        List<Customer> customers = customerDao.selectCustomers(CustomerCursor.decode(after), pageSize + 1);
+        if(customers.size() <= pageSize){
+            return new CustomerPage(customers, null);
+        }
+
+        List<Customer> page = customers.subList(0, pageSize);
+        return new CustomerPage(page, CustomerCursor.encode(page.get(pageSize - 1).getId()));
+    }
+
+    public void exportCustomers(Consumer<Customer> consumer){
+        customerDao.streamAllCustomers(consumer);
+    }
+
     public Customer getCustomerById(Long id){
         return customerDao.selectCustomerById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("customer with id [%s] not found".formatted(id)));
     }
 
-    public void insertCustomer(CustomerRegistrationRequest customerRegistrationRequest){
+    public CustomerLookupResult lookupCustomers(List<Long> ids){
+        Set<Long> distinctIds = lookupIds(ids);
+        return CustomerLookupResult.of(distinctIds, customerDao.selectCustomersByIds(distinctIds));
+    }
 
-            if(customerDao.existPersonWithEmail(customerRegistrationRequest.email())){
-                  throw  new DuplicateResourceException("email already exists");
+    static Set<Long> lookupIds(List<Long> ids){
+        if(ids == null || ids.size() > MAX_LOOKUP_SIZE){
+            throw new RequestValidationException("between 0 and %s ids can be looked up at once".formatted(MAX_LOOKUP_SIZE));
+        }
+        Set<Long> distinctIds = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if(id == null){
+                throw new RequestValidationException("ids must not be null");
             }
+            distinctIds.add(id);
+        }
+        return distinctIds;
+    }
+
+    public List<Customer> searchCustomers(Integer minAge, Integer maxAge, String name, String emailDomain,
+                                          String sort, Integer limit){
+        return customerDao.searchCustomers(searchCriteria(minAge, maxAge, name, emailDomain, sort, limit));
+    }
+
+    /**
+     * @param sort a property to sort by, with a leading {@code -} for descending order
+     */
+    static CustomerSearchCriteria searchCriteria(Integer minAge, Integer maxAge, String name, String emailDomain,
+                                                 String sort, Integer limit){
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            throw new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        if(minAge != null && maxAge != null && minAge > maxAge){
+            throw new RequestValidationException("minAge must not be greater than maxAge");
+        }
+
+        boolean descending = sort != null && sort.startsWith("-");
+        String property = sort == null || sort.isBlank() ? "id" : sort.substring(descending ? 1 : 0);
+        CustomerSearchCriteria.SortBy sortBy = Arrays.stream(CustomerSearchCriteria.SortBy.values())
+                .filter(value -> value.property().equals(property))
+                .findFirst()
+                .orElseThrow(() -> new RequestValidationException("cannot sort by [%s]".formatted(property)));
+
+        return new CustomerSearchCriteria(
+                minAge,
+                maxAge,
+                name == null || name.isBlank() ? null : name,
+                emailDomain == null || emailDomain.isBlank() ? null : emailDomain,
+                sortBy,
+                descending,
+                pageSize
+        );
+    }
+
+    public List<CustomerMatch> fuzzySearchCustomers(String query, Integer limit){
+        String trimmed = fuzzyQuery(query);
+        return customerDao.fuzzySearchCustomers(trimmed, fuzzySearchThreshold, fuzzySearchLimit(limit));
+    }
+
+    static String fuzzyQuery(String query){
+        // shorter queries have too few trigrams to tell customers apart
+        if(query == null || query.trim().length() < MIN_FUZZY_QUERY_LENGTH){
+            throw new RequestValidationException(
+                    "q must have at least %s characters".formatted(MIN_FUZZY_QUERY_LENGTH));
+        }
+        return query.trim();
+    }
+
+    static int fuzzySearchLimit(Integer limit){
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            throw new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        return pageSize;
+    }
+
+    public void insertCustomer(CustomerRegistrationRequest customerRegistrationRequest){
 
             Customer customer =  new Customer(
                     customerRegistrationRequest.name(),
@@ -39,58 +169,165 @@ public class CustomerService {
                     customerRegistrationRequest.age()
             );
 
-            customerDao.insertCustomer(customer);
+            if(!customerDao.insertCustomer(customer)){
+                  throw  new DuplicateResourceException("email already exists");
+            }
+            eventPublisher.publishEvent(CustomerChangedEvent.saved(customer));
     }
 
+    public List<CustomerBulkRegistrationResult> insertCustomers(List<CustomerRegistrationRequest> requests){
 
-    public void deleteCustomer(Long id){
+        if(requests.size() > MAX_BULK_SIZE){
+            throw new RequestValidationException("at most %s customers can be registered at once".formatted(MAX_BULK_SIZE));
+        }
 
-        if(!customerDao.existPersonWithId(id)){
-            throw new ResourceNotFoundException("customer with id [%s] not found".formatted(id));
+        CustomerBulkRegistrationResult.Status[] statuses = new CustomerBulkRegistrationResult.Status[requests.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            if(!isValid(request)){
+                statuses[i] = CustomerBulkRegistrationResult.Status.INVALID;
+            } else if(candidates.putIfAbsent(request.email(), i) != null){
+                statuses[i] = CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL;
+            }
+        }
+
+        Set<String> existingEmails = customerDao.selectExistingEmails(candidates.keySet());
+
+        List<Customer> customers = new ArrayList<>();
+        candidates.forEach((email, index) -> {
+            if(existingEmails.contains(email)){
+                statuses[index] = CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL;
+                return;
+            }
+            CustomerRegistrationRequest request = requests.get(index);
+            customers.add(new Customer(request.name(), request.email(), request.age()));
+        });
+
+        if(!customers.isEmpty()){
+            customerDao.insertCustomers(customers).forEach(customer -> {
+                statuses[candidates.get(customer.getEmail())] = CustomerBulkRegistrationResult.Status.CREATED;
+                eventPublisher.publishEvent(CustomerChangedEvent.saved(customer));
+            });
+            // anything not returned lost a race against a concurrent registration of the same email
+            customers.forEach(customer -> {
+                int index = candidates.get(customer.getEmail());
+                if(statuses[index] == null){
+                    statuses[index] = CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL;
+                }
+            });
         }
-        customerDao.deleteCustomerById(id);
 
+        return CustomerBulkRegistrationResult.of(requests, statuses);
     }
 
+    static boolean isValid(CustomerRegistrationRequest request){
+        return request != null
+                && request.name() != null && !request.name().isBlank()
+                && request.email() != null && !request.email().isBlank()
+                && request.age() != null;
+    }
 
-    public void updateCustomer(Long id,UpdateRequest updateRequest){
+    /**
+     * Deletes the customer if {@code ifMatch} is absent or matches its current ETag.
+     */
+    public void deleteCustomer(Long id, String ifMatch){
+        if(ifMatch == null){
+            deleteCustomer(id);
+            return;
+        }
 
-        if(!customerDao.existPersonWithId(id)){
-            throw new ResourceNotFoundException("customer with id [%s] not found".formatted(id));
+        // the version is checked by the DELETE itself, nothing can change the row in between
+        Set<Long> versions = versionsOf(id, ifMatch);
+        Optional<Customer> deleted = versions == null
+                ? customerDao.deleteCustomerById(id)
+                : customerDao.deleteCustomerById(id, versions);
+        if(deleted.isEmpty()){
+            throw new PreconditionFailedException("customer with id [%s] does not match [%s]".formatted(id, ifMatch));
         }
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(deleted.get()));
+    }
 
-        Customer customer = getCustomerById(id);
+    public void deleteCustomer(Long id){
 
-        boolean change = false;
+        Customer deleted = customerDao.deleteCustomerById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("customer with id [%s] not found".formatted(id)));
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(deleted));
 
-        if(updateRequest.name() != null && !updateRequest.name().equals(customer.getName())){
-            customer.setName(updateRequest.name());
-            change = true;
-        }
+    }
 
-        if(updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())){
 
-            if(customerDao.existPersonWithEmail(updateRequest.email())){
-                throw  new DuplicateResourceException("email already exists");
-            }
+    /**
+     * Updates the customer if {@code ifMatch} is absent or matches its current
+     * ETag, and returns it as written.
+     */
+    public Customer updateCustomer(Long id, UpdateRequest updateRequest, String ifMatch){
+        if(ifMatch == null){
+            return updateCustomer(id, updateRequest);
+        }
 
-            customer.setEmail(updateRequest.email());
-            change = true;
+        // the version is checked by the UPDATE itself, nothing can change the row in between
+        Set<Long> versions = versionsOf(id, ifMatch);
+        CustomerUpdate update = new CustomerUpdate(id, updateRequest.name(), updateRequest.email(), updateRequest.age());
+        Optional<Customer> updated = update(update, () -> versions == null
+                ? customerDao.updateCustomer(update)
+                : customerDao.updateCustomer(update, versions));
+        if(updated.isPresent()){
+            return updated.get();
+        }
 
+        // nothing was written: tell a failed precondition apart from a request that changes nothing
+        Optional<Customer> current = customerDao.selectCustomerById(id);
+        if(current.isEmpty() || (versions != null && !versions.contains(current.get().getVersion()))){
+            throw new PreconditionFailedException("customer with id [%s] does not match [%s]".formatted(id, ifMatch));
         }
 
-        if(updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())){
-            customer.setAge(updateRequest.age());
-            change = true;
+        throw new NoDataChangeException("no data changes found");
+    }
+
+    /**
+     * The versions {@code ifMatch} lists, {@code null} for {@code *}. A header
+     * with only weak or foreign tags can't match any version, it fails before
+     * reaching the DAO.
+     */
+    private static Set<Long> versionsOf(Long id, String ifMatch){
+        Set<Long> versions = ETags.versionsOf(ifMatch);
+        if(versions != null && versions.isEmpty()){
+            throw new PreconditionFailedException("customer with id [%s] does not match [%s]".formatted(id, ifMatch));
         }
+        return versions;
+    }
+
+    public Customer updateCustomer(Long id,UpdateRequest updateRequest){
 
+        CustomerUpdate update = new CustomerUpdate(id, updateRequest.name(), updateRequest.email(), updateRequest.age());
 
-        if(!change){
-            throw new NoDataChangeException("no data changes found");
+        Optional<Customer> updated = update(update, () -> customerDao.updateCustomer(update));
+        if(updated.isPresent()){
+            return updated.get();
         }
 
-        customerDao.updateCustomer(customer);
+        // nothing was written: tell a missing customer apart from a request that changes nothing
+        if(!customerDao.existPersonWithId(id)){
+            throw new ResourceNotFoundException("customer with id [%s] not found".formatted(id));
+        }
+
+        throw new NoDataChangeException("no data changes found");
 
     }
 
+    private Optional<Customer> update(CustomerUpdate update, Supplier<Optional<Customer>> write){
+        if(!update.hasChanges()){
+            return Optional.empty();
+        }
+        try {
+            Optional<Customer> updated = write.get();
+            updated.ifPresent(customer -> eventPublisher.publishEvent(CustomerChangedEvent.saved(customer)));
+            return updated;
+        } catch (DuplicateKeyException e) {
+            throw  new DuplicateResourceException("email already exists");
+        }
+    }
+
 }
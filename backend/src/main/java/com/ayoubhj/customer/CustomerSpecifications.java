@@ -0,0 +1,53 @@
+package com.ayoubhj.customer;
+
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * JPA counterparts of the filters in {@link CustomerSearchSql}, written as
+ * the same SQL expressions so they hit the same indexes.
+ */
+final class CustomerSpecifications {
+
+    private CustomerSpecifications() {
+    }
+
+    static Specification<Customer> of(CustomerSearchCriteria criteria) {
+        Specification<Customer> specification = Specification.where(null);
+        if (criteria.minAge() != null) {
+            specification = specification.and(minAge(criteria.minAge()));
+        }
+        if (criteria.maxAge() != null) {
+            specification = specification.and(maxAge(criteria.maxAge()));
+        }
+        if (criteria.namePrefix() != null) {
+            specification = specification.and(namePrefix(criteria.namePrefix()));
+        }
+        if (criteria.emailDomain() != null) {
+            specification = specification.and(emailDomain(criteria.emailDomain()));
+        }
+        return specification;
+    }
+
+    static Specification<Customer> minAge(int age) {
+        return (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("age"), age);
+    }
+
+    static Specification<Customer> maxAge(int age) {
+        return (root, query, builder) -> builder.lessThanOrEqualTo(root.get("age"), age);
+    }
+
+    static Specification<Customer> namePrefix(String prefix) {
+        return (root, query, builder) -> builder.like(
+                builder.lower(root.get("name")),
+                builder.lower(builder.literal(CustomerSearchSql.escapeLike(prefix) + "%")),
+                '\\'
+        );
+    }
+
+    static Specification<Customer> emailDomain(String domain) {
+        return (root, query, builder) -> builder.equal(
+                builder.function("email_domain", String.class, root.get("email")),
+                builder.lower(builder.literal(domain))
+        );
+    }
+}
@@ -0,0 +1,35 @@
+package com.ayoubhj.customer;
+
+/**
+ * The columns of one customer that actually change. A {@code null} field is
+ * left untouched, so the DAO only writes what the caller modified.
+ */
+public record CustomerUpdate(
+        Long id,
+        String name,
+        String email,
+        Integer age
+) {
+
+    public boolean hasChanges() {
+        return name != null || email != null || age != null;
+    }
+
+    public boolean changes(Customer customer) {
+        return (name != null && !name.equals(customer.getName()))
+                || (email != null && !email.equals(customer.getEmail()))
+                || (age != null && !age.equals(customer.getAge()));
+    }
+
+    public void applyTo(Customer customer) {
+        if (name != null) {
+            customer.setName(name);
+        }
+        if (email != null) {
+            customer.setEmail(email);
+        }
+        if (age != null) {
+            customer.setAge(age);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.ayoubhj.customer;
+
+/**
+ * Published once a bulk load wrote rows straight to the table, bypassing
+ * {@link CustomerDao}, so in-process views of the data can resync.
+ */
+public record CustomersImportedEvent(
+        long rowsInserted
+) {
+}
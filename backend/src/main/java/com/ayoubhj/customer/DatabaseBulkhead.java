@@ -0,0 +1,91 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of database calls in flight, by default at the size of the
+ * connection pool. With virtual threads nothing else limits how many requests
+ * reach the database at once; this way the excess waits here, in order,
+ * instead of piling up inside the pool. A call that can't get a permit within
+ * {@code customer.db.acquire-timeout} fails with a 503.
+ * <p>
+ * Streams, the full-table scans of exports and rebuilds and the COPY of an
+ * import, hold their connection for seconds to minutes. They take permits
+ * from a small pool of their own, {@code customer.db.max-streams}, so they
+ * neither starve point calls nor wait behind them. Those permits are carved
+ * out of {@code customer.db.max-concurrency} rather than added to it: point
+ * calls get the rest, so calls and streams together never ask for more
+ * connections than the pool has.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class DatabaseBulkhead {
+
+    private final Semaphore calls;
+    private final Semaphore streams;
+    private final long timeoutNanos;
+    private final Timer waits;
+
+    public DatabaseBulkhead(@Value("${customer.db.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+                            @Value("${customer.db.max-streams:2}") int maxStreams,
+                            @Value("${customer.db.acquire-timeout:30s}") Duration timeout,
+                            MeterRegistry meterRegistry) {
+        if (maxStreams < 1 || maxStreams >= maxConcurrency) {
+            throw new IllegalArgumentException("customer.db.max-streams must be at least 1 and below customer.db.max-concurrency ("
+                    + maxConcurrency + "), was " + maxStreams);
+        }
+        int maxCalls = maxConcurrency - maxStreams;
+        this.calls = new Semaphore(maxCalls, true);
+        this.streams = new Semaphore(maxStreams, true);
+        this.timeoutNanos = timeout.toNanos();
+        this.waits = Timer.builder("customer.db.bulkhead.wait")
+                .register(meterRegistry);
+        Gauge.builder("customer.db.bulkhead.in-flight", calls, permits -> maxCalls - permits.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("customer.db.bulkhead.waiting", calls, Semaphore::getQueueLength)
+                .register(meterRegistry);
+        Gauge.builder("customer.db.bulkhead.streams.in-flight", streams, permits -> maxStreams - permits.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("customer.db.bulkhead.streams.waiting", streams, Semaphore::getQueueLength)
+                .register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> call) {
+        return call(calls, call);
+    }
+
+    public <T> T stream(Supplier<T> stream) {
+        return call(streams, stream);
+    }
+
+    private <T> T call(Semaphore permits, Supplier<T> call) {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("interrupted while waiting for a database connection");
+        }
+        waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            throw new ServiceBusyException("database is busy, try again later");
+        }
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
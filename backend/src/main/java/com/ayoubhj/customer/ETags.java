@@ -0,0 +1,88 @@
+package com.ayoubhj.customer;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Strong entity tags made from versions, and the header matching of
+ * RFC 9110: {@code If-None-Match} compares weakly, {@code If-Match} strongly.
+ * A compressed body differs byte for byte from the identity one, so each
+ * {@link CustomerResponseCache.Coding} gets a tag of its own, {@code "7-gzip"}
+ * next to {@code "7"}.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * The tag of the customer as read, {@code null} for one that was never stored.
+     */
+    static String of(Customer customer) {
+        return customer.getVersion() == null ? null : of(customer.getVersion());
+    }
+
+    static String of(String etag, CustomerResponseCache.Coding coding) {
+        if (coding == CustomerResponseCache.Coding.IDENTITY) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + coding.token() + "\"";
+    }
+
+    static boolean matchesIfNoneMatch(String header, String etag) {
+        return matchIfNoneMatch(header, etag) != null;
+    }
+
+    /**
+     * The tag of {@code etag} in any coding that the {@code If-None-Match}
+     * header names, the one a 304 goes out with. {@code null} if none does.
+     */
+    static String matchIfNoneMatch(String header, String etag) {
+        if (header == null || etag == null) {
+            return null;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*")) {
+                return etag;
+            }
+            for (CustomerResponseCache.Coding coding : CustomerResponseCache.Coding.values()) {
+                if (tag.equals(of(etag, coding))) {
+                    return tag;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The versions an {@code If-Match} header accepts, so the DAO can check
+     * them in the write itself. {@code null} for {@code *}, which accepts any
+     * current version. Weak tags never match strongly and are left out, as
+     * are tags that aren't versions.
+     */
+    static Set<Long> versionsOf(String ifMatch) {
+        Set<Long> versions = new HashSet<>();
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return null;
+            }
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                try {
+                    versions.add(Long.parseLong(tag.substring(1, tag.length() - 1)));
+                } catch (NumberFormatException e) {
+                    // not a tag this service handed out, it can't match
+                }
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,177 @@
+package com.ayoubhj.customer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scalable Bloom filter over customer emails. It starts with one slice sized
+ * for {@code expectedInsertions}; once a slice is full the next one is twice as
+ * large with half the false-positive rate, so the overall rate stays below the
+ * configured one however much the table grows. Safe for concurrent use.
+ */
+public class EmailBloomFilter {
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final double falsePositiveRate;
+    private final List<Slice> slices = new CopyOnWriteArrayList<>();
+    private final AtomicLong count = new AtomicLong();
+
+    public EmailBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        // the slice rates form a geometric series that sums to falsePositiveRate
+        slices.add(new Slice(expectedInsertions, falsePositiveRate * (1 - TIGHTENING_RATIO)));
+    }
+
+    public void put(String email) {
+        long hash = hash(email);
+        if (mightContain(hash)) {
+            return;
+        }
+        currentSlice().put(hash);
+        count.incrementAndGet();
+    }
+
+    public boolean mightContain(String email) {
+        return mightContain(hash(email));
+    }
+
+    public long approximateCount() {
+        return count.get();
+    }
+
+    public long bitSize() {
+        return slices.stream().mapToLong(slice -> slice.bitSize).sum();
+    }
+
+    public int sliceCount() {
+        return slices.size();
+    }
+
+    public double falsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Chance that a lookup for an absent email answers "maybe", given the
+     * slices and insertions seen so far.
+     */
+    public double expectedFalsePositiveRate() {
+        double allNegative = 1;
+        for (Slice slice : slices) {
+            allNegative *= 1 - slice.expectedFalsePositiveRate();
+        }
+        return 1 - allNegative;
+    }
+
+    private boolean mightContain(long hash) {
+        for (Slice slice : slices) {
+            if (slice.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Slice currentSlice() {
+        Slice last = slices.get(slices.size() - 1);
+        if (last.inserted.get() < last.capacity) {
+            return last;
+        }
+        synchronized (slices) {
+            last = slices.get(slices.size() - 1);
+            if (last.inserted.get() >= last.capacity) {
+                last = new Slice(last.capacity * GROWTH_FACTOR, last.falsePositiveRate * TIGHTENING_RATIO);
+                slices.add(last);
+            }
+            return last;
+        }
+    }
+
+    static long hash(String email) {
+        // FNV-1a over the UTF-8 bytes, finished with the murmur3 mixer
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : email.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Slice {
+
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bitSize;
+        private final int hashFunctions;
+        private final AtomicLongArray words;
+        private final AtomicLong inserted = new AtomicLong();
+
+        private Slice(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray(Math.toIntExact((bits + 63) / 64));
+            this.bitSize = words.length() * 64L;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / capacity * Math.log(2)));
+        }
+
+        private void put(long hash) {
+            // Kirsch-Mitzenmacher: derive the k probes from two halves of one hash
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashFunctions; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) * 0x9E3779B97F4A7C15L;
+                setBit(Long.remainderUnsigned(bit, bitSize));
+            }
+            inserted.incrementAndGet();
+        }
+
+        private boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashFunctions; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) * 0x9E3779B97F4A7C15L;
+                if (!getBit(Long.remainderUnsigned(bit, bitSize))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void setBit(long index) {
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+
+        private boolean getBit(long index) {
+            return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+        }
+
+        private double expectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashFunctions * inserted.get() / bitSize), hashFunctions);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.ayoubhj.customer;
+
+import io.r2dbc.postgresql.api.PostgresqlException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+/**
+ * Tells a taken email apart from the other integrity violations, so the SQL
+ * DAOs can report it as a {@link DuplicateKeyException} like the in-memory
+ * ones do. Spring only translates some drivers' unique violations to that
+ * exception, so the constraint name is looked up on the driver's error.
+ */
+final class EmailConflicts {
+
+    static final String EMAIL_CONSTRAINT = "customer_email_unique";
+
+    private EmailConflicts() {
+    }
+
+    /**
+     * {@code e} as a {@link DuplicateKeyException} if it violates the email
+     * constraint, else {@code e} itself.
+     */
+    static RuntimeException translate(DataIntegrityViolationException e, String email) {
+        return isEmailConflict(e) ? new DuplicateKeyException("email [%s] already exists".formatted(email), e) : e;
+    }
+
+    static boolean isEmailConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (EMAIL_CONSTRAINT.equals(constraintName(cause))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String constraintName(Throwable e) {
+        if (e instanceof ConstraintViolationException violation) {
+            return violation.getConstraintName();
+        }
+        if (e instanceof PSQLException psql) {
+            ServerErrorMessage message = psql.getServerErrorMessage();
+            return message == null ? null : message.getConstraint();
+        }
+        if (e instanceof PostgresqlException postgres) {
+            return postgres.getErrorDetails().getConstraintName().orElse(null);
+        }
+        return null;
+    }
+}
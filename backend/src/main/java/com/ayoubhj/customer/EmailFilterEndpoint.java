@@ -0,0 +1,34 @@
+package com.ayoubhj.customer;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/emailfilter} reports the filter state,
+ * {@code POST /actuator/emailfilter} rebuilds it from the table.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Endpoint(id = "emailfilter")
+public class EmailFilterEndpoint {
+
+    private final BloomFilterCustomerDao bloomFilterCustomerDao;
+
+    public EmailFilterEndpoint(BloomFilterCustomerDao bloomFilterCustomerDao) {
+        this.bloomFilterCustomerDao = bloomFilterCustomerDao;
+    }
+
+    @ReadOperation
+    public EmailFilterStats stats() {
+        return bloomFilterCustomerDao.stats();
+    }
+
+    @WriteOperation
+    public EmailFilterStats rebuild() {
+        bloomFilterCustomerDao.rebuild();
+        return bloomFilterCustomerDao.stats();
+    }
+}
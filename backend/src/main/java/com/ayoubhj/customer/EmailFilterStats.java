@@ -0,0 +1,13 @@
+package com.ayoubhj.customer;
+
+public record EmailFilterStats(
+        boolean ready,
+        boolean rebuilding,
+        long approximateCount,
+        long sizeInBytes,
+        int slices,
+        double configuredFalsePositiveRate,
+        double expectedFalsePositiveRate,
+        long staleEmails
+) {
+}
@@ -0,0 +1,105 @@
+package com.ayoubhj.customer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Base class for {@link CustomerDao} decorators: every call goes to the
+ * delegate unless the subclass overrides it.
+ */
+public abstract class ForwardingCustomerDao implements CustomerDao {
+
+    protected final CustomerDao delegate;
+
+    protected ForwardingCustomerDao(CustomerDao delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return delegate.selectCustomers(afterId, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        delegate.streamAllCustomers(consumer);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        return delegate.searchCustomers(criteria);
+    }
+
+    @Override
+    public List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        return delegate.fuzzySearchCustomers(query, threshold, limit);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        return delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        return delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id) {
+        return delegate.deleteCustomerById(id);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        return delegate.deleteCustomerById(id, versions);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return delegate.updateCustomer(update);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return delegate.updateCustomer(update, versions);
+    }
+
+    @Override
+    public long selectTableVersion() {
+        return delegate.selectTableVersion();
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        return delegate.existPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existPersonWithId(Long id) {
+        return delegate.existPersonWithId(id);
+    }
+}
@@ -0,0 +1,177 @@
+package com.ayoubhj.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Records every call of the wrapped DAO as {@code customer.dao.calls}
+ * (latency histogram, tagged by dao, method and outcome),
+ * {@code customer.dao.errors} (tagged by exception) and
+ * {@code customer.dao.rows}, the rows a call returned or changed. Existence
+ * checks don't touch rows and only get the timer.
+ */
+public class InstrumentedCustomerDao extends ForwardingCustomerDao {
+
+    private final String name;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    public InstrumentedCustomerDao(String name, CustomerDao delegate, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.name = name;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return record("selectAllCustomers", delegate::selectAllCustomers, List::size);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return record("selectCustomers", () -> delegate.selectCustomers(afterId, limit), List::size);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        AtomicLong rows = new AtomicLong();
+        record("streamAllCustomers", () -> {
+            delegate.streamAllCustomers(customer -> {
+                rows.incrementAndGet();
+                consumer.accept(customer);
+            });
+            return rows;
+        }, AtomicLong::get);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return record("selectCustomerById", () -> delegate.selectCustomerById(id), InstrumentedCustomerDao::rows);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return record("selectCustomersByIds", () -> delegate.selectCustomersByIds(ids), List::size);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        return record("searchCustomers", () -> delegate.searchCustomers(criteria), List::size);
+    }
+
+    @Override
+    public List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        return record("fuzzySearchCustomers", () -> delegate.fuzzySearchCustomers(query, threshold, limit), List::size);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        return record("insertCustomer", () -> delegate.insertCustomer(customer), inserted -> inserted ? 1 : 0);
+    }
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        return record("insertCustomers", () -> delegate.insertCustomers(customers), List::size);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id) {
+        return record("deleteCustomerById", () -> delegate.deleteCustomerById(id), InstrumentedCustomerDao::rows);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        return record("deleteCustomerById", () -> delegate.deleteCustomerById(id, versions), InstrumentedCustomerDao::rows);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return record("updateCustomer", () -> delegate.updateCustomer(update), InstrumentedCustomerDao::rows);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return record("updateCustomer", () -> delegate.updateCustomer(update, versions), InstrumentedCustomerDao::rows);
+    }
+
+    @Override
+    public long selectTableVersion() {
+        return record("selectTableVersion", delegate::selectTableVersion, null);
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        return record("existPersonWithEmail", () -> delegate.existPersonWithEmail(email), null);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return record("selectExistingEmails", () -> delegate.selectExistingEmails(emails), Set::size);
+    }
+
+    @Override
+    public boolean existPersonWithId(Long id) {
+        return record("existPersonWithId", () -> delegate.existPersonWithId(id), null);
+    }
+
+    private static long rows(Optional<?> result) {
+        return result.isPresent() ? 1 : 0;
+    }
+
+    private <T> T record(String method, Supplier<T> call, ToLongFunction<T> rows) {
+        MethodMeters methodMeters = meters.computeIfAbsent(method, this::methodMeters);
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            methodMeters.failure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            Counter.builder("customer.dao.errors")
+                    .tag("dao", name)
+                    .tag("method", method)
+                    .tag("exception", e.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+            throw e;
+        }
+        methodMeters.success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (rows != null) {
+            methodMeters.rows.record(rows.applyAsLong(result));
+        }
+        return result;
+    }
+
+    private MethodMeters methodMeters(String method) {
+        return new MethodMeters(timer(method, "success"), timer(method, "error"),
+                DistributionSummary.builder("customer.dao.rows")
+                        .tag("dao", name)
+                        .tag("method", method)
+                        .register(meterRegistry));
+    }
+
+    private Timer timer(String method, String outcome) {
+        return Timer.builder("customer.dao.calls")
+                .tag("dao", name)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private record MethodMeters(Timer success, Timer failure, DistributionSummary rows) {
+    }
+}
@@ -0,0 +1,634 @@
+package com.ayoubhj.customer;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable embedded store: every write is appended to memory-mapped segment
+ * files, and an in-memory index maps ids to record positions and emails to
+ * ids. Reads decode the record straight from the mapping.
+ * <p>
+ * A record is {@code length, crc32, payload}; the payload is a type byte, the
+ * id and, for puts, version, age, name and email. The version is 1 on insert
+ * and one more per update that changes the customer, as the database keeps it. A segment ends at the first zero
+ * length. On startup all segments are replayed in order; a bad record in the
+ * last segment is a write torn by a crash and everything from it on is
+ * discarded, a bad record anywhere else fails startup.
+ * <p>
+ * Updated and deleted records stay in the log until more than half of it is
+ * dead, then the live records are copied to fresh segments and the old ones
+ * removed, along with the tombstone of the highest id if that one was
+ * deleted. The copies are replayed after the originals, so a crash halfway
+ * through compaction still recovers the same state.
+ * <p>
+ * Writes are in the page cache once a call returns and survive a process
+ * crash. With {@code customer.log.fsync=true} they are also forced to disk
+ * and survive a power loss.
+ */
+@Lazy
+@Repository("log")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class LogCustomerDataAccessService implements CustomerDao {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogCustomerDataAccessService.class);
+
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    // customers decoded per read-lock hold while streaming, so writers get in between pages
+    static final int STREAM_PAGE_SIZE = 1000;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int DELETE_PAYLOAD_BYTES = 1 + Long.BYTES;
+    private static final int NO_AGE = Integer.MIN_VALUE;
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TableVersion tableVersion = new TableVersion();
+
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    private final NavigableMap<Long, Long> locationsById = new TreeMap<>();
+    private final Map<String, Long> idsByEmail = new HashMap<>();
+    private Segment active;
+    private long lastId;
+    private long liveBytes;
+    private long totalBytes;
+
+    public LogCustomerDataAccessService(@Value("${customer.log.directory:data/customer-log}") Path directory,
+                                        @Value("${customer.log.segment-size:64MB}") DataSize segmentSize,
+                                        @Value("${customer.log.fsync:false}") boolean fsync) {
+        this.directory = directory;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.fsync = fsync;
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open customer log in " + directory, e);
+        }
+        LOGGER.info("customer log opened with {} customers from {} segments in {} ms",
+                locationsById.size(), segments.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>(locationsById.size());
+            locationsById.values().forEach(location -> customers.add(read(location)));
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            return locationsById.tailMap(afterId, false).values().stream()
+                    .limit(limit)
+                    .map(this::read)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        long afterId = 0;
+        List<Customer> page;
+        do {
+            page = selectCustomers(afterId, STREAM_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(locationsById.get(id)).map(this::read);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>();
+            for (Long id : ids) {
+                Long location = locationsById.get(id);
+                if (location != null) {
+                    customers.add(read(location));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria) {
+        lock.readLock().lock();
+        try {
+            return locationsById.values().stream()
+                    .map(this::read)
+                    .filter(criteria::matches)
+                    .sorted(criteria.comparator())
+                    .limit(criteria.limit())
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit) {
+        Set<String> trigrams = Trigrams.of(query);
+        lock.readLock().lock();
+        try {
+            return locationsById.values().stream()
+                    .map(location -> CustomerMatch.of(read(location), trigrams))
+                    .filter(match -> match.similarity() >= threshold)
+                    .sorted(CustomerMatch.RANKING)
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            boolean inserted = insert(customer);
+            if (inserted) {
+                force();
+            }
+            return inserted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> insertCustomers(List<Customer> customers) {
+        lock.writeLock().lock();
+        try {
+            List<Customer> inserted = new ArrayList<>();
+            for (Customer customer : customers) {
+                if (insert(customer)) {
+                    inserted.add(customer);
+                }
+            }
+            force();
+            return inserted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id) {
+        return delete(id, null);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Long id, Collection<Long> versions) {
+        return delete(id, versions);
+    }
+
+    private Optional<Customer> delete(Long id, Collection<Long> versions) {
+        lock.writeLock().lock();
+        try {
+            Long location = locationsById.get(id);
+            if (location == null) {
+                return Optional.empty();
+            }
+            Customer customer = read(location);
+            if (versions != null && !versions.contains(customer.getVersion())) {
+                return Optional.empty();
+            }
+            append(encodeDelete(id));
+            dead(location);
+            locationsById.remove(id);
+            idsByEmail.remove(customer.getEmail());
+            force();
+            tableVersion.bump();
+            compactIfWasteful();
+            return Optional.of(customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update) {
+        return update(update, null);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(CustomerUpdate update, Collection<Long> versions) {
+        return update(update, versions);
+    }
+
+    private Optional<Customer> update(CustomerUpdate update, Collection<Long> versions) {
+        lock.writeLock().lock();
+        try {
+            Long location = locationsById.get(update.id());
+            if (location == null) {
+                return Optional.empty();
+            }
+            Customer customer = read(location);
+            if ((versions != null && !versions.contains(customer.getVersion())) || !update.changes(customer)) {
+                return Optional.empty();
+            }
+            String previousEmail = customer.getEmail();
+            update.applyTo(customer);
+            customer.setVersion(customer.getVersion() + 1);
+            boolean emailChanged = !customer.getEmail().equals(previousEmail);
+            if (emailChanged && idsByEmail.containsKey(customer.getEmail())) {
+                throw new DuplicateKeyException("email [%s] already exists".formatted(customer.getEmail()));
+            }
+            long updated = append(encodePut(customer));
+            dead(location);
+            locationsById.put(customer.getId(), updated);
+            if (emailChanged) {
+                idsByEmail.remove(previousEmail);
+                idsByEmail.put(customer.getEmail(), customer.getId());
+            }
+            force();
+            tableVersion.bump();
+            compactIfWasteful();
+            return Optional.of(customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long selectTableVersion() {
+        return tableVersion.get();
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        lock.readLock().lock();
+        try {
+            return idsByEmail.containsKey(email);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        lock.readLock().lock();
+        try {
+            Set<String> existing = new HashSet<>();
+            for (String email : emails) {
+                if (idsByEmail.containsKey(email)) {
+                    existing.add(email);
+                }
+            }
+            return existing;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existPersonWithId(Long id) {
+        lock.readLock().lock();
+        try {
+            return locationsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the live records into new segments and deletes the old ones.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            long start = System.nanoTime();
+            List<Segment> previous = new ArrayList<>(segments.values());
+            active = openSegment(segments.lastKey() + 1);
+            liveBytes = 0;
+            totalBytes = 0;
+            for (Map.Entry<Long, Long> entry : locationsById.entrySet()) {
+                byte[] record = recordAt(entry.getValue());
+                entry.setValue(append(record));
+                liveBytes += record.length;
+            }
+            if (lastId > (locationsById.isEmpty() ? 0 : locationsById.lastKey())) {
+                // ids come from the replayed records, keep the tombstone of the highest one so it isn't handed out again
+                append(encodeDelete(lastId));
+            }
+            for (Segment segment : segments.tailMap(previous.get(previous.size() - 1).number, false).values()) {
+                segment.buffer.force();
+            }
+            for (Segment segment : previous) {
+                segments.remove(segment.number);
+                segment.close();
+                Files.delete(segment.path);
+            }
+            LOGGER.info("customer log compacted to {} segments in {} ms",
+                    segments.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("customer log compaction failed", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.close();
+            }
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // recovery -------------------------------------------------------------------------------------------------------
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            Path path = files.get(i);
+            String name = path.getFileName().toString();
+            int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = openSegment(number);
+            replay(segment, i == files.size() - 1);
+        }
+        if (segments.isEmpty()) {
+            openSegment(1);
+        }
+        active = segments.lastEntry().getValue();
+    }
+
+    private void replay(Segment segment, boolean tail) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (!validRecord(buffer, offset, length)) {
+                if (!tail) {
+                    throw new IllegalStateException("corrupt record in %s at offset %s".formatted(segment.path, offset));
+                }
+                LOGGER.warn("discarding torn write in {} from offset {}", segment.path, offset);
+                for (int i = offset; i < segmentSize; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                buffer.force();
+                break;
+            }
+            apply(buffer, offset, location(segment.number, offset));
+            offset += HEADER_BYTES + length;
+        }
+        segment.position = offset;
+        totalBytes += offset;
+    }
+
+    private boolean validRecord(MappedByteBuffer buffer, int offset, int length) {
+        if (length < DELETE_PAYLOAD_BYTES || (long) offset + HEADER_BYTES + length > segmentSize) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(offset + Integer.BYTES);
+    }
+
+    private void apply(MappedByteBuffer buffer, int offset, long location) {
+        byte type = buffer.get(offset + HEADER_BYTES);
+        long id = buffer.getLong(offset + HEADER_BYTES + 1);
+        int size = HEADER_BYTES + buffer.getInt(offset);
+        Long previous = locationsById.get(id);
+        if (previous != null) {
+            idsByEmail.remove(read(previous).getEmail());
+            dead(previous);
+        }
+        lastId = Math.max(lastId, id);
+        if (type == PUT) {
+            locationsById.put(id, location);
+            idsByEmail.put(read(location).getEmail(), id);
+            liveBytes += size;
+        } else {
+            locationsById.remove(id);
+        }
+    }
+
+    // records --------------------------------------------------------------------------------------------------------
+
+    private boolean insert(Customer customer) {
+        if (idsByEmail.containsKey(customer.getEmail())) {
+            return false;
+        }
+        long id = ++lastId;
+        customer.setId(id);
+        customer.setVersion(1L);
+        byte[] record = encodePut(customer);
+        locationsById.put(id, append(record));
+        idsByEmail.put(customer.getEmail(), id);
+        liveBytes += record.length;
+        tableVersion.bump();
+        return true;
+    }
+
+    private static byte[] encodePut(Customer customer) {
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        int payload = DELETE_PAYLOAD_BYTES + Long.BYTES + 3 * Integer.BYTES + name.length + email.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload);
+        record.putInt(payload).putInt(0)
+                .put(PUT).putLong(customer.getId())
+                .putLong(customer.getVersion())
+                .putInt(customer.getAge() == null ? NO_AGE : customer.getAge())
+                .putInt(name.length).put(name)
+                .putInt(email.length).put(email);
+        return sign(record);
+    }
+
+    private static byte[] encodeDelete(long id) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + DELETE_PAYLOAD_BYTES);
+        record.putInt(DELETE_PAYLOAD_BYTES).putInt(0)
+                .put(DELETE).putLong(id);
+        return sign(record);
+    }
+
+    private static byte[] sign(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_BYTES, record.capacity() - HEADER_BYTES);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.array();
+    }
+
+    private Customer read(long location) {
+        MappedByteBuffer buffer = segments.get(segmentOf(location)).buffer;
+        int offset = offsetOf(location) + HEADER_BYTES + DELETE_PAYLOAD_BYTES;
+        long id = buffer.getLong(offset - Long.BYTES);
+        long version = buffer.getLong(offset);
+        offset += Long.BYTES;
+        int age = buffer.getInt(offset);
+        byte[] name = new byte[buffer.getInt(offset + Integer.BYTES)];
+        buffer.get(offset + 2 * Integer.BYTES, name);
+        int emailOffset = offset + 2 * Integer.BYTES + name.length;
+        byte[] email = new byte[buffer.getInt(emailOffset)];
+        buffer.get(emailOffset + Integer.BYTES, email);
+        return new Customer(
+                id,
+                new String(name, StandardCharsets.UTF_8),
+                new String(email, StandardCharsets.UTF_8),
+                age == NO_AGE ? null : age,
+                version
+        );
+    }
+
+    private byte[] recordAt(long location) {
+        MappedByteBuffer buffer = segments.get(segmentOf(location)).buffer;
+        int offset = offsetOf(location);
+        byte[] record = new byte[HEADER_BYTES + buffer.getInt(offset)];
+        buffer.get(offset, record);
+        return record;
+    }
+
+    private long append(byte[] record) {
+        if (record.length + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("customer record of %s bytes does not fit a segment".formatted(record.length));
+        }
+        if (active.position + record.length > segmentSize) {
+            force();
+            active = openSegment(active.number + 1);
+        }
+        int offset = active.position;
+        active.buffer.put(offset, record);
+        active.position += record.length;
+        totalBytes += record.length;
+        return location(active.number, offset);
+    }
+
+    private void dead(long location) {
+        liveBytes -= HEADER_BYTES + segments.get(segmentOf(location)).buffer.getInt(offsetOf(location));
+    }
+
+    private void force() {
+        if (fsync) {
+            active.buffer.force();
+        }
+    }
+
+    private void compactIfWasteful() {
+        if (totalBytes >= MIN_COMPACTION_BYTES && liveBytes * 2 < totalBytes) {
+            compact();
+        }
+    }
+
+    private static long location(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    // segments -------------------------------------------------------------------------------------------------------
+
+    private Segment openSegment(int number) {
+        Path path = directory.resolve("%s%010d%s".formatted(SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(number, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            segments.put(number, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("cannot open customer log segment " + path, e);
+        }
+    }
+
+    private static final class Segment {
+
+        private final int number;
+        private final Path path;
+        private MappedByteBuffer buffer;
+        private int position;
+
+        private Segment(int number, Path path, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private void close() {
+            // the mapping is released once the buffer is collected
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.ayoubhj.customer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * WebFlux version of {@link CustomerController}, served instead of it when the
+ * app runs as a reactive web application. CSV import is left to the servlet
+ * stack: it is a single COPY over a JDBC connection.
+ */
+@RestController
+@RequestMapping("api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService customerService;
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    // rows are written as the database hands them over, at the pace the client reads them
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Customer> getAllCustomers(){
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping("/page")
+    public Mono<CustomerPage> getCustomers(@RequestParam(required = false) String after,
+                                           @RequestParam(required = false) Integer limit){
+        return customerService.getCustomers(after, limit);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> exportCustomers(){
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping("/search")
+    public Flux<Customer> searchCustomers(@RequestParam(required = false) Integer minAge,
+                                          @RequestParam(required = false) Integer maxAge,
+                                          @RequestParam(required = false) String name,
+                                          @RequestParam(required = false) String emailDomain,
+                                          @RequestParam(required = false) String sort,
+                                          @RequestParam(required = false) Integer limit){
+        return customerService.searchCustomers(minAge, maxAge, name, emailDomain, sort, limit);
+    }
+
+    @GetMapping("/search/fuzzy")
+    public Flux<CustomerMatch> fuzzySearchCustomers(@RequestParam String q,
+                                                    @RequestParam(required = false) Integer limit){
+        return customerService.fuzzySearchCustomers(q, limit);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<Customer> getCustomerById(@PathVariable Long id){
+        return customerService.getCustomerById(id);
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Void>> createCustomer(@RequestBody CustomerRegistrationRequest customer){
+        return customerService.insertCustomer(customer)
+                .thenReturn(new ResponseEntity<>(HttpStatus.CREATED));
+    }
+
+    @PostMapping("/lookup")
+    public Mono<CustomerLookupResult> lookupCustomers(@RequestBody List<Long> ids){
+        return customerService.lookupCustomers(ids);
+    }
+
+    @PostMapping("/bulk")
+    public Mono<List<CustomerBulkRegistrationResult>> createCustomers(@RequestBody List<CustomerRegistrationRequest> customers){
+        return customerService.insertCustomers(customers);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteCustomer(@PathVariable Long id){
+        return customerService.deleteCustomer(id)
+                .thenReturn(new ResponseEntity<>(HttpStatus.ACCEPTED));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Void>> updateCustomer(@PathVariable Long id, @RequestBody UpdateRequest updateRequest){
+        return customerService.updateCustomer(id, updateRequest)
+                .thenReturn(new ResponseEntity<>(HttpStatus.ACCEPTED));
+    }
+}
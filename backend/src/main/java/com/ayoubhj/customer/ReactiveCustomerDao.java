@@ -0,0 +1,50 @@
+package com.ayoubhj.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link CustomerDao}. An empty {@link Mono}
+ * plays the part of an empty {@link java.util.Optional}.
+ */
+public interface ReactiveCustomerDao {
+
+    Flux<Customer> selectAllCustomers();
+
+    Flux<Customer> selectCustomers(Long afterId, int limit);
+
+    Mono<Customer> selectCustomerById(Long id);
+
+    Flux<Customer> selectCustomersByIds(Collection<Long> ids);
+
+    Flux<Customer> searchCustomers(CustomerSearchCriteria criteria);
+
+    Flux<CustomerMatch> fuzzySearchCustomers(String query, double threshold, int limit);
+
+    /**
+     * @return the customer with its generated id, empty if the email is taken
+     */
+    Mono<Customer> insertCustomer(Customer customer);
+
+    /**
+     * @return the rows that went in, those whose email was taken are left out
+     */
+    Flux<Customer> insertCustomers(List<Customer> customers);
+
+    Mono<Customer> deleteCustomerById(Long id);
+
+    /**
+     * Fails with a {@link org.springframework.dao.DuplicateKeyException} if the new email is taken.
+     */
+    Mono<Customer> updateCustomer(CustomerUpdate update);
+
+    Mono<Boolean> existPersonWithEmail(String email);
+
+    Flux<String> selectExistingEmails(Collection<String> emails);
+
+    Mono<Boolean> existPersonWithId(Long id);
+
+}
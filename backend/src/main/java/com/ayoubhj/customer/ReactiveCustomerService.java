@@ -0,0 +1,172 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.exception.DuplicateResourceException;
+import com.ayoubhj.exception.NoDataChangeException;
+import com.ayoubhj.exception.RequestValidationException;
+import com.ayoubhj.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.ayoubhj.customer.CustomerService.DEFAULT_PAGE_SIZE;
+import static com.ayoubhj.customer.CustomerService.MAX_BULK_SIZE;
+import static com.ayoubhj.customer.CustomerService.MAX_PAGE_SIZE;
+
+/**
+ * Same rules as {@link CustomerService}, on top of a {@link ReactiveCustomerDao}.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerService {
+
+    private final ReactiveCustomerDao customerDao;
+    private final double fuzzySearchThreshold;
+
+    public ReactiveCustomerService(ReactiveCustomerDao customerDao,
+                                   @Value("${customer.fuzzy-search.threshold:0.5}") double fuzzySearchThreshold) {
+        this.customerDao = customerDao;
+        this.fuzzySearchThreshold = fuzzySearchThreshold;
+    }
+
+    public Flux<Customer> getAllCustomers(){
+        return customerDao.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomers(String after, Integer limit){
+        return Mono.defer(() -> {
+            int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+                return Mono.error(new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)));
+            }
+
+            // fetch one extra row to know whether another page exists without a count(*)
+            return customerDao.selectCustomers(CustomerCursor.decode(after), pageSize + 1)
+                    .collectList()
+                    .map(customers -> {
+                        if(customers.size() <= pageSize){
+                            return new CustomerPage(customers, null);
+                        }
+                        List<Customer> page = customers.subList(0, pageSize);
+                        return new CustomerPage(page, CustomerCursor.encode(page.get(pageSize - 1).getId()));
+                    });
+        });
+    }
+
+    public Mono<Customer> getCustomerById(Long id){
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("customer with id [%s] not found".formatted(id))));
+    }
+
+    public Mono<CustomerLookupResult> lookupCustomers(List<Long> ids){
+        return Mono.fromCallable(() -> CustomerService.lookupIds(ids))
+                .flatMap(distinctIds -> customerDao.selectCustomersByIds(distinctIds)
+                        .collectList()
+                        .map(found -> CustomerLookupResult.of(distinctIds, found)));
+    }
+
+    public Flux<Customer> searchCustomers(Integer minAge, Integer maxAge, String name, String emailDomain,
+                                          String sort, Integer limit){
+        return Mono.fromCallable(() -> CustomerService.searchCriteria(minAge, maxAge, name, emailDomain, sort, limit))
+                .flatMapMany(customerDao::searchCustomers);
+    }
+
+    public Flux<CustomerMatch> fuzzySearchCustomers(String query, Integer limit){
+        return Mono.fromCallable(() -> CustomerService.fuzzyQuery(query))
+                .flatMapMany(trimmed -> customerDao.fuzzySearchCustomers(
+                        trimmed, fuzzySearchThreshold, CustomerService.fuzzySearchLimit(limit)));
+    }
+
+    public Mono<Customer> insertCustomer(CustomerRegistrationRequest customerRegistrationRequest){
+        Customer customer = new Customer(
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age()
+        );
+
+        return customerDao.insertCustomer(customer)
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceException("email already exists")));
+    }
+
+    public Mono<List<CustomerBulkRegistrationResult>> insertCustomers(List<CustomerRegistrationRequest> requests){
+
+        if(requests.size() > MAX_BULK_SIZE){
+            return Mono.error(new RequestValidationException("at most %s customers can be registered at once".formatted(MAX_BULK_SIZE)));
+        }
+
+        CustomerBulkRegistrationResult.Status[] statuses = new CustomerBulkRegistrationResult.Status[requests.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            if(!CustomerService.isValid(request)){
+                statuses[i] = CustomerBulkRegistrationResult.Status.INVALID;
+            } else if(candidates.putIfAbsent(request.email(), i) != null){
+                statuses[i] = CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL;
+            }
+        }
+
+        return customerDao.selectExistingEmails(candidates.keySet())
+                .collect(Collectors.toSet())
+                .flatMap(existingEmails -> {
+                    List<Customer> customers = new ArrayList<>();
+                    candidates.forEach((email, index) -> {
+                        if(existingEmails.contains(email)){
+                            statuses[index] = CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL;
+                            return;
+                        }
+                        CustomerRegistrationRequest request = requests.get(index);
+                        customers.add(new Customer(request.name(), request.email(), request.age()));
+                    });
+                    if(customers.isEmpty()){
+                        return Mono.just(customers);
+                    }
+                    return customerDao.insertCustomers(customers)
+                            .doOnNext(customer -> statuses[candidates.get(customer.getEmail())] = CustomerBulkRegistrationResult.Status.CREATED)
+                            .then(Mono.just(customers));
+                })
+                .map(customers -> {
+                    // anything not returned lost a race against a concurrent registration of the same email
+                    customers.forEach(customer -> {
+                        int index = candidates.get(customer.getEmail());
+                        if(statuses[index] == null){
+                            statuses[index] = CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL;
+                        }
+                    });
+                    return CustomerBulkRegistrationResult.of(requests, statuses);
+                });
+    }
+
+    public Mono<Void> deleteCustomer(Long id){
+        return customerDao.deleteCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("customer with id [%s] not found".formatted(id))))
+                .then();
+    }
+
+    public Mono<Void> updateCustomer(Long id, UpdateRequest updateRequest){
+
+        CustomerUpdate update = new CustomerUpdate(id, updateRequest.name(), updateRequest.email(), updateRequest.age());
+
+        Mono<Customer> updated = update.hasChanges()
+                ? customerDao.updateCustomer(update)
+                        .onErrorMap(DuplicateKeyException.class, e -> new DuplicateResourceException("email already exists"))
+                : Mono.empty();
+
+        // nothing was written: tell a missing customer apart from a request that changes nothing
+        return updated
+                .switchIfEmpty(Mono.defer(() -> customerDao.existPersonWithId(id))
+                        .flatMap(exists -> Mono.error(exists
+                                ? new NoDataChangeException("no data changes found")
+                                : new ResourceNotFoundException("customer with id [%s] not found".formatted(id)))))
+                .then();
+    }
+
+}
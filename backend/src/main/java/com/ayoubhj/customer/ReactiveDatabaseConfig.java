@@ -0,0 +1,53 @@
+package com.ayoubhj.customer;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+/**
+ * R2DBC pool for the reactive stack. Boot's R2DBC auto-configuration is
+ * excluded so the servlet app doesn't carry an idle second pool, and so JPA's
+ * transaction manager stays the only one. The pool is deliberately not a
+ * {@code ConnectionFactory} bean: the JDBC DataSource, which Flyway and the
+ * startup seed still need, backs off as soon as one exists. The blocking
+ * DAOs themselves are servlet-only.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveDatabaseConfig {
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient databaseClient(@Value("${customer.r2dbc.url}") String url,
+                                         @Value("${customer.r2dbc.username}") String username,
+                                         @Value("${customer.r2dbc.password}") String password,
+                                         @Value("${customer.r2dbc.pool.max-size:20}") int maxSize,
+                                         @Value("${customer.r2dbc.pool.max-acquire-time:30s}") Duration maxAcquireTime) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .maxSize(maxSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ayoubhj.customer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a rebuild that reads the whole table, never two at once.
+ * <p>
+ * A request that comes in while a rebuild is running isn't dropped: that
+ * rebuild may already have streamed past the rows the request is about, so it
+ * runs once more when it is done. All the requests made during one run are
+ * covered by that single rerun. Background requests run on a thread of their
+ * own, the scans block on JDBC and don't belong on the common pool.
+ */
+final class SerialRebuild {
+
+    private final Runnable rebuild;
+    private final ExecutorService executor;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    SerialRebuild(String name, Runnable rebuild) {
+        this.rebuild = rebuild;
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Rebuilds on the calling thread. Returns false if a rebuild was already
+     * running, it then runs again for this request.
+     */
+    boolean run() {
+        pending.set(true);
+        return drain();
+    }
+
+    /**
+     * Rebuilds on the rebuild thread. Failures are left to the rebuild to log.
+     */
+    void request() {
+        pending.set(true);
+        // set before the check: a running rebuild either sees the request or has already stopped
+        if (!running.get()) {
+            executor.execute(() -> {
+                try {
+                    drain();
+                } catch (RuntimeException ignored) {
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs {@code task} on the rebuild thread, after the background rebuild
+     * in progress if there is one.
+     */
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    boolean isRunning() {
+        return running.get();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean drain() {
+        boolean rebuilt = false;
+        RuntimeException failure = null;
+        while (pending.get() && running.compareAndSet(false, true)) {
+            try {
+                pending.set(false);
+                rebuild.run();
+                rebuilt = true;
+                failure = null;
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                running.set(false);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return rebuilt;
+    }
+}
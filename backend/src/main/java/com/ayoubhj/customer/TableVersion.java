@@ -0,0 +1,27 @@
+package com.ayoubhj.customer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The collection version of a store that has no database triggers to keep
+ * it, see {@link CustomerDao#selectTableVersion()}. Writers bump it once the
+ * change is visible, so a reader never sees the new version with the old
+ * data.
+ * <p>
+ * It starts from the clock rather than from zero: a tag handed out by an
+ * earlier process must not match the data of this one. Shifted by 20 bits,
+ * that holds as long as the earlier process wrote less than about a million
+ * times per millisecond it was down.
+ */
+final class TableVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() << 20);
+
+    long get() {
+        return version.get();
+    }
+
+    void bump() {
+        version.incrementAndGet();
+    }
+}
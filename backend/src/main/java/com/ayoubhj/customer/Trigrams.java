@@ -0,0 +1,49 @@
+package com.ayoubhj.customer;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The trigrams of pg_trgm, for the stores that have no database behind them:
+ * lower-cased words of letters and digits, padded with two spaces in front
+ * and one behind.
+ */
+final class Trigrams {
+
+    private Trigrams() {
+    }
+
+    static Set<String> of(String text) {
+        Set<String> trigrams = new HashSet<>();
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean wordChar = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String padded = "  " + lowerCase.substring(start, i) + " ";
+                for (int j = 0; j + 3 <= padded.length(); j++) {
+                    trigrams.add(padded.substring(j, j + 3));
+                }
+                start = -1;
+            }
+        }
+        return trigrams;
+    }
+
+    /**
+     * Share of the query's trigrams found in the text. Postgres' word_similarity
+     * only counts trigrams within one stretch of the text, so for queries of
+     * several words this can score a little higher than Postgres would.
+     */
+    static double wordSimilarity(Set<String> query, String text) {
+        if (query.isEmpty() || text == null) {
+            return 0;
+        }
+        Set<String> found = of(text);
+        long common = query.stream().filter(found::contains).count();
+        return (double) common / query.size();
+    }
+}
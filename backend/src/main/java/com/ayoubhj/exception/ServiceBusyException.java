@@ -0,0 +1,12 @@
+package com.ayoubhj.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceBusyException extends RuntimeException{
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
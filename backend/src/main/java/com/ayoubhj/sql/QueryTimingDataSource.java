@@ -0,0 +1,241 @@
+package com.ayoubhj.sql;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wraps connections and statements in JDK proxies to time every
+ * {@code execute*} call and hand it to the {@link SlowQueryLog}. Result sets
+ * are wrapped in a {@link TimedResultSet}: the time from the execution to the
+ * close is recorded apart as fetching, and the row count is the number of
+ * {@code next()} calls that returned {@code true}. Bind parameters are kept
+ * by position in a plain array, they only become a sorted map for statements
+ * slow enough to be logged.
+ */
+public class QueryTimingDataSource extends DelegatingDataSource {
+
+    private final SlowQueryLog slowQueryLog;
+
+    public QueryTimingDataSource(DataSource target, SlowQueryLog slowQueryLog) {
+        super(target);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return proxy(Connection.class, new ConnectionHandler(connection));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(QueryTimingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static Object unwrap(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        Class<?> iface = (Class<?>) args[0];
+        if (method.getName().equals("isWrapperFor")) {
+            return iface.isInstance(proxy) || (Boolean) invoke(target, method, args);
+        }
+        return iface.isInstance(proxy) ? proxy : invoke(target, method, args);
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "unwrap", "isWrapperFor" -> {
+                    return unwrap(proxy, target, method, args);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Timed" + target;
+                }
+                default -> {
+                }
+            }
+            Object result = QueryTimingDataSource.invoke(target, method, args);
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            if (result instanceof CallableStatement statement) {
+                return proxy(CallableStatement.class, new StatementHandler(statement, sql, (Connection) proxy));
+            }
+            if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, new StatementHandler(statement, sql, (Connection) proxy));
+            }
+            if (result instanceof Statement statement) {
+                return proxy(Statement.class, new StatementHandler(statement, null, (Connection) proxy));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+        private final Connection connection;
+        private Object[] parameters = new Object[8];
+        // highest position bound since the last clearParameters(), positions start at 1
+        private int parameterCount;
+        private final StringBuilder batch = new StringBuilder();
+
+        private StatementHandler(Statement target, String preparedSql, Connection connection) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "unwrap", "isWrapperFor" -> {
+                    return unwrap(proxy, target, method, args);
+                }
+                case "getConnection" -> {
+                    return connection;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "clearParameters" -> clearParameters();
+                case "addBatch" -> {
+                    if (args != null && args.length == 1 && args[0] instanceof String sql) {
+                        batch.append(batch.isEmpty() ? "" : "; ").append(sql);
+                    }
+                }
+                case "clearBatch" -> batch.setLength(0);
+                case "setNull" -> bind((Integer) args[0], null);
+                default -> {
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                        bind(index, args[1]);
+                    }
+                }
+            }
+            if (!name.startsWith("execute")) {
+                return QueryTimingDataSource.invoke(target, method, args);
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+            if (name.equals("executeBatch") && preparedSql == null) {
+                sql = batch.toString();
+            }
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = QueryTimingDataSource.invoke(target, method, args);
+            } catch (Throwable e) {
+                long nanos = System.nanoTime() - start;
+                slowQueryLog.record(sql, nanos, 0, -1, bound(nanos), true);
+                throw e;
+            }
+            long executed = System.nanoTime();
+            long nanos = executed - start;
+            Map<Integer, Object> bound = bound(nanos);
+            if (result instanceof ResultSet resultSet) {
+                String query = sql;
+                return new TimedResultSet(resultSet, (Statement) proxy,
+                        rows -> slowQueryLog.record(query, nanos, System.nanoTime() - executed, rows, bound, false));
+            }
+            slowQueryLog.record(sql, nanos, 0, rows(result), bound, false);
+            if (name.equals("executeBatch")) {
+                batch.setLength(0);
+            }
+            return result;
+        }
+
+        private void bind(int index, Object value) {
+            if (index < 1) {
+                return;
+            }
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        private void clearParameters() {
+            Arrays.fill(parameters, 0, parameterCount, null);
+            parameterCount = 0;
+        }
+
+        private Map<Integer, Object> bound(long nanos) {
+            if (parameterCount == 0 || !slowQueryLog.isSlow(nanos)) {
+                return Map.of();
+            }
+            Map<Integer, Object> bound = new TreeMap<>();
+            for (int index = 1; index <= parameterCount; index++) {
+                bound.put(index, parameters[index - 1]);
+            }
+            return Collections.unmodifiableMap(bound);
+        }
+
+        private long rows(Object result) {
+            if (result instanceof Number count) {
+                return count.longValue();
+            }
+            if (result instanceof int[] counts) {
+                long rows = 0;
+                for (int count : counts) {
+                    rows += Math.max(count, 0);
+                }
+                return rows;
+            }
+            if (result instanceof long[] counts) {
+                long rows = 0;
+                for (long count : counts) {
+                    rows += Math.max(count, 0);
+                }
+                return rows;
+            }
+            return -1;
+        }
+    }
+}
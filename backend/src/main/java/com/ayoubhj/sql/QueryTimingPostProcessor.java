@@ -0,0 +1,33 @@
+package com.ayoubhj.sql;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Puts a {@link QueryTimingDataSource} in front of the application's
+ * {@link DataSource}, so JdbcTemplate, JPA and Flyway all go through it.
+ * With {@code customer.sql.slow-log.enabled=false} nothing is wrapped and
+ * statements reach the pool without any timing.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.sql.slow-log.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryTimingPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<SlowQueryLog> slowQueryLog;
+
+    public QueryTimingPostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof QueryTimingDataSource)) {
+            return new QueryTimingDataSource(dataSource, slowQueryLog.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,33 @@
+package com.ayoubhj.sql;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/slowqueries} lists the slowest query shapes,
+ * {@code DELETE /actuator/slowqueries} starts a fresh window.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.sql.slow-log.enabled", havingValue = "true", matchIfMissing = true)
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryEndpoint(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public SlowQueryReport slowQueries() {
+        return slowQueryLog.report();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        slowQueryLog.reset();
+    }
+}
@@ -0,0 +1,234 @@
+package com.ayoubhj.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the timing of every statement run through {@link QueryTimingDataSource}.
+ * Statements that take longer than {@code customer.sql.slow-threshold} to
+ * execute are logged with their row count and redacted bind parameters. The
+ * time spent reading the rows afterwards is kept apart: a streamed export
+ * reads for as long as its client takes, that doesn't make its query slow.
+ * <p>
+ * Per query shape (the SQL with literals replaced by {@code ?}) it keeps
+ * count, total and slowest time for the current window of
+ * {@code customer.sql.window}; the previous window is kept for comparison
+ * once a new one starts. Recording is on the path of every statement, so the
+ * shape of a SQL string is worked out once and cached, and the counters are
+ * adders that concurrent statements don't wait on.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.sql.slow-log.enabled", havingValue = "true", matchIfMissing = true)
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    static final int MAX_SHAPES = 1000;
+    // prepared statements repeat the same few strings, SQL with literals inlined would fill it up
+    static final int MAX_CACHED_SHAPES = 10_000;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long thresholdNanos;
+    private final int topN;
+    private final Duration window;
+    private final Clock clock;
+    private final Map<String, String> shapesBySql = new ConcurrentHashMap<>();
+    private volatile Window current;
+    private volatile Window previous;
+
+    @Autowired
+    public SlowQueryLog(@Value("${customer.sql.slow-threshold:200ms}") Duration threshold,
+                        @Value("${customer.sql.top-n:20}") int topN,
+                        @Value("${customer.sql.window:1h}") Duration window) {
+        this(threshold, topN, window, Clock.systemUTC());
+    }
+
+    SlowQueryLog(Duration threshold, int topN, Duration window, Clock clock) {
+        this.thresholdNanos = threshold.toNanos();
+        this.topN = topN;
+        this.window = window;
+        this.clock = clock;
+        this.current = new Window(clock.instant());
+    }
+
+    /**
+     * @param nanos time the statement took to execute
+     * @param fetchNanos time spent reading its rows after that, 0 if it returned none
+     * @param rows rows returned or changed, negative if unknown
+     * @param parameters bind parameters by index, may be empty
+     */
+    public void record(String sql, long nanos, long fetchNanos, long rows, Map<Integer, Object> parameters, boolean failed) {
+        Window window = currentWindow();
+        String shape = cachedShape(sql);
+        ShapeStats stats = window.shapes.get(shape);
+        if (stats == null && window.shapes.size() < MAX_SHAPES) {
+            stats = window.shapes.computeIfAbsent(shape, key -> new ShapeStats());
+        }
+        if (stats != null) {
+            stats.record(nanos, fetchNanos, rows, failed);
+        }
+        if (isSlow(nanos)) {
+            LOGGER.warn("slow query took {} ms{}{}{}: {}{}",
+                    TimeUnit.NANOSECONDS.toMillis(nanos),
+                    rows >= 0 ? ", " + rows + " rows" : "",
+                    fetchNanos > 0 ? ", read in " + TimeUnit.NANOSECONDS.toMillis(fetchNanos) + " ms" : "",
+                    failed ? ", failed" : "",
+                    WHITESPACE.matcher(sql.strip()).replaceAll(" "),
+                    parameters.isEmpty() ? "" : " " + redact(parameters));
+        }
+    }
+
+    public boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    public SlowQueryReport report() {
+        Window window = currentWindow();
+        Window last = previous;
+        return new SlowQueryReport(
+                Duration.ofNanos(thresholdNanos).toMillis(),
+                window.start,
+                top(window),
+                last == null ? null : last.start,
+                last == null ? List.of() : top(last)
+        );
+    }
+
+    public void reset() {
+        previous = null;
+        current = new Window(clock.instant());
+    }
+
+    private List<SlowQueryReport.Shape> top(Window window) {
+        return window.shapes.entrySet().stream()
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .sorted(Comparator.comparingDouble(SlowQueryReport.Shape::maxMillis).reversed())
+                .limit(topN)
+                .toList();
+    }
+
+    private Window currentWindow() {
+        Window window = current;
+        Instant now = clock.instant();
+        if (now.isBefore(window.start.plus(this.window))) {
+            return window;
+        }
+        synchronized (this) {
+            if (current == window) {
+                previous = window;
+                current = new Window(now);
+            }
+            return current;
+        }
+    }
+
+    private String cachedShape(String sql) {
+        String shape = shapesBySql.get(sql);
+        if (shape == null) {
+            shape = shape(sql);
+            if (shapesBySql.size() < MAX_CACHED_SHAPES) {
+                shapesBySql.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    static String shape(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return WHITESPACE.matcher(shape.strip()).replaceAll(" ");
+    }
+
+    /**
+     * Numbers, booleans and nulls are kept, they are ids, ages and limits
+     * here. Anything else, names and emails in particular, is reduced to its
+     * type and size.
+     */
+    static String redact(Map<Integer, Object> parameters) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        parameters.forEach((index, value) -> joiner.add(index + "=" + redact(value)));
+        return joiner.toString();
+    }
+
+    private static String redact(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            return String.valueOf(value);
+        }
+        if (value instanceof String string) {
+            return "<string(%d)>".formatted(string.length());
+        }
+        return "<%s>".formatted(value.getClass().getSimpleName());
+    }
+
+    private static final class Window {
+
+        private final Instant start;
+        private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+
+        private Window(Instant start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * A snapshot taken while statements are recorded may be off by the ones
+     * in flight, each counter is read on its own.
+     */
+    private static final class ShapeStats {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder fetchNanos = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+
+        private void record(long nanos, long fetchNanos, long rows, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            this.fetchNanos.add(fetchNanos);
+            maxNanos.accumulate(nanos);
+            if (failed) {
+                failures.increment();
+            }
+            if (rows > 0) {
+                this.rows.add(rows);
+            }
+        }
+
+        private SlowQueryReport.Shape snapshot(String sql) {
+            long count = this.count.sum();
+            double totalMillis = totalNanos.sum() / 1e6;
+            return new SlowQueryReport.Shape(
+                    sql,
+                    count,
+                    failures.sum(),
+                    totalMillis,
+                    count == 0 ? 0 : totalMillis / count,
+                    maxNanos.get() / 1e6,
+                    fetchNanos.sum() / 1e6,
+                    rows.sum()
+            );
+        }
+    }
+}
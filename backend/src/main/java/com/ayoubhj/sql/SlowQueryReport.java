@@ -0,0 +1,25 @@
+package com.ayoubhj.sql;
+
+import java.time.Instant;
+import java.util.List;
+
+public record SlowQueryReport(
+        long thresholdMillis,
+        Instant windowStart,
+        List<Shape> slowest,
+        Instant previousWindowStart,
+        List<Shape> previousSlowest
+) {
+
+    public record Shape(
+            String sql,
+            long count,
+            long failures,
+            double totalMillis,
+            double meanMillis,
+            double maxMillis,
+            double totalFetchMillis,
+            long rows
+    ) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.ayoubhj.threads;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The app is built for Java 17, where virtual threads don't exist, so the
+ * executor is looked up reflectively. On an older runtime this fails at
+ * startup rather than quietly falling back to platform threads. The image
+ * built with {@code -Pjava21}, which is the one CD deploys, runs on Java 21.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(
+                    "customer.threads.mode=virtual needs Java 21 or later, running on " + Runtime.version(), e);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("could not create a virtual thread executor", e);
+        }
+    }
+}
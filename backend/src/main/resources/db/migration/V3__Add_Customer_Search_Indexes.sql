@@ -0,0 +1,17 @@
+-- supports the filters of GET /api/v1/customers/search, see CustomerSearchSql
+
+CREATE INDEX customer_age_idx ON customer (age);
+
+-- text_pattern_ops lets LIKE 'prefix%' use the index whatever the collation
+CREATE INDEX customer_name_prefix_idx ON customer (lower(name) text_pattern_ops);
+
+-- a SQL function so that JDBC and JPA write the same expression the index is built on
+CREATE FUNCTION email_domain(email TEXT) RETURNS TEXT
+    LANGUAGE sql
+    IMMUTABLE
+    PARALLEL SAFE
+AS $$
+    SELECT lower(split_part(email, '@', 2))
+$$;
+
+CREATE INDEX customer_email_domain_idx ON customer (email_domain(email));
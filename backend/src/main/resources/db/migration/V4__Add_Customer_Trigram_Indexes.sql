@@ -0,0 +1,8 @@
+-- supports GET /api/v1/customers/search/fuzzy: "<%" (word similarity) can use these
+-- indexes, ILIKE '%x%' on the bare columns has to read the whole table
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX customer_name_trgm_idx ON customer USING gin (name gin_trgm_ops);
+
+CREATE INDEX customer_email_trgm_idx ON customer USING gin (email gin_trgm_ops);
@@ -0,0 +1,72 @@
+-- versions behind the ETags of GET /api/v1/customers and /api/v1/customers/{id}, read by CustomerDao.selectTableVersion in the SQL stores
+
+ALTER TABLE customer ADD COLUMN version BIGINT NOT NULL DEFAULT 1;
+
+CREATE FUNCTION customer_next_row_version() RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    NEW.version := OLD.version + 1;
+    RETURN NEW;
+END
+$$;
+
+CREATE TRIGGER customer_row_version
+    BEFORE UPDATE ON customer
+    FOR EACH ROW
+    WHEN (OLD.* IS DISTINCT FROM NEW.*)
+    EXECUTE FUNCTION customer_next_row_version();
+
+-- bumped once per statement that changed the table, so the collection version is a small read instead of an
+-- aggregate over the whole table. A single row would make concurrent writers queue on its lock until each other's
+-- commit, so the count is spread over slots picked by backend pid: a connection only ever waits for another one
+-- that hashes to the same slot. The collection version is the sum of the slots, it goes up with every committed
+-- write whatever order the writers commit in.
+CREATE TABLE customer_table_version_slot(
+    slot INTEGER PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO customer_table_version_slot (slot, version) VALUES (0, 1);
+
+-- statements that touched no row (ON CONFLICT DO NOTHING, the no-op guard of updates) leave it alone
+CREATE FUNCTION customer_next_table_version() RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    -- nested: a TRUNCATE has no transition table to look into
+    IF TG_OP <> 'TRUNCATE' THEN
+        IF NOT EXISTS (SELECT 1 FROM changed) THEN
+            RETURN NULL;
+        END IF;
+    END IF;
+    INSERT INTO customer_table_version_slot (slot, version)
+    VALUES (pg_backend_pid() % 1024, 1)
+    ON CONFLICT (slot) DO UPDATE SET version = customer_table_version_slot.version + 1;
+    RETURN NULL;
+END
+$$;
+
+-- a trigger with transition tables can only have one event
+CREATE TRIGGER customer_table_version_insert
+    AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION customer_next_table_version();
+
+CREATE TRIGGER customer_table_version_update
+    AFTER UPDATE ON customer
+    REFERENCING NEW TABLE AS changed
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION customer_next_table_version();
+
+CREATE TRIGGER customer_table_version_delete
+    AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS changed
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION customer_next_table_version();
+
+CREATE TRIGGER customer_table_version_truncate
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION customer_next_table_version();
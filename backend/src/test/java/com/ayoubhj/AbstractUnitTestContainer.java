@@ -1,10 +1,13 @@
 package com.ayoubhj;
 
 import com.github.javafaker.Faker;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
 import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.BeforeAll;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -58,5 +61,16 @@ public abstract class AbstractUnitTestContainer {
         return new JdbcTemplate(getDataSource());
     }
 
+    protected static DatabaseClient getDatabaseClient(){
+        return DatabaseClient.create(ConnectionFactories.get(ConnectionFactoryOptions.builder()
+                .option(ConnectionFactoryOptions.DRIVER, "postgresql")
+                .option(ConnectionFactoryOptions.HOST, POSTGRE_SQL_CONTAINER.getHost())
+                .option(ConnectionFactoryOptions.PORT, POSTGRE_SQL_CONTAINER.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT))
+                .option(ConnectionFactoryOptions.DATABASE, POSTGRE_SQL_CONTAINER.getDatabaseName())
+                .option(ConnectionFactoryOptions.USER, POSTGRE_SQL_CONTAINER.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, POSTGRE_SQL_CONTAINER.getPassword())
+                .build()));
+    }
+
     protected static final Faker FAKER = new Faker();
 }
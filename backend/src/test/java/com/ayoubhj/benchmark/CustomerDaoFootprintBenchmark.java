@@ -0,0 +1,163 @@
+package com.ayoubhj.benchmark;
+
+import com.ayoubhj.customer.ColumnarCustomerDataAccessService;
+import com.ayoubhj.customer.Customer;
+import com.ayoubhj.customer.CustomerDao;
+import com.ayoubhj.customer.CustomerListDataAccessService;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the same customers into the object-per-row and the columnar in-memory
+ * DAOs and reports retained heap, off-heap bytes, the GC work of the load and
+ * the GC work caused by a lookup workload while the data set is live, each
+ * with its longest collection.
+ * <p>
+ * Run each store in its own JVM with a fixed heap so the numbers don't bleed
+ * into each other, e.g.
+ * <pre>
+ * java -Xms4g -Xmx4g -cp target/classes:target/test-classes:$(cat cp.txt) \
+ *     com.ayoubhj.benchmark.CustomerDaoFootprintBenchmark list 5000000
+ * java -Xms4g -Xmx4g ... CustomerDaoFootprintBenchmark columnar 5000000
+ * </pre>
+ * Without a store argument both run one after the other in the same JVM.
+ */
+public class CustomerDaoFootprintBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+    // notifications arrive after the fact, so collections are told apart by their number per collector
+    private static final Queue<Collection> collections = new ConcurrentLinkedQueue<>();
+
+    private record Collection(String collector, long number, long millis) {
+    }
+
+    public static void main(String[] args) {
+        String store = args.length > 0 ? args[0] : "both";
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 5_000_000;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    GcInfo gc = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                            .getGcInfo();
+                    collections.add(new Collection(collector.getName(), gc.getId(), gc.getDuration()));
+                }
+            }, null, null);
+        }
+
+        System.out.printf("%-10s %12s %12s %12s %10s %10s %12s %10s %10s %10s %12s%n",
+                "store", "rows", "heap MB", "direct MB", "load gcs", "load ms", "max load ms", "gc count", "gc ms", "max gc ms", "lookups/s");
+        if (store.equals("both") || store.equals("list")) {
+            run("list", CustomerListDataAccessService::new, rows, lookups);
+        }
+        if (store.equals("both") || store.equals("columnar")) {
+            run("columnar", ColumnarCustomerDataAccessService::new, rows, lookups);
+        }
+    }
+
+    private static void run(String name, Supplier<CustomerDao> factory, int rows, int lookups) {
+        long heapBefore = usedHeapAfterGc();
+        long directBefore = directMemory();
+        long loadGcCountBefore = gcCount();
+        long loadGcMillisBefore = gcMillis();
+        Map<String, Long> loadStart = collectionCounts();
+
+        CustomerDao dao = factory.get();
+        for (int i = 0; i < rows; i += BATCH_SIZE) {
+            List<Customer> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = i; j < Math.min(rows, i + BATCH_SIZE); j++) {
+                batch.add(new Customer("Customer Number " + j, "customer" + j + "@example.com", 18 + j % 60));
+            }
+            dao.insertCustomers(batch);
+        }
+        long loadGcCount = gcCount() - loadGcCountBefore;
+        long loadGcMillis = gcMillis() - loadGcMillisBefore;
+        Map<String, Long> loadEnd = collectionCounts();
+
+        long heap = usedHeapAfterGc() - heapBefore;
+        long direct = directMemory() - directBefore;
+
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        Map<String, Long> lookupStart = collectionCounts();
+        long start = System.nanoTime();
+        long found = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < lookups; i++) {
+            if (dao.selectCustomerById(random.nextLong(1, rows + 1)).isPresent()) {
+                found++;
+            }
+            if (dao.existPersonWithEmail("customer" + random.nextInt(rows) + "@example.com")) {
+                found++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Map<String, Long> lookupEnd = collectionCounts();
+        long lookupGcCount = gcCount() - gcCountBefore;
+        long lookupGcMillis = gcMillis() - gcMillisBefore;
+
+        System.out.printf("%-10s %12d %12.1f %12.1f %10d %10d %12d %10d %10d %10d %12.0f%n",
+                name, rows, heap / 1e6, direct / 1e6, loadGcCount, loadGcMillis, longestGc(loadStart, loadEnd),
+                lookupGcCount, lookupGcMillis, longestGc(lookupStart, lookupEnd), lookups / seconds);
+        if (found != 2L * lookups) {
+            throw new IllegalStateException("expected every lookup to hit, got " + found);
+        }
+        // keep the store reachable until it has been measured
+        dao.existPersonWithId(1L);
+    }
+
+    private static Map<String, Long> collectionCounts() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .collect(Collectors.toMap(GarbageCollectorMXBean::getName, GarbageCollectorMXBean::getCollectionCount));
+    }
+
+    private static long longestGc(Map<String, Long> from, Map<String, Long> to) {
+        return collections.stream()
+                .filter(collection -> collection.number() > from.get(collection.collector())
+                        && collection.number() <= to.get(collection.collector()))
+                .mapToLong(Collection::millis)
+                .max()
+                .orElse(0);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+}
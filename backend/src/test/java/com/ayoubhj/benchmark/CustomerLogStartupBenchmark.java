@@ -0,0 +1,81 @@
+package com.ayoubhj.benchmark;
+
+import com.ayoubhj.customer.Customer;
+import com.ayoubhj.customer.LogCustomerDataAccessService;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how long {@link LogCustomerDataAccessService} takes to replay its
+ * segments and rebuild the id and email indexes on startup.
+ * <p>
+ * Arguments are record counts, 1M and 10M by default. The 10M log takes
+ * about 870 MB of disk and runs in a 3.8 GB heap.
+ */
+public class CustomerLogStartupBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        List<Integer> sizes = new ArrayList<>();
+        for (String arg : args) {
+            sizes.add(Integer.parseInt(arg));
+        }
+        if (sizes.isEmpty()) {
+            sizes = List.of(1_000_000, 10_000_000);
+        }
+
+        System.out.printf("%12s %12s %12s %12s%n", "records", "log MB", "write ms", "open ms");
+        for (int records : sizes) {
+            Path directory = Files.createTempDirectory("customer-log-benchmark");
+            try {
+                run(directory, records);
+            } finally {
+                FileSystemUtils.deleteRecursively(directory);
+            }
+        }
+    }
+
+    private static void run(Path directory, int records) throws IOException {
+        long start = System.nanoTime();
+        LogCustomerDataAccessService store = open(directory);
+        for (int i = 0; i < records; i += BATCH_SIZE) {
+            List<Customer> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = i; j < Math.min(records, i + BATCH_SIZE); j++) {
+                batch.add(new Customer("Customer Number " + j, "customer" + j + "@example.com", 18 + j % 60));
+            }
+            store.insertCustomers(batch);
+        }
+        store.close();
+        long writeMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            System.gc();
+            start = System.nanoTime();
+            store = open(directory);
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+            if (!store.existPersonWithId((long) records)) {
+                throw new IllegalStateException("log lost records");
+            }
+            store.close();
+        }
+
+        long logBytes;
+        try (var files = Files.list(directory)) {
+            logBytes = files.mapToLong(path -> path.toFile().length()).sum();
+        }
+        System.out.printf("%12d %12.1f %12d %12d%n", records, logBytes / 1e6, writeMillis, best);
+    }
+
+    private static LogCustomerDataAccessService open(Path directory) {
+        return new LogCustomerDataAccessService(directory, DataSize.ofMegabytes(64), false);
+    }
+}
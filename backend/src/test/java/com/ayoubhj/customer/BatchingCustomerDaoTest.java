@@ -0,0 +1,119 @@
+package com.ayoubhj.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchingCustomerDaoTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void passesLookupsThroughWhenDisabled() {
+        // GIVEN
+        BatchingCustomerDao underTest = new BatchingCustomerDao(customerDao, false, Duration.ofSeconds(5), 3, meterRegistry);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.empty());
+        // WHEN
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+        //THEN
+        assertThat(actual).isEmpty();
+        verify(customerDao).selectCustomerById(1L);
+        verifyNoMoreInteractions(customerDao);
+    }
+
+    @Test
+    void concurrentLookupsShareOneQuery() throws Exception {
+        // GIVEN
+        BatchingCustomerDao underTest = new BatchingCustomerDao(customerDao, true, Duration.ofSeconds(5), 3, meterRegistry);
+        when(customerDao.selectCustomersByIds(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            assertThat(ids).containsExactlyInAnyOrder(1L, 2L, 3L);
+            return List.of(
+                    new Customer(1L, "ayoub", "ayoub@gmail.com", 22),
+                    new Customer(3L, "karl", "karl@gmail.com", 30)
+            );
+        });
+        // WHEN
+        CompletableFuture<Optional<Customer>> first = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        CompletableFuture<Optional<Customer>> second = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(2L));
+        CompletableFuture<Optional<Customer>> third = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(3L));
+        //THEN
+        assertThat(first.get(5, TimeUnit.SECONDS)).map(Customer::getName).contains("ayoub");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(third.get(5, TimeUnit.SECONDS)).map(Customer::getName).contains("karl");
+        assertThat(meterRegistry.get("customer.batching.batch-size").summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.batching.batch-size").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void lookupsThroughTheCacheJoinOneBatch() throws Exception {
+        // GIVEN
+        BatchingCustomerDao batching = new BatchingCustomerDao(customerDao, true, Duration.ofSeconds(10), 2, meterRegistry);
+        CachingCustomerDao underTest = new CachingCustomerDao(batching, 100, Duration.ofMinutes(10), 1000, meterRegistry);
+        when(customerDao.selectCustomersByIds(any())).thenReturn(List.of(
+                new Customer(1L, "ayoub", "ayoub@gmail.com", 22),
+                new Customer(33L, "karl", "karl@gmail.com", 30)
+        ));
+        // WHEN
+        // 1 and 33 share a bin of the cache's map: a leader waiting for its batch inside the bin lock would keep 33 out
+        CompletableFuture<Optional<Customer>> first = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        CompletableFuture<Optional<Customer>> second = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(33L));
+        //THEN
+        assertThat(first.get(5, TimeUnit.SECONDS)).map(Customer::getName).contains("ayoub");
+        assertThat(second.get(5, TimeUnit.SECONDS)).map(Customer::getName).contains("karl");
+        assertThat(meterRegistry.get("customer.batching.batch-size").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void lookupAloneInItsWindowRunsAsSingleLookup() {
+        // GIVEN
+        BatchingCustomerDao underTest = new BatchingCustomerDao(customerDao, true, Duration.ofMillis(1), 100, meterRegistry);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "ayoub", "ayoub@gmail.com", 22)));
+        // WHEN
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+        //THEN
+        assertThat(actual).map(Customer::getEmail).contains("ayoub@gmail.com");
+        verify(customerDao).selectCustomerById(1L);
+        verifyNoMoreInteractions(customerDao);
+    }
+
+    @Test
+    void failureReachesEveryCallerOfTheBatch() {
+        // GIVEN
+        BatchingCustomerDao underTest = new BatchingCustomerDao(customerDao, true, Duration.ofSeconds(5), 2, meterRegistry);
+        when(customerDao.selectCustomersByIds(any())).thenThrow(new IllegalStateException("boom"));
+        // WHEN
+        CompletableFuture<Optional<Customer>> first = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        CompletableFuture<Optional<Customer>> second = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(2L));
+        //THEN
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+}
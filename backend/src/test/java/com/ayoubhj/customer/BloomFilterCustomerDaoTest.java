@@ -0,0 +1,213 @@
+package com.ayoubhj.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BloomFilterCustomerDaoTest {
+
+    private BloomFilterCustomerDao underTest;
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new BloomFilterCustomerDao(customerDao, 1_000, 0.01, new SimpleMeterRegistry());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenTableContains(String... emails) {
+        doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            for (String email : emails) {
+                consumer.accept(new Customer("ayoub", email, 22));
+            }
+            return null;
+        }).when(customerDao).streamAllCustomers(any(Consumer.class));
+        underTest.rebuild();
+    }
+
+    @Test
+    void existPersonWithEmailGoesToDelegateBeforeFirstBuild() {
+        // GIVEN
+        when(customerDao.existPersonWithEmail("ayoub@gmail.com")).thenReturn(true);
+        // WHEN
+        boolean actual = underTest.existPersonWithEmail("ayoub@gmail.com");
+        //THEN
+        assertThat(actual).isTrue();
+        assertThat(underTest.stats().ready()).isFalse();
+    }
+
+    @Test
+    void existPersonWithEmailSkipsDelegateForDefiniteNegative() {
+        // GIVEN
+        givenTableContains("ayoub@gmail.com");
+        // WHEN
+        boolean actual = underTest.existPersonWithEmail("other@gmail.com");
+        //THEN
+        assertThat(actual).isFalse();
+        verify(customerDao, never()).existPersonWithEmail("other@gmail.com");
+    }
+
+    @Test
+    void existPersonWithEmailAsksDelegateForPossiblePositive() {
+        // GIVEN
+        givenTableContains("ayoub@gmail.com");
+        when(customerDao.existPersonWithEmail("ayoub@gmail.com")).thenReturn(true);
+        // WHEN
+        boolean actual = underTest.existPersonWithEmail("ayoub@gmail.com");
+        //THEN
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void insertCustomerAddsEmail() {
+        // GIVEN
+        givenTableContains();
+        Customer customer = new Customer("ayoub", "ayoub@gmail.com", 22);
+        when(customerDao.insertCustomer(customer)).thenReturn(true);
+        when(customerDao.existPersonWithEmail("ayoub@gmail.com")).thenReturn(true);
+        // WHEN
+        underTest.insertCustomer(customer);
+        //THEN
+        assertThat(underTest.existPersonWithEmail("ayoub@gmail.com")).isTrue();
+    }
+
+    @Test
+    void updateCustomerAddsNewEmail() {
+        // GIVEN
+        givenTableContains("ayoub@gmail.com");
+        CustomerUpdate update = new CustomerUpdate(1L, null, "new@gmail.com", null);
+        when(customerDao.updateCustomer(update)).thenReturn(Optional.of(new Customer(1L, "ayoub", "new@gmail.com", 22)));
+        when(customerDao.existPersonWithEmail("new@gmail.com")).thenReturn(true);
+        // WHEN
+        underTest.updateCustomer(update);
+        //THEN
+        assertThat(underTest.existPersonWithEmail("new@gmail.com")).isTrue();
+        assertThat(underTest.stats().staleEmails()).isEqualTo(1);
+    }
+
+    @Test
+    void selectExistingEmailsOnlyQueriesPossiblePositives() {
+        // GIVEN
+        givenTableContains("ayoub@gmail.com");
+        when(customerDao.selectExistingEmails(List.of("ayoub@gmail.com"))).thenReturn(Set.of("ayoub@gmail.com"));
+        // WHEN
+        Set<String> actual = underTest.selectExistingEmails(List.of("ayoub@gmail.com", "other@gmail.com"));
+        //THEN
+        assertThat(actual).containsExactly("ayoub@gmail.com");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void insertCustomerDuringRebuildSwapReachesNewFilter() throws Exception {
+        // GIVEN
+        CountDownLatch streaming = new CountDownLatch(1);
+        CountDownLatch writerInOldFilter = new CountDownLatch(1);
+        CountDownLatch swapped = new CountDownLatch(1);
+        AtomicInteger filters = new AtomicInteger();
+        underTest = new BloomFilterCustomerDao(customerDao, 1_000, 0.01, new SimpleMeterRegistry()) {
+            @Override
+            EmailBloomFilter newFilter() {
+                if (filters.incrementAndGet() > 1) {
+                    return super.newFilter();
+                }
+                // holds the writer in the first filter until the second one is swapped in
+                return new EmailBloomFilter(1_000, 0.01) {
+                    @Override
+                    public void put(String email) {
+                        writerInOldFilter.countDown();
+                        await(swapped);
+                        super.put(email);
+                    }
+                };
+            }
+        };
+        doAnswer(invocation -> null)
+                .doAnswer(invocation -> {
+                    // the row isn't committed yet when the rebuild reads the table
+                    streaming.countDown();
+                    await(writerInOldFilter);
+                    return null;
+                })
+                .when(customerDao).streamAllCustomers(any(Consumer.class));
+        underTest.rebuild();
+        Customer customer = new Customer("ayoub", "ayoub@gmail.com", 22);
+        when(customerDao.insertCustomer(customer)).thenReturn(true);
+        when(customerDao.existPersonWithEmail("ayoub@gmail.com")).thenReturn(true);
+
+        // WHEN
+        CompletableFuture<Boolean> rebuild = CompletableFuture.supplyAsync(underTest::rebuild);
+        await(streaming);
+        CompletableFuture<Boolean> insert = CompletableFuture.supplyAsync(() -> underTest.insertCustomer(customer));
+        rebuild.get(5, TimeUnit.SECONDS);
+        swapped.countDown();
+        insert.get(5, TimeUnit.SECONDS);
+
+        //THEN
+        assertThat(underTest.existPersonWithEmail("ayoub@gmail.com")).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importDuringRebuildRebuildsAgain() throws Exception {
+        // GIVEN
+        CountDownLatch streaming = new CountDownLatch(1);
+        CountDownLatch imported = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            // the rebuild streamed past the rows before the import committed them
+            streaming.countDown();
+            await(imported);
+            return null;
+        }).doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            consumer.accept(new Customer("ayoub", "imported@gmail.com", 22));
+            return null;
+        }).when(customerDao).streamAllCustomers(any(Consumer.class));
+        when(customerDao.existPersonWithEmail("imported@gmail.com")).thenReturn(true);
+
+        // WHEN
+        CompletableFuture<Boolean> rebuild = CompletableFuture.supplyAsync(underTest::rebuild);
+        await(streaming);
+        underTest.onCustomersImported(new CustomersImportedEvent(1));
+        boolean rebuiltDuringRebuild = underTest.rebuild();
+        imported.countDown();
+        rebuild.get(5, TimeUnit.SECONDS);
+
+        //THEN
+        assertThat(rebuiltDuringRebuild).isFalse();
+        assertThat(underTest.existPersonWithEmail("imported@gmail.com")).isTrue();
+        verify(customerDao, times(2)).streamAllCustomers(any(Consumer.class));
+        assertThat(underTest.stats().rebuilding()).isFalse();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
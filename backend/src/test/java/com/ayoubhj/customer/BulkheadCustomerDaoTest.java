@@ -0,0 +1,105 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BulkheadCustomerDaoTest {
+
+    private BulkheadCustomerDao underTest;
+    private SimpleMeterRegistry meterRegistry;
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new BulkheadCustomerDao(customerDao, new DatabaseBulkhead(2, 1, Duration.ofMillis(50), meterRegistry));
+    }
+
+    @Test
+    void rejectsCallWhenAllPermitsAreTakenPastTheTimeout() throws Exception {
+        // GIVEN
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDao.existPersonWithId(1L)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return true;
+        });
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> underTest.existPersonWithId(1L));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        // WHEN
+        //THEN
+        assertThat(meterRegistry.get("customer.db.bulkhead.in-flight").gauge().value()).isEqualTo(1.0);
+        assertThatThrownBy(() -> underTest.existPersonWithId(2L))
+                .isInstanceOf(ServiceBusyException.class);
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("customer.db.bulkhead.in-flight").gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamsTakeTheirOwnPermits() throws Exception {
+        // GIVEN
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return null;
+        }).when(customerDao).streamAllCustomers(any(Consumer.class));
+        when(customerDao.existPersonWithId(1L)).thenReturn(true);
+        CompletableFuture<Void> export = CompletableFuture.runAsync(() -> underTest.streamAllCustomers(customer -> {}));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        // WHEN
+        //THEN
+        assertThat(underTest.existPersonWithId(1L)).isTrue();
+        assertThat(meterRegistry.get("customer.db.bulkhead.streams.in-flight").gauge().value()).isEqualTo(1.0);
+        assertThatThrownBy(() -> underTest.streamAllCustomers(customer -> {}))
+                .isInstanceOf(ServiceBusyException.class);
+        release.countDown();
+        export.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void streamPermitsComeOutOfTheConnectionPool() {
+        // GIVEN
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> new DatabaseBulkhead(2, 2, Duration.ofMillis(50), new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void releasesPermitWhenDelegateFails() {
+        // GIVEN
+        when(customerDao.selectCustomerById(1L)).thenThrow(new IllegalStateException("boom"));
+        when(customerDao.selectCustomerById(2L)).thenReturn(Optional.empty());
+        // WHEN
+        assertThatThrownBy(() -> underTest.selectCustomerById(1L))
+                .isInstanceOf(IllegalStateException.class);
+        //THEN
+        assertThat(underTest.selectCustomerById(2L)).isEmpty();
+        assertThat(meterRegistry.get("customer.db.bulkhead.wait").timer().count()).isEqualTo(2);
+    }
+}
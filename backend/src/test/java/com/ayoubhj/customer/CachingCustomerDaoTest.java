@@ -0,0 +1,309 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    private CachingCustomerDao underTest;
+    private SimpleMeterRegistry meterRegistry;
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CachingCustomerDao(customerDao, 100, Duration.ofMinutes(10), 1, meterRegistry);
+    }
+
+    @Test
+    void selectCustomerByIdLoadsOnce() {
+        // GIVEN
+        Customer customer = new Customer(1L, "ayoub", "ayoub@gmail.com", 22, 3L);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        // WHEN
+        underTest.selectCustomerById(1L);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+        //THEN
+        assertThat(actual).get().usingRecursiveComparison().isEqualTo(customer);
+        verify(customerDao, times(1)).selectCustomerById(1L);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "customer.by-id").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void selectCustomerByIdReturnsCopies() {
+        // GIVEN
+        Customer customer = new Customer(1L, "ayoub", "ayoub@gmail.com", 22);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        // WHEN
+        underTest.selectCustomerById(1L).orElseThrow().setName("changed");
+        //THEN
+        assertThat(underTest.selectCustomerById(1L)).map(Customer::getName).contains("ayoub");
+    }
+
+    @Test
+    void slowLoadDoesNotBlockOtherKeys() throws Exception {
+        // GIVEN
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDao.selectCustomerById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(new Customer(1L, "ayoub", "ayoub@gmail.com", 22));
+        });
+        when(customerDao.selectCustomerById(2L)).thenReturn(Optional.of(new Customer(2L, "alya", "alya@gmail.com", 20)));
+        CompletableFuture<Optional<Customer>> slow = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        // WHEN
+        Optional<Customer> actual = underTest.selectCustomerById(2L);
+        //THEN
+        assertThat(actual).map(Customer::getEmail).contains("alya@gmail.com");
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).map(Customer::getEmail).contains("ayoub@gmail.com");
+    }
+
+    @Test
+    void concurrentMissesShareOneLoadAndItsFailure() throws Exception {
+        // GIVEN
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDao.selectCustomerById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("database is down");
+        });
+        CompletableFuture<Optional<Customer>> leader = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        // WHEN
+        CompletableFuture<Optional<Customer>> follower = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        awaitFollowers(1);
+        release.countDown();
+        //THEN
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        verify(customerDao, times(1)).selectCustomerById(1L);
+    }
+
+    @Test
+    void concurrentMissesGetTheirOwnCopies() throws Exception {
+        // GIVEN
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDao.selectCustomerById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(new Customer(1L, "ayoub", "ayoub@gmail.com", 22));
+        });
+        CompletableFuture<Optional<Customer>> leader = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        // WHEN
+        CompletableFuture<Optional<Customer>> follower = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        awaitFollowers(1);
+        release.countDown();
+        //THEN
+        Customer first = leader.get(5, TimeUnit.SECONDS).orElseThrow();
+        Customer second = follower.get(5, TimeUnit.SECONDS).orElseThrow();
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getEmail()).isEqualTo(first.getEmail());
+        verify(customerDao, times(1)).selectCustomerById(1L);
+        assertThat(meterRegistry.get("customer.cache.loads-in-flight").tag("cache", "customer.by-id").gauge().value())
+                .isEqualTo(0.0);
+    }
+
+    @Test
+    void rejectsWaitersOverTheCap() throws Exception {
+        // GIVEN
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDao.selectCustomerById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+        CompletableFuture<Optional<Customer>> leader = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Optional<Customer>> follower = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        awaitFollowers(1);
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.selectCustomerById(1L))
+                .isInstanceOf(ServiceBusyException.class);
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @Test
+    void lookupAfterAWriteDoesNotJoinAnEarlierLoad() throws Exception {
+        // GIVEN
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CustomerUpdate update = new CustomerUpdate(1L, "ali", null, null);
+        when(customerDao.selectCustomerById(1L))
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return Optional.of(new Customer(1L, "ayoub", "ayoub@gmail.com", 22));
+                })
+                .thenReturn(Optional.of(new Customer(1L, "ali", "ayoub@gmail.com", 22)));
+        when(customerDao.updateCustomer(update)).thenReturn(Optional.of(new Customer(1L, "ali", "ayoub@gmail.com", 22)));
+        CompletableFuture<Optional<Customer>> before = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        // WHEN
+        underTest.updateCustomer(update);
+        Optional<Customer> after = underTest.selectCustomerById(1L);
+        //THEN
+        assertThat(after).map(Customer::getName).contains("ali");
+        release.countDown();
+        assertThat(before.get(5, TimeUnit.SECONDS)).map(Customer::getName).contains("ayoub");
+        verify(customerDao, times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void loadInFlightDuringAWriteIsNotKept() throws Exception {
+        // GIVEN
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Customer customer = new Customer(1L, "ayoub", "ayoub@gmail.com", 22);
+        when(customerDao.selectCustomerById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(customer);
+        });
+        when(customerDao.deleteCustomerById(1L)).thenReturn(Optional.of(customer));
+        CompletableFuture<Optional<Customer>> stale = CompletableFuture.supplyAsync(() -> underTest.selectCustomerById(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        // WHEN
+        underTest.deleteCustomerById(1L);
+        release.countDown();
+        stale.get(5, TimeUnit.SECONDS);
+        underTest.selectCustomerById(1L);
+        //THEN
+        verify(customerDao, times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void selectCustomersByIdsOnlyLoadsUncachedIds() {
+        // GIVEN
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "ayoub", "ayoub@gmail.com", 22)));
+        when(customerDao.selectCustomersByIds(List.of(2L, 3L))).thenReturn(List.of(new Customer(2L, "alya", "alya@gmail.com", 20)));
+        underTest.selectCustomerById(1L);
+        // WHEN
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1L, 2L, 3L));
+        //THEN
+        assertThat(actual).extracting(Customer::getId).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void selectCustomerByIdDoesNotCacheMissingRows() {
+        // GIVEN
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.empty());
+        // WHEN
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(1L);
+        //THEN
+        verify(customerDao, times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void updateCustomerInvalidatesRowAndEmails() {
+        // GIVEN
+        Customer customer = new Customer(1L, "ayoub", "ayoub@gmail.com", 22);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        when(customerDao.existPersonWithEmail("ayoub@gmail.com")).thenReturn(true);
+        underTest.selectCustomerById(1L);
+        underTest.existPersonWithEmail("ayoub@gmail.com");
+        CustomerUpdate update = new CustomerUpdate(1L, null, "new@gmail.com", null);
+        when(customerDao.updateCustomer(update)).thenReturn(Optional.of(new Customer(1L, "ayoub", "new@gmail.com", 22)));
+        // WHEN
+        underTest.updateCustomer(update);
+        underTest.selectCustomerById(1L);
+        underTest.existPersonWithEmail("ayoub@gmail.com");
+        //THEN
+        verify(customerDao, times(2)).selectCustomerById(1L);
+        verify(customerDao, times(2)).existPersonWithEmail("ayoub@gmail.com");
+    }
+
+    @Test
+    void deleteCustomerByIdInvalidatesRowAndEmail() {
+        // GIVEN
+        Customer customer = new Customer(1L, "ayoub", "ayoub@gmail.com", 22);
+        when(customerDao.existPersonWithEmail("ayoub@gmail.com")).thenReturn(true);
+        underTest.existPersonWithEmail("ayoub@gmail.com");
+        when(customerDao.deleteCustomerById(1L)).thenReturn(Optional.of(customer));
+        // WHEN
+        underTest.deleteCustomerById(1L);
+        underTest.existPersonWithEmail("ayoub@gmail.com");
+        //THEN
+        verify(customerDao, times(2)).existPersonWithEmail("ayoub@gmail.com");
+    }
+
+    @Test
+    void insertCustomerInvalidatesEmail() {
+        // GIVEN
+        Customer customer = new Customer("ayoub", "ayoub@gmail.com", 22);
+        when(customerDao.existPersonWithEmail("ayoub@gmail.com")).thenReturn(false);
+        underTest.existPersonWithEmail("ayoub@gmail.com");
+        when(customerDao.insertCustomer(customer)).thenReturn(true);
+        // WHEN
+        underTest.insertCustomer(customer);
+        underTest.existPersonWithEmail("ayoub@gmail.com");
+        //THEN
+        verify(customerDao, times(2)).existPersonWithEmail("ayoub@gmail.com");
+    }
+
+    @Test
+    void selectExistingEmailsOnlyQueriesUnknownEmails() {
+        // GIVEN
+        when(customerDao.existPersonWithEmail("a@gmail.com")).thenReturn(true);
+        underTest.existPersonWithEmail("a@gmail.com");
+        when(customerDao.selectExistingEmails(List.of("b@gmail.com"))).thenReturn(Set.of());
+        // WHEN
+        Set<String> actual = underTest.selectExistingEmails(List.of("a@gmail.com", "b@gmail.com"));
+        //THEN
+        assertThat(actual).containsExactly("a@gmail.com");
+    }
+
+    @Test
+    void onCustomersImportedClearsCaches() {
+        // GIVEN
+        Customer customer = new Customer(1L, "ayoub", "ayoub@gmail.com", 22);
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1L);
+        // WHEN
+        underTest.onCustomersImported(new CustomersImportedEvent(10));
+        underTest.selectCustomerById(1L);
+        //THEN
+        verify(customerDao, times(2)).selectCustomerById(1L);
+    }
+
+    private void awaitFollowers(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("customer.cache.loads").tag("cache", "customer.by-id").tag("result", "coalesced")
+                .counter().count() < count) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ayoubhj.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnarCustomerDataAccessServiceTest {
+
+    private ColumnarCustomerDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ColumnarCustomerDataAccessService();
+    }
+
+    private Customer insert(String name, String email, Integer age) {
+        Customer customer = new Customer(name, email, age);
+        underTest.insertCustomer(customer);
+        return customer;
+    }
+
+    @Test
+    void insertCustomerRoundTrips() {
+        // GIVEN
+        Customer customer = insert("Ayoub Él", "ayoub@gmail.com", 22);
+        // WHEN
+        Optional<Customer> actual = underTest.selectCustomerById(customer.getId());
+        //THEN
+        assertThat(actual).get().usingRecursiveComparison().isEqualTo(new Customer(1L, "Ayoub Él", "ayoub@gmail.com", 22, 1L));
+        assertThat(underTest.existPersonWithEmail("ayoub@gmail.com")).isTrue();
+        assertThat(underTest.existPersonWithId(1L)).isTrue();
+    }
+
+    @Test
+    void insertCustomerRejectsDuplicateEmail() {
+        // GIVEN
+        insert("ayoub", "ayoub@gmail.com", 22);
+        // WHEN
+        boolean actual = underTest.insertCustomer(new Customer("other", "ayoub@gmail.com", 30));
+        //THEN
+        assertThat(actual).isFalse();
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        // WHEN
+        List<Customer> inserted = underTest.insertCustomers(IntStream.range(0, 50_000)
+                .mapToObj(i -> new Customer("customer " + i, "customer" + i + "@gmail.com", i % 100))
+                .toList());
+        //THEN
+        assertThat(inserted).hasSize(50_000);
+        assertThat(underTest.selectCustomerById(40_000L)).map(Customer::getEmail).contains("customer39999@gmail.com");
+        assertThat(underTest.selectExistingEmails(List.of("customer0@gmail.com", "customer49999@gmail.com", "absent@gmail.com")))
+                .containsExactlyInAnyOrder("customer0@gmail.com", "customer49999@gmail.com");
+    }
+
+    @Test
+    void selectCustomersSkipsDeletedRows() {
+        // GIVEN
+        IntStream.range(0, 5).forEach(i -> insert("c" + i, "c" + i + "@gmail.com", 20));
+        underTest.deleteCustomerById(3L);
+        // WHEN
+        List<Customer> actual = underTest.selectCustomers(1L, 3);
+        //THEN
+        assertThat(actual).extracting(Customer::getId).containsExactly(2L, 4L, 5L);
+    }
+
+    @Test
+    void streamAllCustomersPages() {
+        // GIVEN
+        IntStream.range(0, ColumnarCustomerDataAccessService.STREAM_PAGE_SIZE * 2 + 1)
+                .forEach(i -> insert("c" + i, "c" + i + "@gmail.com", 20));
+        List<Customer> actual = new ArrayList<>();
+        // WHEN
+        underTest.streamAllCustomers(actual::add);
+        //THEN
+        assertThat(actual).hasSize(ColumnarCustomerDataAccessService.STREAM_PAGE_SIZE * 2 + 1);
+    }
+
+    @Test
+    void updateCustomerRewritesStringsAndIndex() {
+        // GIVEN
+        Customer customer = insert("ayoub", "ayoub@gmail.com", 22);
+        // WHEN
+        Optional<Customer> actual = underTest.updateCustomer(new CustomerUpdate(customer.getId(), "alya", "alya@gmail.com", 21));
+        //THEN
+        assertThat(actual).get().usingRecursiveComparison().isEqualTo(new Customer(1L, "alya", "alya@gmail.com", 21, 2L));
+        assertThat(underTest.selectCustomerById(1L)).get().usingRecursiveComparison().isEqualTo(actual.get());
+        assertThat(underTest.existPersonWithEmail("ayoub@gmail.com")).isFalse();
+        assertThat(underTest.existPersonWithEmail("alya@gmail.com")).isTrue();
+    }
+
+    @Test
+    void updateCustomerRejectsTakenEmail() {
+        // GIVEN
+        insert("ayoub", "ayoub@gmail.com", 22);
+        insert("alya", "alya@gmail.com", 20);
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.updateCustomer(new CustomerUpdate(1L, null, "alya@gmail.com", null)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void versionedWritesOnlyApplyToAMatchingVersion() {
+        // GIVEN
+        insert("ayoub", "ayoub@gmail.com", 22);
+        insert("alya", "alya@gmail.com", 20);
+        // WHEN
+        Optional<Customer> stale = underTest.updateCustomer(new CustomerUpdate(1L, "stale", null, null), List.of(2L));
+        Optional<Customer> updated = underTest.updateCustomer(new CustomerUpdate(1L, "fresh", null, null), List.of(1L));
+        Optional<Customer> staleDelete = underTest.deleteCustomerById(1L, List.of(1L));
+        Optional<Customer> deleted = underTest.deleteCustomerById(2L, List.of(1L));
+        //THEN
+        assertThat(stale).isEmpty();
+        assertThat(updated).map(Customer::getVersion).contains(2L);
+        assertThat(staleDelete).isEmpty();
+        assertThat(underTest.selectCustomerById(1L)).map(Customer::getName).contains("fresh");
+        assertThat(deleted).map(Customer::getEmail).contains("alya@gmail.com");
+        assertThat(underTest.existPersonWithId(2L)).isFalse();
+    }
+
+    @Test
+    void deletesAndUpdatesAreCompactedAway() {
+        // GIVEN
+        IntStream.range(0, 20_000).forEach(i -> insert("customer " + i, "customer" + i + "@gmail.com", 30));
+        // WHEN
+        IntStream.rangeClosed(1, 20_000).filter(id -> id % 2 == 0).forEach(id -> underTest.deleteCustomerById((long) id));
+        IntStream.rangeClosed(1, 20_000).filter(id -> id % 2 == 1)
+                .forEach(id -> underTest.updateCustomer(new CustomerUpdate((long) id, null, "moved" + id + "@gmail.com", null)));
+        //THEN
+        assertThat(underTest.selectAllCustomers()).hasSize(10_000)
+                .allMatch(customer -> customer.getEmail().equals("moved" + customer.getId() + "@gmail.com"));
+        assertThat(underTest.existPersonWithEmail("customer0@gmail.com")).isFalse();
+        assertThat(underTest.existPersonWithEmail("moved19999@gmail.com")).isTrue();
+        assertThat(underTest.existPersonWithId(20_000L)).isFalse();
+    }
+
+    @Test
+    void tableVersionChangesOnlyWithTheData() {
+        // GIVEN
+        Customer customer = insert("ayoub", "ayoub@gmail.com", 22);
+        long afterInsert = underTest.selectTableVersion();
+        // WHEN
+        underTest.updateCustomer(new CustomerUpdate(customer.getId(), null, null, 22));
+        underTest.deleteCustomerById(customer.getId(), List.of(2L));
+        long unchanged = underTest.selectTableVersion();
+        underTest.deleteCustomerById(customer.getId());
+        //THEN
+        assertThat(unchanged).isEqualTo(afterInsert);
+        assertThat(underTest.selectTableVersion()).isGreaterThan(afterInsert);
+    }
+}
@@ -0,0 +1,80 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.AbstractUnitTestContainer;
+import com.ayoubhj.exception.RequestValidationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerCsvImportServiceTest extends AbstractUnitTestContainer {
+
+    private CustomerCsvImportService underTest;
+    private CustomerJdbcDataAccessService customerJdbcDataAccessService;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = getDataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        underTest = new CustomerCsvImportService(
+                jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                new DatabaseBulkhead(10, 2, Duration.ofSeconds(30), new SimpleMeterRegistry()),
+                event -> {});
+        customerJdbcDataAccessService = new CustomerJdbcDataAccessService(jdbcTemplate, new CustomerRowMapper());
+    }
+
+    @Test
+    void importCustomers() {
+        // GIVEN
+        String existingEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerJdbcDataAccessService.insertCustomer(new Customer(
+                FAKER.name().fullName()
+                ,existingEmail
+                ,20));
+
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String csv = """
+                name,email,age
+                "Doe, John",%s,30
+                Jane Doe,%s,31
+                Jane Again,%s,32
+                """.formatted(email, existingEmail, email);
+
+        // WHEN
+        CustomerImportResult actual = importCustomers(csv);
+
+        //THEN
+        assertThat(actual.rowsRead()).isEqualTo(3);
+        assertThat(actual.rowsInserted()).isEqualTo(1);
+        assertThat(actual.rowsSkipped()).isEqualTo(2);
+        assertThat(customerJdbcDataAccessService.existPersonWithEmail(email)).isTrue();
+    }
+
+    @Test
+    void willThrowWhenImportCustomersCsvInvalid() {
+        // GIVEN
+        String csv = """
+                name,email,age
+                John,%s,thirty
+                """.formatted(UUID.randomUUID() + "@course.com");
+
+        assertThatThrownBy( () -> importCustomers(csv) )
+                .isInstanceOf(RequestValidationException.class);
+    }
+
+    private CustomerImportResult importCustomers(String csv) {
+        return underTest.importCustomers(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+}
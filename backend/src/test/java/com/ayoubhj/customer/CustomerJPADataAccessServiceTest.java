@@ -1,13 +1,31 @@
 package com.ayoubhj.customer;
 
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class CustomerJPADataAccessServiceTest  {
@@ -30,6 +48,28 @@ class CustomerJPADataAccessServiceTest  {
         verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomers() {
+        // WHEN
+        underTest.selectCustomers(10L, 20);
+        //THEN
+        verify(customerRepository).findByIdGreaterThan(10L, PageRequest.of(0, 20, Sort.by("id")));
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // GIVEN
+        Customer customer = new Customer(
+                1L,"ayoub","ayoub@gmail.com",22
+        );
+        when(customerRepository.streamAllCustomers()).thenReturn(Stream.of(customer));
+        List<Customer> actual = new ArrayList<>();
+        // WHEN
+        underTest.streamAllCustomers(actual::add);
+        //THEN
+        assertThat(actual).containsExactly(customer);
+    }
+
     @Test
     void selectCustomerById() {
         // GIVEN
@@ -40,6 +80,44 @@ class CustomerJPADataAccessServiceTest  {
         verify(customerRepository).findById(id);
     }
 
+    @Test
+    void selectCustomersByIds() {
+        // GIVEN
+        List<Long> ids = List.of(1L, 2L);
+        // WHEN
+        underTest.selectCustomersByIds(ids);
+        //THEN
+        verify(customerRepository).findAllById(ids);
+    }
+
+    @Test
+    void searchCustomersSortsByIdAfterTheSortKey() {
+        // GIVEN
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                18, null, null, null, CustomerSearchCriteria.SortBy.NAME, true, 20);
+        // WHEN
+        underTest.searchCustomers(criteria);
+        //THEN
+        verify(customerRepository).findAll(
+                any(),
+                eq(Sort.by(Sort.Direction.DESC, "name").and(Sort.by(Sort.Direction.DESC, "id"))),
+                eq(20));
+    }
+
+    @Test
+    void fuzzySearchCustomersSetsThresholdAndMapsRows() {
+        // GIVEN
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1L, "ayoub", "ayoub@gmail.com", 22, 1L, 0.8f});
+        when(customerRepository.fuzzySearch("ayub", 10)).thenReturn(rows);
+        // WHEN
+        List<CustomerMatch> actual = underTest.fuzzySearchCustomers("ayub", 0.5, 10);
+        //THEN
+        verify(customerRepository).setWordSimilarityThreshold("0.5");
+        assertThat(actual).extracting(match -> match.customer().getEmail()).containsExactly("ayoub@gmail.com");
+        assertThat(actual.get(0).similarity()).isCloseTo(0.8, within(1e-6));
+    }
+
     @Test
     void insertCustomer() {
         // GIVEN
@@ -47,30 +125,111 @@ class CustomerJPADataAccessServiceTest  {
                 1L,"ayoub","ayoub@gmail.com",22
         );
         // WHEN
-        underTest.insertCustomer(customer);
+        boolean actual = underTest.insertCustomer(customer);
 
         //THEN
         verify(customerRepository).save(customer);
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void insertCustomers() {
+        // GIVEN
+        List<Customer> customers = List.of(
+                new Customer("ayoub","ayoub@gmail.com",22),
+                new Customer("alya","alya@gmail.com",20)
+        );
+        String[] names = {"ayoub", "alya"};
+        String[] emails = {"ayoub@gmail.com", "alya@gmail.com"};
+        Integer[] ages = {22, 20};
+        // the email of alya was taken in the meantime
+        when(customerRepository.insertSkippingTakenEmails(names, emails, ages))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "ayoub", "ayoub@gmail.com", 22, 0L}));
+        // WHEN
+        List<Customer> actual = underTest.insertCustomers(customers);
+
+        //THEN
+        assertThat(actual).singleElement()
+                .usingRecursiveComparison()
+                .isEqualTo(new Customer(1L, "ayoub", "ayoub@gmail.com", 22, 0L));
     }
 
     @Test
     void deleteCustomerById() {
         Long id = 1L;
+        List<Object[]> deleted = new ArrayList<>();
+        deleted.add(new Object[]{id, "ayoub", "ayoub@gmail.com", 22, 3L});
+        when(customerRepository.deleteReturning(id)).thenReturn(deleted);
+
+        Optional<Customer> actual = underTest.deleteCustomerById(id);
+        //THEN
+        verify(customerRepository, never()).findById(id);
+        assertThat(actual).map(Customer::getEmail).contains("ayoub@gmail.com");
+        assertThat(actual).map(Customer::getVersion).contains(3L);
+    }
+
+    @Test
+    void deleteCustomerByIdWithVersionsLeavesAChangedRow() {
+        Long id = 1L;
+        when(customerRepository.deleteReturning(id, new Long[]{2L})).thenReturn(List.of());
 
-        underTest.deleteCustomerById(id);
+        Optional<Customer> actual = underTest.deleteCustomerById(id, List.of(2L));
         //THEN
-        verify(customerRepository).deleteById(id);
+        assertThat(actual).isEmpty();
     }
 
     @Test
     void updateCustomer() {
-        Customer customer = new Customer(
-                1L,"ayoub","ayoub@gmail.com",22
-        );
+        List<Object[]> updated = new ArrayList<>();
+        updated.add(new Object[]{1L, "karl", "ayoub@gmail.com", 30, 2L});
+        when(customerRepository.updateReturning(1L, "karl", null, 30)).thenReturn(updated);
 
-        underTest.updateCustomer(customer);
+        Optional<Customer> actual = underTest.updateCustomer(new CustomerUpdate(1L, "karl", null, 30));
 
-        verify(customerRepository).save(customer);
+        verify(customerRepository, never()).findById(1L);
+        verify(customerRepository, never()).saveAndFlush(any());
+        assertThat(actual).map(Customer::getName).contains("karl");
+        assertThat(actual).map(Customer::getEmail).contains("ayoub@gmail.com");
+        assertThat(actual).map(Customer::getAge).contains(30);
+        assertThat(actual).map(Customer::getVersion).contains(2L);
+    }
+
+    @Test
+    void updateCustomerWithVersionsChecksThemInTheUpdate() {
+        when(customerRepository.updateReturning(1L, "karl", null, null, new Long[]{1L})).thenReturn(List.of());
+
+        Optional<Customer> actual = underTest.updateCustomer(new CustomerUpdate(1L, "karl", null, null), List.of(1L));
+
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void updateCustomerTranslatesEmailConflict() {
+        when(customerRepository.updateReturning(1L, null, "alya@gmail.com", null)).thenThrow(new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", new SQLException(), "customer_email_unique")));
+
+        assertThatThrownBy(() -> underTest.updateCustomer(new CustomerUpdate(1L, null, "alya@gmail.com", null)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerRethrowsOtherViolations() {
+        when(customerRepository.updateReturning(1L, "karl", null, null)).thenThrow(new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("not null", new SQLException(), null)));
+
+        assertThatThrownBy(() -> underTest.updateCustomer(new CustomerUpdate(1L, "karl", null, null)))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .isNotInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerWithoutChanges() {
+        // the change guard of the UPDATE matches no row
+        when(customerRepository.updateReturning(1L, "ayoub", null, 22)).thenReturn(List.of());
+
+        Optional<Customer> actual = underTest.updateCustomer(new CustomerUpdate(1L, "ayoub", null, 22));
+
+        assertThat(actual).isEmpty();
     }
 
     @Test
@@ -82,6 +241,15 @@ class CustomerJPADataAccessServiceTest  {
        verify(customerRepository).existsCustomerByEmail(email);
     }
 
+    @Test
+    void selectExistingEmails() {
+        List<String> emails = List.of("ayoub@gmail.com");
+
+        underTest.selectExistingEmails(emails);
+
+        verify(customerRepository).findExistingEmails(emails);
+    }
+
     @Test
     void existPersonWithId() {
         Long id = 1L;
@@ -3,10 +3,20 @@ package com.ayoubhj.customer;
 import com.ayoubhj.AbstractUnitTestContainer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
@@ -39,6 +49,46 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
     }
 
+    @Test
+    void selectCustomers() {
+        // GIVEN
+        for (int i = 0; i < 3; i++) {
+            customerJdbcDataAccessService.insertCustomer(new Customer(
+                    FAKER.name().fullName()
+                    ,FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID()
+                    ,20));
+        }
+
+        // WHEN
+        List<Customer> firstPage = customerJdbcDataAccessService.selectCustomers(0L, 2);
+        Long lastId = firstPage.get(firstPage.size() - 1).getId();
+        List<Customer> secondPage = customerJdbcDataAccessService.selectCustomers(lastId, 2);
+
+        //THEN
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage).isSortedAccordingTo(Comparator.comparing(Customer::getId));
+        assertThat(secondPage).isNotEmpty()
+                .allSatisfy(c -> assertThat(c.getId()).isGreaterThan(lastId));
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // GIVEN
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerJdbcDataAccessService.insertCustomer(new Customer(
+                FAKER.name().fullName()
+                ,email
+                ,20));
+        List<Customer> actual = new ArrayList<>();
+
+        // WHEN
+        customerJdbcDataAccessService.streamAllCustomers(actual::add);
+
+        //THEN
+        assertThat(actual).isSortedAccordingTo(Comparator.comparing(Customer::getId));
+        assertThat(actual).extracting(Customer::getEmail).contains(email);
+    }
+
     @Test
     void selectCustomerById() {
         // GIVEN
@@ -70,6 +120,114 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
     }
 
+    @Test
+    void selectCustomersByIds() {
+        // GIVEN
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Customer customer = new Customer(
+                    FAKER.name().fullName()
+                    ,FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID()
+                    ,20 + i);
+            customerJdbcDataAccessService.insertCustomer(customer);
+            customers.add(customer);
+        }
+        List<Long> ids = List.of(customers.get(2).getId(), -1L, customers.get(0).getId());
+
+        // WHEN
+        List<Customer> actual = customerJdbcDataAccessService.selectCustomersByIds(ids);
+
+        //THEN
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(customers.get(2), customers.get(0));
+    }
+
+    @Test
+    void searchCustomers() {
+        // GIVEN
+        String domain = UUID.randomUUID() + ".com";
+        customerJdbcDataAccessService.insertCustomer(new Customer("Ayoub", "ayoub@" + domain, 22));
+        customerJdbcDataAccessService.insertCustomer(new Customer("ayman", "ayman@" + domain.toUpperCase(), 30));
+        customerJdbcDataAccessService.insertCustomer(new Customer("Aya", "aya@" + domain, 40));
+        customerJdbcDataAccessService.insertCustomer(new Customer("A_ya", "a_ya@" + domain, 25));
+        customerJdbcDataAccessService.insertCustomer(new Customer("Ayoub", "ayoub-" + domain, 25));
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                20, 35, "AY", domain, CustomerSearchCriteria.SortBy.AGE, false, 10);
+
+        // WHEN
+        List<Customer> actual = customerJdbcDataAccessService.searchCustomers(criteria);
+
+        //THEN
+        assertThat(actual).extracting(Customer::getName).containsExactly("Ayoub", "ayman");
+    }
+
+    @Test
+    void searchCustomersTreatsWildcardsInNamePrefixLiterally() {
+        // GIVEN
+        String domain = UUID.randomUUID() + ".com";
+        customerJdbcDataAccessService.insertCustomer(new Customer("A_ya", "a_ya@" + domain, 25));
+        customerJdbcDataAccessService.insertCustomer(new Customer("Aya", "aya@" + domain, 25));
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                null, null, "a_", domain, CustomerSearchCriteria.SortBy.ID, false, 10);
+
+        // WHEN
+        List<Customer> actual = customerJdbcDataAccessService.searchCustomers(criteria);
+
+        //THEN
+        assertThat(actual).extracting(Customer::getName).containsExactly("A_ya");
+    }
+
+    @Test
+    void fuzzySearchCustomersFindsMisspelledNames() {
+        // GIVEN
+        String word = FAKER.letterify("??????????");
+        customerJdbcDataAccessService.insertCustomer(new Customer("Ayoub " + word, email(), 22));
+        customerJdbcDataAccessService.insertCustomer(new Customer(FAKER.name().fullName(), email(), 22));
+
+        // WHEN
+        List<CustomerMatch> actual = customerJdbcDataAccessService.fuzzySearchCustomers(misspell(word), 0.5, 10);
+
+        //THEN
+        assertThat(actual).extracting(match -> match.customer().getName()).containsExactly("Ayoub " + word);
+        assertThat(actual.get(0).similarity()).isBetween(0.5, 1.0);
+    }
+
+    @Test
+    void fuzzySearchCustomersRanksByNameOrEmailSimilarity() {
+        // GIVEN
+        String word = FAKER.letterify("??????????");
+        customerJdbcDataAccessService.insertCustomer(new Customer("Ayoub " + misspell(word), email(), 22));
+        customerJdbcDataAccessService.insertCustomer(new Customer("Ayoub", word + "@" + UUID.randomUUID() + ".com", 22));
+
+        // WHEN
+        List<CustomerMatch> actual = customerJdbcDataAccessService.fuzzySearchCustomers(word.toUpperCase(), 0.5, 10);
+
+        //THEN
+        assertThat(actual).hasSize(2);
+        assertThat(actual.get(0).customer().getEmail()).startsWith(word + "@");
+        assertThat(actual.get(0).similarity()).isEqualTo(1.0);
+        assertThat(actual.get(1).similarity()).isLessThan(1.0);
+    }
+
+    @Test
+    void fuzzySearchCustomersLeavesConnectionThresholdAlone() throws SQLException {
+        // GIVEN
+        try (Connection connection = getDataSource().getConnection()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            CustomerJdbcDataAccessService underTest = new CustomerJdbcDataAccessService(jdbcTemplate, customerRowMapper);
+            jdbcTemplate.queryForObject("SELECT set_config('pg_trgm.word_similarity_threshold', '0.3', false)", String.class);
+
+            // WHEN
+            underTest.fuzzySearchCustomers("ayoub", 0.9, 10);
+
+            //THEN
+            assertThat(jdbcTemplate.queryForObject("SELECT current_setting('pg_trgm.word_similarity_threshold')", String.class))
+                    .isEqualTo("0.3");
+            assertThat(connection.getAutoCommit()).isTrue();
+        }
+    }
+
     @Test
     void willReturnEmptySelectCustomerById() {
 
@@ -112,6 +270,33 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
         });
     }
 
+    @Test
+    void insertCustomers() {
+        // GIVEN
+        String existingEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerJdbcDataAccessService.insertCustomer(new Customer(
+                FAKER.name().fullName()
+                ,existingEmail
+                ,20));
+
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), email, 21),
+                new Customer(FAKER.name().fullName(), existingEmail, 22)
+        );
+
+        // WHEN
+        List<Customer> actual = customerJdbcDataAccessService.insertCustomers(customers);
+
+        //THEN
+        assertThat(actual).singleElement().satisfies(c -> {
+            assertThat(c.getId()).isNotNull();
+            assertThat(c.getEmail()).isEqualTo(email);
+            assertThat(c.getAge()).isEqualTo(21);
+        });
+        assertThat(customerJdbcDataAccessService.existPersonWithEmail(email)).isTrue();
+    }
+
     @Test
     void deleteCustomerById() {
         // GIVEN
@@ -132,17 +317,127 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
         // WHEN
 
-        customerJdbcDataAccessService.deleteCustomerById(id);
+        Optional<Customer> deleted = customerJdbcDataAccessService.deleteCustomerById(id);
 
         Optional<Customer> actual = customerJdbcDataAccessService.selectCustomerById(id);
 
         //THEN
+        assertThat(deleted).isPresent().hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
         assertThat(actual).isEmpty();
         
     }
 
 
 
+    @Test
+    void deleteCustomerByIdOnlyAtAGivenVersion() {
+        // GIVEN
+        Customer customer = new Customer(
+                FAKER.name().fullName()
+                ,FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID()
+                ,20);
+        customerJdbcDataAccessService.insertCustomer(customer);
+
+        // WHEN
+        Optional<Customer> stale = customerJdbcDataAccessService.deleteCustomerById(customer.getId(), List.of(2L));
+        Optional<Customer> current = customerJdbcDataAccessService.deleteCustomerById(customer.getId(), List.of(2L, 1L));
+
+        //THEN
+        assertThat(stale).isEmpty();
+        assertThat(current).map(Customer::getVersion).contains(1L);
+        assertThat(customerJdbcDataAccessService.existPersonWithId(customer.getId())).isFalse();
+    }
+
+    @Test
+    void willReturnEmptyDeleteCustomerById() {
+
+        var actual = customerJdbcDataAccessService.deleteCustomerById(-1L);
+
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void willReturnFalseInsertCustomerWithExistingEmail() {
+        // GIVEN
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName()
+                ,email
+                ,20);
+
+        customerJdbcDataAccessService.insertCustomer(customer);
+
+        // WHEN
+        boolean actual = customerJdbcDataAccessService.insertCustomer(new Customer(
+                FAKER.name().fullName()
+                ,email
+                ,30));
+
+        //THEN
+        assertThat(actual).isFalse();
+        assertThat(customer.getId()).isNotNull();
+    }
+
+    @Test
+    void willThrowUpdateCustomerWithExistingEmail() {
+        // GIVEN
+        Customer first = new Customer(
+                FAKER.name().fullName()
+                ,FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID()
+                ,20);
+        Customer second = new Customer(
+                FAKER.name().fullName()
+                ,FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID()
+                ,20);
+        customerJdbcDataAccessService.insertCustomer(first);
+        customerJdbcDataAccessService.insertCustomer(second);
+
+        // WHEN
+        assertThatThrownBy( () -> customerJdbcDataAccessService.updateCustomer(
+                new CustomerUpdate(second.getId(), null, first.getEmail(), null)
+        )).isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerOnlyAtAGivenVersion() {
+        // GIVEN
+        Customer customer = new Customer(
+                FAKER.name().fullName()
+                ,FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID()
+                ,20);
+        customerJdbcDataAccessService.insertCustomer(customer);
+        CustomerUpdate update = new CustomerUpdate(customer.getId(), null, null, 21);
+
+        // WHEN
+        Optional<Customer> stale = customerJdbcDataAccessService.updateCustomer(update, List.of(2L));
+        Optional<Customer> current = customerJdbcDataAccessService.updateCustomer(update, List.of(1L));
+
+        //THEN
+        assertThat(stale).isEmpty();
+        assertThat(current).hasValueSatisfying(c -> {
+            assertThat(c.getAge()).isEqualTo(21);
+            assertThat(c.getVersion()).isEqualTo(2L);
+        });
+    }
+
+    @Test
+    void willReturnEmptyUpdateCustomerWithSameValues() {
+        // GIVEN
+        Customer customer = new Customer(
+                FAKER.name().fullName()
+                ,FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID()
+                ,20);
+        customerJdbcDataAccessService.insertCustomer(customer);
+
+        // WHEN
+        Optional<Customer> actual = customerJdbcDataAccessService.updateCustomer(
+                new CustomerUpdate(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge())
+        );
+
+        //THEN
+        assertThat(actual).isEmpty();
+    }
+
     @Test
     void updateCustomerName() {
         // GIVEN
@@ -164,11 +459,7 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
         // WHEN
         var name = "foo";
 
-        Customer update = new Customer();
-        update.setId(id);
-        update.setName(name);
-        update.setEmail(customer.getEmail());
-        update.setAge(customer.getAge());
+        CustomerUpdate update = new CustomerUpdate(id, name, null, null);
 
         customerJdbcDataAccessService.updateCustomer(update);
 
@@ -176,10 +467,10 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
         //THEN
         assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(update.getId());
-            assertThat(c.getName()).isEqualTo(update.getName()); // changed
-            assertThat(c.getEmail()).isEqualTo(update.getEmail());
-            assertThat(c.getAge()).isEqualTo(update.getAge());
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(name); // changed
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
         });
     }
 
@@ -205,11 +496,7 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
         var email2 = "kale@gail.com";
 
-        Customer update = new Customer();
-        update.setId(id);
-        update.setEmail(email2);
-        update.setAge(customer.getAge());
-        update.setName(customer.getName());
+        CustomerUpdate update = new CustomerUpdate(id, null, email2, null);
 
         customerJdbcDataAccessService.updateCustomer(update);
 
@@ -217,10 +504,10 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
         //THEN
         assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(update.getId());
-            assertThat(c.getName()).isEqualTo(update.getName());
-            assertThat(c.getEmail()).isEqualTo(update.getEmail()); // changed
-            assertThat(c.getAge()).isEqualTo(update.getAge());
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getEmail()).isEqualTo(email2); // changed
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
         });
     }
 
@@ -246,11 +533,7 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
         // WHEN
 
 
-        Customer update = new Customer();
-        update.setId(id);
-        update.setAge(55);
-        update.setEmail(customer.getEmail());
-        update.setName(customer.getName());
+        CustomerUpdate update = new CustomerUpdate(id, null, null, 55);
 
         customerJdbcDataAccessService.updateCustomer(update);
 
@@ -258,10 +541,10 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
         //THEN
         assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(update.getId());
-            assertThat(c.getName()).isEqualTo(update.getName());
-            assertThat(c.getEmail()).isEqualTo(update.getEmail());
-            assertThat(c.getAge()).isEqualTo(update.getAge()) ; // changed
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(update.age()) ; // changed
         });
     }
 
@@ -286,21 +569,17 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
         // WHEN
 
 
-        Customer update = new Customer();
-        update.setId(id);
-        update.setAge(55);
-        update.setName("karl");
-        update.setEmail("karl@gmail.com");
+        CustomerUpdate update = new CustomerUpdate(id, "karl", "karl@gmail.com", 55);
         customerJdbcDataAccessService.updateCustomer(update);
 
         Optional<Customer> actual = customerJdbcDataAccessService.selectCustomerById(id);
 
         //THEN
         assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(update.getId());
-            assertThat(c.getName()).isEqualTo(update.getName()); // changed
-            assertThat(c.getEmail()).isEqualTo(update.getEmail()); // changed
-            assertThat(c.getAge()).isEqualTo(update.getAge()) ; // changed
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(update.name()); // changed
+            assertThat(c.getEmail()).isEqualTo(update.email()); // changed
+            assertThat(c.getAge()).isEqualTo(update.age()) ; // changed
         });
     }
 
@@ -324,7 +603,7 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
 
         // WHEN
 
-        customerJdbcDataAccessService.updateCustomer(customer);
+        customerJdbcDataAccessService.updateCustomer(new CustomerUpdate(id, null, null, null));
 
         customer.setId(id);
 
@@ -373,6 +652,23 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
         assertThat(actual).isFalse();
     }
 
+    @Test
+    void selectExistingEmails() {
+        // GIVEN
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerJdbcDataAccessService.insertCustomer(new Customer(
+                FAKER.name().fullName()
+                ,email
+                ,20));
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // WHEN
+        Set<String> actual = customerJdbcDataAccessService.selectExistingEmails(List.of(email, unknownEmail));
+
+        //THEN
+        assertThat(actual).containsExactly(email);
+    }
+
     @Test
     void existPersonWithId() {
         // GIVEN
@@ -412,4 +708,13 @@ class CustomerJdbcDataAccessServiceTest extends AbstractUnitTestContainer {
         //THEN
         assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+    private static String email() {
+        return FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+    }
+
+    private static String misspell(String word) {
+        char replaced = word.charAt(5) == 'q' ? 'w' : 'q';
+        return word.substring(0, 5) + replaced + word.substring(6);
+    }
+}
@@ -0,0 +1,171 @@
+package com.ayoubhj.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessService();
+    }
+
+    @Test
+    void insertCustomerAssignsNextId() {
+        // GIVEN
+        Customer customer = new Customer("ayoub", "ayoub-new@gmail.com", 22);
+        // WHEN
+        boolean actual = underTest.insertCustomer(customer);
+        //THEN
+        assertThat(actual).isTrue();
+        assertThat(customer.getId()).isEqualTo(3L);
+        assertThat(underTest.selectCustomerById(3L)).map(Customer::getEmail).contains("ayoub-new@gmail.com");
+    }
+
+    @Test
+    void insertCustomerRejectsDuplicateEmail() {
+        // WHEN
+        boolean actual = underTest.insertCustomer(new Customer("alya", "alya@gmail.com", 20));
+        //THEN
+        assertThat(actual).isFalse();
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void concurrentInsertsGetDistinctIds() throws InterruptedException {
+        // GIVEN
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        // WHEN
+        IntStream.range(0, 1_000).forEach(i -> executor.submit(
+                () -> underTest.insertCustomer(new Customer("c" + i, "c" + i + "@gmail.com", 20))));
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        //THEN
+        List<Customer> actual = underTest.selectAllCustomers();
+        assertThat(actual).hasSize(1_002);
+        assertThat(actual).extracting(Customer::getId).doesNotHaveDuplicates().isSorted();
+    }
+
+    @Test
+    void selectCustomersPagesById() {
+        // WHEN
+        List<Customer> actual = underTest.selectCustomers(1L, 10);
+        //THEN
+        assertThat(actual).extracting(Customer::getId).containsExactly(2L);
+    }
+
+    @Test
+    void selectCustomerByIdReturnsCopy() {
+        // GIVEN
+        underTest.selectCustomerById(1L).orElseThrow().setName("changed");
+        // WHEN
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+        //THEN
+        assertThat(actual).map(Customer::getName).contains("Ayoub");
+    }
+
+    @Test
+    void selectCustomersByIdsSkipsMissingIds() {
+        // WHEN
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(2L, 42L, 1L));
+        //THEN
+        assertThat(actual).extracting(Customer::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void searchCustomersFiltersSortsAndLimits() {
+        // GIVEN
+        underTest.insertCustomer(new Customer("Ayman", "ayman@GMAIL.com", 30));
+        underTest.insertCustomer(new Customer("Aya", "aya@yahoo.com", 31));
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                null, 40, "ay", "gmail.com", CustomerSearchCriteria.SortBy.AGE, true, 10);
+        // WHEN
+        List<Customer> actual = underTest.searchCustomers(criteria);
+        //THEN
+        assertThat(actual).extracting(Customer::getEmail).containsExactly("ayman@GMAIL.com", "Ayoub@gmail.com");
+    }
+
+    @Test
+    void fuzzySearchCustomersRanksMatchesAndSkipsTheRest() {
+        // GIVEN
+        underTest.insertCustomer(new Customer("Ayman", "ayman@yahoo.com", 30));
+        // WHEN
+        List<CustomerMatch> actual = underTest.fuzzySearchCustomers("ayob", 0.5, 10);
+        //THEN
+        assertThat(actual).extracting(match -> match.customer().getName()).containsExactly("Ayoub");
+        assertThat(actual.get(0).similarity()).isEqualTo(0.6);
+    }
+
+    @Test
+    void updateCustomerReplacesCustomerAndEmailIndex() {
+        // GIVEN
+        CustomerUpdate update = new CustomerUpdate(1L, null, "new@gmail.com", 30);
+        // WHEN
+        Optional<Customer> actual = underTest.updateCustomer(update);
+        //THEN
+        assertThat(actual).map(Customer::getEmail).contains("new@gmail.com");
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+        assertThat(underTest.existPersonWithEmail("new@gmail.com")).isTrue();
+        assertThat(underTest.existPersonWithEmail("Ayoub@gmail.com")).isFalse();
+    }
+
+    @Test
+    void updateCustomerReturnsEmptyWithoutChanges() {
+        // WHEN
+        Optional<Customer> actual = underTest.updateCustomer(new CustomerUpdate(1L, "Ayoub", null, 22));
+        //THEN
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void updateCustomerRejectsTakenEmail() {
+        assertThatThrownBy(() -> underTest.updateCustomer(new CustomerUpdate(1L, null, "alya@gmail.com", null)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(1L)).map(Customer::getEmail).contains("Ayoub@gmail.com");
+    }
+
+    @Test
+    void versionedUpdateOnlyAppliesToAMatchingVersion() {
+        // WHEN
+        Optional<Customer> stale = underTest.updateCustomer(new CustomerUpdate(1L, "stale", null, null), List.of(2L));
+        Optional<Customer> actual = underTest.updateCustomer(new CustomerUpdate(1L, "fresh", null, null), List.of(1L));
+        //THEN
+        assertThat(stale).isEmpty();
+        assertThat(actual).map(Customer::getVersion).contains(2L);
+        assertThat(underTest.selectCustomerById(1L)).map(Customer::getName).contains("fresh");
+    }
+
+    @Test
+    void versionedDeleteOnlyAppliesToAMatchingVersion() {
+        // WHEN
+        Optional<Customer> stale = underTest.deleteCustomerById(2L, List.of(2L));
+        Optional<Customer> actual = underTest.deleteCustomerById(2L, List.of(1L));
+        //THEN
+        assertThat(stale).isEmpty();
+        assertThat(actual).map(Customer::getEmail).contains("alya@gmail.com");
+        assertThat(underTest.existPersonWithId(2L)).isFalse();
+    }
+
+    @Test
+    void deleteCustomerByIdRemovesFromIndexes() {
+        // WHEN
+        Optional<Customer> actual = underTest.deleteCustomerById(2L);
+        //THEN
+        assertThat(actual).map(Customer::getEmail).contains("alya@gmail.com");
+        assertThat(underTest.existPersonWithId(2L)).isFalse();
+        assertThat(underTest.existPersonWithEmail("alya@gmail.com")).isFalse();
+    }
+}
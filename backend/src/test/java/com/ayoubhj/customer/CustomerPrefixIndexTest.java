@@ -0,0 +1,107 @@
+package com.ayoubhj.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerPrefixIndexTest {
+
+    @Test
+    void completeMatchesNamesAndEmailsIgnoringCase() {
+        // GIVEN
+        CustomerPrefixIndex underTest = new CustomerPrefixIndex();
+        underTest.startLoading();
+        underTest.load(new Customer(1L, "Ayoub", "ayoub@gmail.com", 22));
+        underTest.load(new Customer(2L, "Alya", "alya@gmail.com", 20));
+        underTest.load(new Customer(3L, "Karl", "AYMAN@yahoo.com", 30));
+        underTest.finishLoading();
+        // WHEN
+        List<Customer> actual = underTest.complete("AY", 10);
+        //THEN
+        assertThat(actual).extracting(Customer::getId).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void completeMergesSortedAndRecentTermsInOrder() {
+        // GIVEN
+        CustomerPrefixIndex underTest = new CustomerPrefixIndex();
+        underTest.startLoading();
+        LongStream.rangeClosed(1, 5).forEach(id -> underTest.load(new Customer(id, "ab" + id, "x" + id + "@gmail.com", 20)));
+        underTest.finishLoading();
+        underTest.put(new Customer(6L, "ab0", "y@gmail.com", 20));
+        underTest.put(new Customer(7L, "ab35", "z@gmail.com", 20));
+        // WHEN
+        List<Customer> actual = underTest.complete("ab", 5);
+        //THEN
+        assertThat(actual).extracting(Customer::getName).containsExactly("ab0", "ab1", "ab2", "ab3", "ab35");
+        assertThat(underTest.sortedTermCount()).isEqualTo(10);
+        assertThat(underTest.recentTermCount()).isEqualTo(4);
+    }
+
+    @Test
+    void updatedAndDeletedCustomersLeaveResultsBeforeAndAfterCompaction() {
+        // GIVEN
+        CustomerPrefixIndex underTest = new CustomerPrefixIndex();
+        underTest.put(new Customer(1L, "Ayoub", "ayoub@gmail.com", 22));
+        underTest.put(new Customer(2L, "Aya", "aya@gmail.com", 20));
+        // WHEN
+        underTest.put(new Customer(1L, "Karl", "karl@gmail.com", 22));
+        underTest.remove(2L, 1L);
+        //THEN
+        assertThat(underTest.complete("ay", 10)).isEmpty();
+        assertThat(underTest.complete("ka", 10)).extracting(Customer::getId).containsExactly(1L);
+        assertThat(underTest.compact()).isTrue();
+        assertThat(underTest.complete("ay", 10)).isEmpty();
+        assertThat(underTest.complete("karl@", 10)).extracting(Customer::getId).containsExactly(1L);
+        assertThat(underTest.sortedTermCount()).isEqualTo(2);
+        assertThat(underTest.recentTermCount()).isZero();
+    }
+
+    @Test
+    void olderPutsAreIgnored() {
+        // GIVEN
+        CustomerPrefixIndex underTest = new CustomerPrefixIndex();
+        underTest.put(new Customer(1L, "Karl", "karl@gmail.com", 22, 3L));
+        // WHEN
+        underTest.put(new Customer(1L, "Ayoub", "ayoub@gmail.com", 22, 2L));
+        underTest.put(new Customer(1L, "Alya", "alya@gmail.com", 22, 3L));
+        //THEN
+        assertThat(underTest.complete("a", 10)).isEmpty();
+        assertThat(underTest.complete("k", 10)).extracting(Customer::getVersion).containsExactly(3L);
+    }
+
+    @Test
+    void putAfterRemoveDoesNotBringTheCustomerBack() {
+        // GIVEN
+        CustomerPrefixIndex underTest = new CustomerPrefixIndex();
+        underTest.put(new Customer(1L, "Ayoub", "ayoub@gmail.com", 22, 1L));
+        underTest.remove(1L, 2L);
+        // WHEN
+        underTest.put(new Customer(1L, "Karl", "karl@gmail.com", 22, 2L));
+        //THEN
+        assertThat(underTest.complete("a", 10)).isEmpty();
+        assertThat(underTest.complete("k", 10)).isEmpty();
+        assertThat(underTest.customerCount()).isZero();
+    }
+
+    @Test
+    void loadKeepsChangesMadeWhileLoading() {
+        // GIVEN
+        CustomerPrefixIndex underTest = new CustomerPrefixIndex();
+        underTest.startLoading();
+        underTest.put(new Customer(1L, "Karl", "karl@gmail.com", 22));
+        underTest.remove(2L, 1L);
+        // WHEN
+        underTest.load(new Customer(1L, "Ayoub", "ayoub@gmail.com", 22));
+        underTest.load(new Customer(2L, "Alya", "alya@gmail.com", 20));
+        underTest.finishLoading();
+        //THEN
+        assertThat(underTest.complete("a", 10)).isEmpty();
+        assertThat(underTest.complete("k", 10)).extracting(Customer::getName).containsExactly("Karl");
+        assertThat(underTest.customerCount()).isEqualTo(1);
+        assertThat(underTest.sizeInBytes()).isPositive();
+    }
+}
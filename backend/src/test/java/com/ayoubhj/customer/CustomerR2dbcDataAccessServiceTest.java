@@ -0,0 +1,240 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.AbstractUnitTestContainer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.r2dbc.connection.SingleConnectionFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerR2dbcDataAccessServiceTest extends AbstractUnitTestContainer {
+
+    private CustomerR2dbcDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerR2dbcDataAccessService(getDatabaseClient());
+    }
+
+    @Test
+    void selectAllCustomersStreamsInIdOrder() {
+        // GIVEN
+        insert(20);
+        insert(21);
+
+        // WHEN
+        List<Customer> actual = underTest.selectAllCustomers().collectList().block();
+
+        //THEN
+        assertThat(actual).hasSizeGreaterThanOrEqualTo(2);
+        assertThat(actual).extracting(Customer::getId).isSorted();
+    }
+
+    @Test
+    void selectCustomers() {
+        // GIVEN
+        Customer first = insert(20);
+        insert(21);
+        insert(22);
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.selectCustomers(first.getId() - 1, 2))
+                .assertNext(customer -> assertThat(customer.getId()).isEqualTo(first.getId()))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void insertAndSelectCustomerById() {
+        // GIVEN
+        Customer customer = insert(20);
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.selectCustomerById(customer.getId()))
+                .assertNext(actual -> assertThat(actual).usingRecursiveComparison().isEqualTo(customer))
+                .verifyComplete();
+    }
+
+    @Test
+    void fuzzySearchCustomersFindsMisspelledNames() {
+        // GIVEN
+        String word = FAKER.letterify("??????????");
+        Customer customer = underTest.insertCustomer(new Customer("Ayoub " + word, email(), 22)).block();
+        String misspelled = word.substring(0, 5) + (word.charAt(5) == 'q' ? 'w' : 'q') + word.substring(6);
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.fuzzySearchCustomers(misspelled, 0.5, 10))
+                .assertNext(match -> {
+                    assertThat(match.customer().getId()).isEqualTo(customer.getId());
+                    assertThat(match.similarity()).isBetween(0.5, 1.0);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void fuzzySearchCustomersLeavesConnectionThresholdAlone() {
+        // GIVEN
+        ConnectionFactory connectionFactory = getDatabaseClient().getConnectionFactory();
+        Connection connection = Mono.from(connectionFactory.create()).block();
+        DatabaseClient databaseClient = DatabaseClient.create(
+                new SingleConnectionFactory(connection, connectionFactory.getMetadata(), true));
+        CustomerR2dbcDataAccessService underTest = new CustomerR2dbcDataAccessService(databaseClient);
+        databaseClient.sql("SELECT set_config('pg_trgm.word_similarity_threshold', '0.3', false)").then().block();
+
+        // WHEN
+        underTest.fuzzySearchCustomers("ayoub", 0.9, 10).collectList().block();
+
+        //THEN
+        assertThat(databaseClient.sql("SELECT current_setting('pg_trgm.word_similarity_threshold')")
+                .map(row -> row.get(0, String.class))
+                .one()
+                .block()).isEqualTo("0.3");
+        assertThat(connection.isAutoCommit()).isTrue();
+        Mono.from(connection.close()).block();
+    }
+
+    @Test
+    void willReturnEmptySelectCustomerById() {
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.selectCustomerById(-1L))
+                .verifyComplete();
+    }
+
+    @Test
+    void selectCustomersByIdsSkipsMissingIds() {
+        // GIVEN
+        Customer first = insert(20);
+        Customer second = insert(21);
+
+        // WHEN
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(first.getId(), -1L, second.getId())).collectList().block();
+
+        //THEN
+        assertThat(actual).extracting(Customer::getId).containsExactlyInAnyOrder(first.getId(), second.getId());
+    }
+
+    @Test
+    void willReturnEmptyInsertCustomerWithExistingEmail() {
+        // GIVEN
+        Customer customer = insert(20);
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.insertCustomer(new Customer("other", customer.getEmail(), 30)))
+                .verifyComplete();
+    }
+
+    @Test
+    void insertCustomersSkipsTakenEmails() {
+        // GIVEN
+        Customer existing = insert(20);
+        List<Customer> customers = new ArrayList<>();
+        customers.add(new Customer("taken", existing.getEmail(), 30));
+        customers.add(new Customer(FAKER.name().fullName(), email(), 31));
+        customers.add(new Customer(FAKER.name().fullName(), email(), 32));
+
+        // WHEN
+        List<Customer> actual = underTest.insertCustomers(customers).collectList().block();
+
+        //THEN
+        assertThat(actual).extracting(Customer::getEmail)
+                .containsExactlyInAnyOrder(customers.get(1).getEmail(), customers.get(2).getEmail());
+        assertThat(actual).allSatisfy(customer -> assertThat(customer.getId()).isNotNull());
+    }
+
+    @Test
+    void deleteCustomerById() {
+        // GIVEN
+        Customer customer = insert(20);
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.deleteCustomerById(customer.getId()))
+                .assertNext(actual -> assertThat(actual.getEmail()).isEqualTo(customer.getEmail()))
+                .verifyComplete();
+        StepVerifier.create(underTest.existPersonWithId(customer.getId()))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void updateCustomerAllFields() {
+        // GIVEN
+        Customer customer = insert(20);
+        String email = email();
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.updateCustomer(new CustomerUpdate(customer.getId(), "new name", email, 99)))
+                .assertNext(actual -> {
+                    assertThat(actual.getName()).isEqualTo("new name");
+                    assertThat(actual.getEmail()).isEqualTo(email);
+                    assertThat(actual.getAge()).isEqualTo(99);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void willReturnEmptyUpdateCustomerWithSameValues() {
+        // GIVEN
+        Customer customer = insert(20);
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.updateCustomer(new CustomerUpdate(customer.getId(), customer.getName(), null, 20)))
+                .verifyComplete();
+    }
+
+    @Test
+    void willThrowUpdateCustomerWithExistingEmail() {
+        // GIVEN
+        Customer customer = insert(20);
+        Customer other = insert(21);
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.updateCustomer(new CustomerUpdate(customer.getId(), null, other.getEmail(), null)))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+    }
+
+    @Test
+    void existenceChecks() {
+        // GIVEN
+        Customer customer = insert(20);
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.existPersonWithEmail(customer.getEmail()))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(underTest.existPersonWithEmail(email()))
+                .expectNext(false)
+                .verifyComplete();
+        assertThat(underTest.selectExistingEmails(Set.of(customer.getEmail(), email())).collectList().block())
+                .containsExactly(customer.getEmail());
+    }
+
+    private Customer insert(int age) {
+        return underTest.insertCustomer(new Customer(FAKER.name().fullName(), email(), age)).block();
+    }
+
+    private static String email() {
+        return FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+    }
+}
@@ -6,7 +6,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -42,6 +44,62 @@ class CustomerRepositoryTest extends AbstractUnitTestContainer {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void insertSkippingTakenEmailsReturnsOnlyTheRowsInserted() {
+        //GIVEN
+        String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.save(new Customer(FAKER.name().fullName(), taken, 20));
+
+        // WHEN
+        List<Object[]> actual = underTest.insertSkippingTakenEmails(
+                new String[]{"ayoub", "alya"},
+                new String[]{email, taken},
+                new Integer[]{22, 20});
+
+        //THEN
+        assertThat(actual).hasSize(1);
+        assertThat(actual.get(0)).containsSubsequence("ayoub", email, 22);
+        assertThat(underTest.existsCustomerByEmail(email)).isTrue();
+    }
+
+    @Test
+    void updateReturningChangesOnlyTheGivenFieldsAndBumpsTheVersion() {
+        //GIVEN
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = underTest.saveAndFlush(new Customer(FAKER.name().fullName(), email, 20));
+
+        // WHEN
+        List<Object[]> unchanged = underTest.updateReturning(customer.getId(), null, email, 20);
+        List<Object[]> stale = underTest.updateReturning(customer.getId(), null, null, 21, new Long[]{2L});
+        List<Object[]> actual = underTest.updateReturning(customer.getId(), null, null, 21, new Long[]{1L});
+
+        //THEN
+        assertThat(unchanged).isEmpty();
+        assertThat(stale).isEmpty();
+        assertThat(actual).hasSize(1);
+        assertThat(actual.get(0)).containsExactly(customer.getId(), customer.getName(), email, 21, 2L);
+    }
+
+    @Test
+    void deleteReturningDeletesOnlyAMatchingVersion() {
+        //GIVEN
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = underTest.saveAndFlush(new Customer(FAKER.name().fullName(), email, 20));
+
+        // WHEN
+        List<Object[]> none = underTest.deleteReturning(customer.getId(), new Long[0]);
+        List<Object[]> stale = underTest.deleteReturning(customer.getId(), new Long[]{2L});
+        List<Object[]> actual = underTest.deleteReturning(customer.getId(), new Long[]{1L});
+
+        //THEN
+        assertThat(none).isEmpty();
+        assertThat(stale).isEmpty();
+        assertThat(actual).hasSize(1);
+        assertThat(actual.get(0)).contains(email);
+        assertThat(underTest.deleteReturning(customer.getId())).isEmpty();
+    }
+
     @Test
     void ReturnFalseExistsCustomerByEmail() {
         //GIVEN
@@ -79,6 +137,28 @@ class CustomerRepositoryTest extends AbstractUnitTestContainer {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void findAllBySpecificationFiltersSortsAndLimits() {
+        // GIVEN
+        String domain = UUID.randomUUID() + ".com";
+        underTest.save(new Customer("Ayoub", "ayoub@" + domain, 22));
+        underTest.save(new Customer("ayman", "ayman@" + domain.toUpperCase(), 30));
+        underTest.save(new Customer("Aya", "aya@" + domain, 40));
+        underTest.save(new Customer("Alya", "alya@" + domain, 25));
+        underTest.save(new Customer("Ayoub", "ayoub@other.com", 25));
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                20, 35, "AY", domain, CustomerSearchCriteria.SortBy.AGE, true, 10);
+
+        // WHEN
+        List<Customer> actual = underTest.findAll(
+                CustomerSpecifications.of(criteria),
+                Sort.by(Sort.Direction.DESC, "age").and(Sort.by(Sort.Direction.DESC, "id")),
+                1);
+
+        //THEN
+        assertThat(actual).extracting(Customer::getName).containsExactly("ayman");
+    }
+
     @Test
     void ReturnFalseExistsCustomerById() {
         // GIVEN
@@ -0,0 +1,174 @@
+package com.ayoubhj.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CustomerResponseCache underTest;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CustomerResponseCache(objectMapper, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), meterRegistry);
+    }
+
+    @Test
+    void rendersOnceAndServesTheAcceptedCoding() throws IOException {
+        // GIVEN
+        List<Customer> customers = customers(100);
+        AtomicInteger renders = new AtomicInteger();
+        Supplier<List<Customer>> body = () -> {
+            renders.incrementAndGet();
+            return customers;
+        };
+        // WHEN
+        CustomerResponseCache.Encoded identity = underTest.get("all", "\"1\"", body, null);
+        CustomerResponseCache.Encoded gzip = underTest.get("all", "\"1\"", body, "gzip, deflate");
+        CustomerResponseCache.Encoded brotli = underTest.get("all", "\"1\"", body, "gzip, deflate, br");
+        //THEN
+        assertThat(renders).hasValue(1);
+        assertThat(identity.coding()).isEqualTo(CustomerResponseCache.Coding.IDENTITY);
+        assertThat(identity.etag()).isEqualTo("\"1\"");
+        assertThat(identity.body()).isEqualTo(objectMapper.writeValueAsBytes(customers));
+        assertThat(gzip.coding()).isEqualTo(CustomerResponseCache.Coding.GZIP);
+        assertThat(gzip.etag()).isEqualTo("\"1-gzip\"");
+        assertThat(new GZIPInputStream(new ByteArrayInputStream(gzip.body())).readAllBytes()).isEqualTo(identity.body());
+        assertThat(brotli.coding()).isEqualTo(CustomerResponseCache.Coding.BROTLI);
+        assertThat(brotli.etag()).isEqualTo("\"1-br\"");
+        assertThat(brotli.body().length).isLessThan(identity.body().length);
+        assertThat(meterRegistry.get("customer.response-cache.responses").tag("encoding", "gzip").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("customer.response-cache.size").gauge().value())
+                .isEqualTo(identity.body().length + gzip.body().length + brotli.body().length);
+    }
+
+    @Test
+    void rendersAgainUnderANewETagOrAfterAChange() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+        Supplier<List<Customer>> body = () -> {
+            renders.incrementAndGet();
+            return customers(1);
+        };
+        underTest.get("all", "\"1\"", body, null);
+        // WHEN
+        CustomerResponseCache.Encoded newer = underTest.get("all", "\"2\"", body, null);
+        underTest.onCustomerChanged(CustomerChangedEvent.deleted(new Customer(1L, "ayoub", "ayoub@gmail.com", 22, 1L)));
+        underTest.get("all", "\"2\"", body, null);
+        //THEN
+        assertThat(renders).hasValue(3);
+        assertThat(newer.etag()).isEqualTo("\"2\"");
+    }
+
+    @Test
+    void invalidationDoesNotWaitForARenderInProgress() throws Exception {
+        // GIVEN
+        underTest.get("all", "\"1\"", () -> customers(1), null);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch loaded = new CountDownLatch(1);
+        AtomicInteger renders = new AtomicInteger();
+        Supplier<List<Customer>> body = () -> {
+            renders.incrementAndGet();
+            loading.countDown();
+            try {
+                loaded.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return customers(2);
+        };
+        CompletableFuture<CustomerResponseCache.Encoded> first =
+                CompletableFuture.supplyAsync(() -> underTest.get("all", "\"2\"", body, null));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<CustomerResponseCache.Encoded> second =
+                CompletableFuture.supplyAsync(() -> underTest.get("all", "\"2\"", body, null));
+        // WHEN
+        CompletableFuture<Void> invalidated =
+                CompletableFuture.runAsync(() -> underTest.onCustomerChanged(
+                        CustomerChangedEvent.deleted(new Customer(1L, "ayoub", "ayoub@gmail.com", 22, 1L))));
+        //THEN
+        invalidated.get(5, TimeUnit.SECONDS);
+        loaded.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).etag()).isEqualTo("\"2\"");
+        assertThat(second.get(5, TimeUnit.SECONDS).body()).isEqualTo(first.get().body());
+        assertThat(renders).hasValue(1);
+    }
+
+    @Test
+    void compressesOnlyTheRequestedCoding() throws IOException {
+        // GIVEN
+        List<Customer> customers = customers(100);
+        // WHEN
+        CustomerResponseCache.Encoded gzip = underTest.get("all", "\"1\"", () -> customers, "gzip");
+        //THEN
+        assertThat(gzip.coding()).isEqualTo(CustomerResponseCache.Coding.GZIP);
+        assertThat(meterRegistry.get("customer.response-cache.size").gauge().value())
+                .isEqualTo(objectMapper.writeValueAsBytes(customers).length + gzip.body().length);
+    }
+
+    @Test
+    void oversizedResponseIsServedWithoutBeingKept() {
+        // GIVEN
+        AtomicInteger renders = new AtomicInteger();
+        Supplier<List<Customer>> body = () -> {
+            renders.incrementAndGet();
+            return customers(2_000);
+        };
+        // WHEN
+        CustomerResponseCache.Encoded first = underTest.get("all", "\"1\"", body, null);
+        underTest.get("all", "\"1\"", body, null);
+        //THEN
+        assertThat(first.body().length).isGreaterThan(64 * 1024);
+        assertThat(renders).hasValue(2);
+        assertThat(underTest.isOversized("all")).isTrue();
+        assertThat(underTest.isOversized("page?after=null&limit=null")).isFalse();
+        assertThat(meterRegistry.get("customer.response-cache.size").gauge().value()).isZero();
+    }
+
+    @Test
+    void negotiateHonoursQualities() {
+        // GIVEN
+        // WHEN
+        //THEN
+        assertThat(underTest.negotiate("br;q=0, gzip;q=0.5")).isEqualTo(CustomerResponseCache.Coding.GZIP);
+        assertThat(underTest.negotiate("*")).isEqualTo(CustomerResponseCache.Coding.BROTLI);
+        assertThat(underTest.negotiate("*;q=0, identity")).isEqualTo(CustomerResponseCache.Coding.IDENTITY);
+        assertThat(underTest.negotiate("GZIP")).isEqualTo(CustomerResponseCache.Coding.GZIP);
+        assertThat(underTest.negotiate(null)).isEqualTo(CustomerResponseCache.Coding.IDENTITY);
+    }
+
+    @Test
+    void smallResponsesGoOutUncompressed() {
+        // GIVEN
+        // WHEN
+        CustomerResponseCache.Encoded actual = underTest.get("all", "\"1\"", () -> customers(1), "gzip, br");
+        //THEN
+        assertThat(actual.coding()).isEqualTo(CustomerResponseCache.Coding.IDENTITY);
+        assertThat(actual.etag()).isEqualTo("\"1\"");
+    }
+
+    private static List<Customer> customers(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> new Customer((long) i, "customer " + i, "customer" + i + "@gmail.com", 20 + i % 50))
+                .toList();
+    }
+}
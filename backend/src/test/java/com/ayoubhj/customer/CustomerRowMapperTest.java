@@ -23,6 +23,7 @@ class CustomerRowMapperTest {
         when(resultSet.getString("name")).thenReturn(expected.getName());
         when(resultSet.getString("email")).thenReturn(expected.getEmail());
         when(resultSet.getInt("age")).thenReturn(expected.getAge());
+        when(resultSet.getLong("version")).thenReturn(3L);
 
         // WHEN
 
@@ -30,5 +31,6 @@ class CustomerRowMapperTest {
 
         //THEN
         assertThat(actual.getId()).isEqualTo(expected.getId());
+        assertThat(actual.getVersion()).isEqualTo(3L);
     }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.ayoubhj.customer;
 
 import com.ayoubhj.exception.DuplicateResourceException;
 import com.ayoubhj.exception.NoDataChangeException;
+import com.ayoubhj.exception.PreconditionFailedException;
+import com.ayoubhj.exception.RequestValidationException;
 import com.ayoubhj.exception.ResourceNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,8 +12,17 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -23,11 +34,157 @@ class CustomerServiceTest {
     private CustomerService underTest;
     @Mock
     private CustomerDao customerDao;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        underTest = new CustomerService(customerDao);
+        underTest = new CustomerService(customerDao, 0.5, eventPublisher);
+    }
+
+    @Test
+    void lookupCustomersKeepsRequestOrderAndReportsMissingIds() {
+        // GIVEN
+        when(customerDao.selectCustomersByIds(Set.of(3L, 1L, 2L))).thenReturn(List.of(
+                new Customer(1L,"ayoub","ayoub@gmail.com",22),
+                new Customer(3L,"karl","karl@gmail.com",30)
+        ));
+        // WHEN
+        CustomerLookupResult actual = underTest.lookupCustomers(List.of(3L, 1L, 3L, 2L));
+        //THEN
+        assertThat(actual.customers()).extracting(Customer::getId).containsExactly(3L, 1L);
+        assertThat(actual.missingIds()).containsExactly(2L);
+    }
+
+    @Test
+    void lookupCustomersRejectsTooManyIds() {
+        // GIVEN
+        List<Long> ids = LongStream.rangeClosed(1, CustomerService.MAX_LOOKUP_SIZE + 1).boxed().toList();
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.lookupCustomers(ids))
+                .isInstanceOf(RequestValidationException.class);
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void searchCustomersParsesDescendingSort() {
+        // GIVEN
+        CustomerSearchCriteria expected = new CustomerSearchCriteria(
+                18, 30, "ay", null, CustomerSearchCriteria.SortBy.AGE, true, CustomerService.DEFAULT_PAGE_SIZE);
+        // WHEN
+        underTest.searchCustomers(18, 30, "ay", " ", "-age", null);
+        //THEN
+        verify(customerDao).searchCustomers(expected);
+    }
+
+    @Test
+    void searchCustomersRejectsUnknownSort() {
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.searchCustomers(null, null, null, null, "password", null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("cannot sort by [password]");
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void searchCustomersRejectsInvertedAgeRange() {
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.searchCustomers(40, 30, null, null, null, null))
+                .isInstanceOf(RequestValidationException.class);
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void fuzzySearchCustomersTrimsQueryAndUsesThreshold() {
+        // WHEN
+        underTest.fuzzySearchCustomers("  ayub ", 20);
+        //THEN
+        verify(customerDao).fuzzySearchCustomers("ayub", 0.5, 20);
+    }
+
+    @Test
+    void fuzzySearchCustomersRejectsShortQuery() {
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.fuzzySearchCustomers(" ay ", null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("q must have at least 3 characters");
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void updateCustomerPassesIfMatchVersionsToTheWrite() {
+        // GIVEN
+        when(customerDao.updateCustomer(any(), eq(Set.of(2L, 3L))))
+                .thenReturn(Optional.of(new Customer(1L, "ayoub", "ayoub@gmail.com", 30, 4L)));
+        // WHEN
+        Customer actual = underTest.updateCustomer(1L, new UpdateRequest(null, null, 30), "\"2\", \"3\"");
+        //THEN
+        assertThat(ETags.of(actual)).isEqualTo("\"4\"");
+        verify(customerDao, never()).selectCustomerById(any());
+        verify(eventPublisher).publishEvent(any(CustomerChangedEvent.class));
+    }
+
+    @Test
+    void updateCustomerRejectsStaleIfMatch() {
+        // GIVEN
+        when(customerDao.updateCustomer(any(), eq(Set.of(2L)))).thenReturn(Optional.empty());
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "ayoub", "ayoub@gmail.com", 22, 3L)));
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.updateCustomer(1L, new UpdateRequest(null, null, 30), "\"2\""))
+                .isInstanceOf(PreconditionFailedException.class);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void updateCustomerWithMatchingIfMatchThatChangesNothing() {
+        // GIVEN
+        when(customerDao.updateCustomer(any(), eq(Set.of(3L)))).thenReturn(Optional.empty());
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.of(new Customer(1L, "ayoub", "ayoub@gmail.com", 30, 3L)));
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.updateCustomer(1L, new UpdateRequest(null, null, 30), "\"3\""))
+                .isInstanceOf(NoDataChangeException.class);
+    }
+
+    @Test
+    void deleteCustomerPassesIfMatchVersionsToTheDelete() {
+        // GIVEN
+        Customer customer = new Customer(1L, "ayoub", "ayoub@gmail.com", 22, 3L);
+        when(customerDao.deleteCustomerById(1L, Set.of(3L))).thenReturn(Optional.of(customer));
+        // WHEN
+        underTest.deleteCustomer(1L, "\"3\"");
+        //THEN
+        verify(eventPublisher).publishEvent(CustomerChangedEvent.deleted(customer));
+    }
+
+    @Test
+    void weakIfMatchFailsWithoutReachingTheDao() {
+        // GIVEN
+        String ifMatch = "W/\"3\", \"abc\"";
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.updateCustomer(1L, new UpdateRequest(null, null, 30), ifMatch))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThatThrownBy(() -> underTest.deleteCustomer(1L, ifMatch))
+                .isInstanceOf(PreconditionFailedException.class);
+        verifyNoInteractions(customerDao, eventPublisher);
+    }
+
+    @Test
+    void deleteCustomerRejectsIfMatchOfMissingCustomer() {
+        // GIVEN
+        when(customerDao.deleteCustomerById(1L)).thenReturn(Optional.empty());
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.deleteCustomer(1L, "*"))
+                .isInstanceOf(PreconditionFailedException.class);
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -38,6 +195,67 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void getCustomersFirstPage() {
+        // GIVEN
+        List<Customer> rows = List.of(
+                new Customer(1L,"ayoub","ayoub@gmail.com",22),
+                new Customer(2L,"alya","alya@gmail.com",20),
+                new Customer(3L,"karl","karl@gmail.com",30)
+        );
+        when(customerDao.selectCustomers(0L, 3)).thenReturn(rows);
+
+        // WHEN
+        CustomerPage actual = underTest.getCustomers(null, 2);
+
+        //THEN
+        assertThat(actual.customers()).extracting(Customer::getId).containsExactly(1L, 2L);
+        assertThat(CustomerCursor.decode(actual.nextCursor())).isEqualTo(2L);
+    }
+
+    @Test
+    void getCustomersLastPage() {
+        // GIVEN
+        String after = CustomerCursor.encode(2L);
+        when(customerDao.selectCustomers(2L, 3)).thenReturn(List.of(
+                new Customer(3L,"karl","karl@gmail.com",30)
+        ));
+
+        // WHEN
+        CustomerPage actual = underTest.getCustomers(after, 2);
+
+        //THEN
+        assertThat(actual.customers()).extracting(Customer::getId).containsExactly(3L);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void willThrowWhenGetCustomersLimitOutOfRange() {
+        assertThatThrownBy( () -> underTest.getCustomers(null, 0) )
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %s".formatted(CustomerService.MAX_PAGE_SIZE));
+
+        verify(customerDao,never()).selectCustomers(any(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenGetCustomersCursorInvalid() {
+        assertThatThrownBy( () -> underTest.getCustomers("not-a-cursor", 10) )
+                .isInstanceOf(RequestValidationException.class);
+
+        verify(customerDao,never()).selectCustomers(any(), anyInt());
+    }
+
+    @Test
+    void exportCustomers() {
+        // GIVEN
+        Consumer<Customer> consumer = customer -> {};
+        // WHEN
+        underTest.exportCustomers(consumer);
+        //THEN
+        verify(customerDao).streamAllCustomers(consumer);
+    }
+
     @Test
     void getCustomerById() {
         // GIVEN
@@ -70,7 +288,7 @@ class CustomerServiceTest {
         // GIVEN
         String email  = "ayoub@gmail.com";
 
-        when(customerDao.existPersonWithEmail(email)).thenReturn(false);
+        when(customerDao.insertCustomer(any())).thenReturn(true);
         // WHEN
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("ayoub", email, 22);
 
@@ -99,16 +317,89 @@ class CustomerServiceTest {
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("ayoub", email, 22);
 
-        when(customerDao.existPersonWithEmail(email)).thenReturn(true);
+        when(customerDao.insertCustomer(any())).thenReturn(false);
         // WHEN
 
         assertThatThrownBy( () -> underTest.insertCustomer(request) )
                 .isInstanceOf(DuplicateResourceException.class
                 ).hasMessage("email already exists");
 
-        verify(customerDao,never()).insertCustomer(any());
+        verify(customerDao,never()).existPersonWithEmail(any());
+        verifyNoInteractions(eventPublisher);
     }
     
+    @Test
+    void insertCustomers() {
+        // GIVEN
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("ayoub", "ayoub@gmail.com", 22),
+                new CustomerRegistrationRequest("alya", "alya@gmail.com", 20),
+                new CustomerRegistrationRequest("ayoub2", "ayoub@gmail.com", 23),
+                new CustomerRegistrationRequest(null, "karl@gmail.com", 30),
+                new CustomerRegistrationRequest("omar", "omar@gmail.com", 40),
+                new CustomerRegistrationRequest("sara", "sara@gmail.com", 31)
+        );
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of("alya@gmail.com"));
+        when(customerDao.insertCustomers(anyList())).thenReturn(List.of(
+                new Customer(1L, "ayoub", "ayoub@gmail.com", 22),
+                new Customer(2L, "omar", "omar@gmail.com", 40)
+        ));
+
+        // WHEN
+        List<CustomerBulkRegistrationResult> actual = underTest.insertCustomers(requests);
+
+        //THEN
+        ArgumentCaptor<List<Customer>> customersCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).insertCustomers(customersCaptor.capture());
+        assertThat(customersCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("ayoub@gmail.com", "omar@gmail.com", "sara@gmail.com");
+
+        assertThat(actual).extracting(CustomerBulkRegistrationResult::status).containsExactly(
+                CustomerBulkRegistrationResult.Status.CREATED,
+                CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL,
+                CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL,
+                CustomerBulkRegistrationResult.Status.INVALID,
+                CustomerBulkRegistrationResult.Status.CREATED,
+                CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL
+        );
+    }
+
+    @Test
+    void insertCustomersReportsNullRequestAsInvalid() {
+        // GIVEN
+        List<CustomerRegistrationRequest> requests = Arrays.asList(
+                null,
+                new CustomerRegistrationRequest("ayoub", "ayoub@gmail.com", 22)
+        );
+        when(customerDao.insertCustomers(anyList())).thenReturn(List.of(
+                new Customer(1L, "ayoub", "ayoub@gmail.com", 22)
+        ));
+
+        // WHEN
+        List<CustomerBulkRegistrationResult> actual = underTest.insertCustomers(requests);
+
+        //THEN
+        assertThat(actual).containsExactly(
+                new CustomerBulkRegistrationResult(0, null, CustomerBulkRegistrationResult.Status.INVALID),
+                new CustomerBulkRegistrationResult(1, "ayoub@gmail.com", CustomerBulkRegistrationResult.Status.CREATED)
+        );
+    }
+
+    @Test
+    void willThrowWhenInsertCustomersTooMany() {
+        // GIVEN
+        List<CustomerRegistrationRequest> requests = Collections.nCopies(
+                CustomerService.MAX_BULK_SIZE + 1,
+                new CustomerRegistrationRequest("ayoub", "ayoub@gmail.com", 22)
+        );
+
+        assertThatThrownBy( () -> underTest.insertCustomers(requests) )
+                .isInstanceOf(RequestValidationException.class);
+
+        verify(customerDao,never()).insertCustomers(any());
+    }
+
     @Test
     void deleteCustomer() {
 
@@ -117,12 +408,13 @@ class CustomerServiceTest {
                 id,"ayoub","ayoub@gmail.com",22
         );
 
-        when(customerDao.existPersonWithId(id)).thenReturn(true);
+        when(customerDao.deleteCustomerById(id)).thenReturn(Optional.of(customer));
 
         underTest.deleteCustomer(id);
 
 
         verify(customerDao).deleteCustomerById(id);
+        verify(eventPublisher).publishEvent(CustomerChangedEvent.deleted(customer));
 
     }
 
@@ -131,13 +423,13 @@ class CustomerServiceTest {
 
         Long id = 1L;
 
-        when(customerDao.existPersonWithId(id)).thenReturn(false);
+        when(customerDao.deleteCustomerById(id)).thenReturn(Optional.empty());
 
         assertThatThrownBy( () -> underTest.deleteCustomer(id) )
                 .isInstanceOf(ResourceNotFoundException.class
                 ).hasMessage("customer with id [%s] not found".formatted(id));
 
-        verify(customerDao,never()).deleteCustomerById(id);
+        verify(customerDao,never()).existPersonWithId(id);
 
     }
 
@@ -145,38 +437,35 @@ class CustomerServiceTest {
     void canUpdateAllCustomersProperties() {
         // GIVEN
         Long id = 1L;
-        Customer customer = new Customer(
-                id,"ayoub","ayoub@gmail.com",22
-        );
-
-        when(customerDao.existPersonWithId(id)).thenReturn(true);
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
         String newEmail = "alsks@gmail.com";
 
         UpdateRequest updateRequest = new UpdateRequest("alsks", newEmail , 23);
 
-        when(customerDao.existPersonWithEmail(newEmail)).thenReturn(false);
-
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(
+                new Customer(id, updateRequest.name(), updateRequest.email(), updateRequest.age())
+        ));
 
         // WHEN
 
         underTest.updateCustomer(id,updateRequest);
 
         //THEN
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
-                Customer.class
+        ArgumentCaptor<CustomerUpdate> updateArgumentCaptor = ArgumentCaptor.forClass(
+                CustomerUpdate.class
         );
 
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).updateCustomer(updateArgumentCaptor.capture());
 
-        Customer capturedCustomer = customerArgumentCaptor.getValue();
+        CustomerUpdate capturedUpdate = updateArgumentCaptor.getValue();
 
-        assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email());
-        assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
+        assertThat(capturedUpdate.id()).isEqualTo(id);
+        assertThat(capturedUpdate.name()).isEqualTo(updateRequest.name());
+        assertThat(capturedUpdate.email()).isEqualTo(updateRequest.email());
+        assertThat(capturedUpdate.age()).isEqualTo(updateRequest.age());
 
+        verify(customerDao,never()).existPersonWithId(any());
+        verify(customerDao,never()).existPersonWithEmail(any());
+        verify(eventPublisher).publishEvent(any(CustomerChangedEvent.class));
     }
 
     @Test
@@ -184,29 +473,27 @@ class CustomerServiceTest {
         // GIVEN
         Long id = 1L;
         Customer customer = new Customer(
-                id,"ayoub","ayoub@gmail.com",22
+                id,"azer","ayoub@gmail.com",22
         );
 
-        when(customerDao.existPersonWithId(id)).thenReturn(true);
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(customer));
 
         UpdateRequest updateRequest = new UpdateRequest("azer", null , null );
         // WHEN
         underTest.updateCustomer(id,updateRequest);
 
         //THEN
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
-                Customer.class
+        ArgumentCaptor<CustomerUpdate> updateArgumentCaptor = ArgumentCaptor.forClass(
+                CustomerUpdate.class
         );
 
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).updateCustomer(updateArgumentCaptor.capture());
 
-        Customer capturedCustomer = customerArgumentCaptor.getValue();
+        CustomerUpdate capturedUpdate = updateArgumentCaptor.getValue();
 
-        assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedUpdate.name()).isEqualTo(updateRequest.name());
+        assertThat(capturedUpdate.email()).isNull();
+        assertThat(capturedUpdate.age()).isNull();
 
     }
 
@@ -214,34 +501,30 @@ class CustomerServiceTest {
     void canUpdateOnlyCustomerEmail() {
         // GIVEN
         Long id = 1L;
+        String newEmail = "alsks@gmail.com";
         Customer customer = new Customer(
-                id,"ayoub","ayoub@gmail.com",22
+                id,"ayoub",newEmail,22
         );
 
-        when(customerDao.existPersonWithId(id)).thenReturn(true);
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        String newEmail = "alsks@gmail.com";
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(customer));
 
         UpdateRequest updateRequest = new UpdateRequest(null, newEmail , null);
 
-        when(customerDao.existPersonWithEmail(newEmail)).thenReturn(false);
         // WHEN
         underTest.updateCustomer(id,updateRequest);
 
         //THEN
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
-                Customer.class
+        ArgumentCaptor<CustomerUpdate> updateArgumentCaptor = ArgumentCaptor.forClass(
+                CustomerUpdate.class
         );
 
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).updateCustomer(updateArgumentCaptor.capture());
 
-        Customer capturedCustomer = customerArgumentCaptor.getValue();
+        CustomerUpdate capturedUpdate = updateArgumentCaptor.getValue();
 
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(newEmail);
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedUpdate.name()).isNull();
+        assertThat(capturedUpdate.email()).isEqualTo(newEmail);
+        assertThat(capturedUpdate.age()).isNull();
 
     }
 
@@ -250,12 +533,10 @@ class CustomerServiceTest {
         // GIVEN
         Long id = 1L;
         Customer customer = new Customer(
-                id,"ayoub","ayoub@gmail.com",22
+                id,"ayoub","ayoub@gmail.com",25
         );
 
-        when(customerDao.existPersonWithId(id)).thenReturn(true);
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.of(customer));
 
         UpdateRequest updateRequest = new UpdateRequest(null, null , 25);
 
@@ -263,17 +544,17 @@ class CustomerServiceTest {
         underTest.updateCustomer(id,updateRequest);
 
         //THEN
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
-                Customer.class
+        ArgumentCaptor<CustomerUpdate> updateArgumentCaptor = ArgumentCaptor.forClass(
+                CustomerUpdate.class
         );
 
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).updateCustomer(updateArgumentCaptor.capture());
 
-        Customer capturedCustomer = customerArgumentCaptor.getValue();
+        CustomerUpdate capturedUpdate = updateArgumentCaptor.getValue();
 
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
+        assertThat(capturedUpdate.name()).isNull();
+        assertThat(capturedUpdate.email()).isNull();
+        assertThat(capturedUpdate.age()).isEqualTo(updateRequest.age());
 
     }
 
@@ -284,14 +565,13 @@ class CustomerServiceTest {
 
         UpdateRequest updateRequest = new UpdateRequest(null, null , 25);
 
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.empty());
         when(customerDao.existPersonWithId(id)).thenReturn(false);
 
         assertThatThrownBy( () -> underTest.updateCustomer(id,updateRequest) )
                 .isInstanceOf(ResourceNotFoundException.class
                 ).hasMessage("customer with id [%s] not found".formatted(id));
 
-        verify(customerDao,never()).updateCustomer(any());
-
     }
 
     @Test
@@ -299,7 +579,7 @@ class CustomerServiceTest {
         // GIVEN
         Long id = 1L;
 
-        UpdateRequest updateRequest = new UpdateRequest(null, null , 25);
+        UpdateRequest updateRequest = new UpdateRequest(null, null , null);
 
         when(customerDao.existPersonWithId(id)).thenReturn(false);
 
@@ -315,26 +595,28 @@ class CustomerServiceTest {
     void canUpdateOnlyCustomerEmailExists() {
         // GIVEN
         Long id = 1L;
-        Customer customer = new Customer(
-                id,"ayoub","ayoub@gmail.com",22
-        );
-
-        when(customerDao.existPersonWithId(id)).thenReturn(true);
-
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
 
         String newEmail = "alsks@gmail.com";
 
         UpdateRequest updateRequest = new UpdateRequest(null, newEmail , null);
 
-        when(customerDao.existPersonWithEmail(newEmail)).thenReturn(true);
+        when(customerDao.updateCustomer(any())).thenThrow(new DuplicateKeyException("customer_email_unique"));
         // WHEN
         assertThatThrownBy( () -> underTest.updateCustomer(id,updateRequest) )
                 .isInstanceOf(DuplicateResourceException.class
                 ).hasMessage("email already exists");
 
-        verify(customerDao,never()).updateCustomer(any());
+    }
 
+    @Test
+    void updateCustomerRethrowsOtherIntegrityViolations() {
+        // GIVEN
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("customer_age_check");
+        when(customerDao.updateCustomer(any())).thenThrow(violation);
+        // WHEN
+        //THEN
+        assertThatThrownBy( () -> underTest.updateCustomer(1L, new UpdateRequest(null, null, -1)) )
+                .isSameAs(violation);
     }
 
     @Test
@@ -345,20 +627,47 @@ class CustomerServiceTest {
                 id,"ayoub","ayoub@gmail.com",22
         );
 
+        when(customerDao.updateCustomer(any())).thenReturn(Optional.empty());
         when(customerDao.existPersonWithId(id)).thenReturn(true);
 
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        UpdateRequest updateRequest = new UpdateRequest(customer.getName(), customer.getEmail() , customer.getAge());
 
+        // WHEN
+        assertThatThrownBy( () -> underTest.updateCustomer(id,updateRequest) )
+                .isInstanceOf(NoDataChangeException.class
+                ).hasMessage("no data changes found");
 
+    }
 
-        UpdateRequest updateRequest = new UpdateRequest(customer.getName(), customer.getEmail() , customer.getAge());
+    @Test
+    void willThrowNoDataChangeWhenUpdateRequestEmpty() {
+        // GIVEN
+        Long id = 1L;
+
+        when(customerDao.existPersonWithId(id)).thenReturn(true);
 
         // WHEN
-        assertThatThrownBy( () -> underTest.updateCustomer(id,updateRequest) )
+        assertThatThrownBy( () -> underTest.updateCustomer(id,new UpdateRequest(null, null, null)) )
                 .isInstanceOf(NoDataChangeException.class
                 ).hasMessage("no data changes found");
 
         verify(customerDao,never()).updateCustomer(any());
+    }
 
+    @Test
+    void customersETagFollowsTheWritesOfAnInMemoryStore() {
+        // GIVEN
+        CustomerService service = new CustomerService(new CustomerListDataAccessService(), 0.5, eventPublisher);
+        String initial = service.getCustomersETag();
+        // WHEN
+        service.insertCustomer(new CustomerRegistrationRequest("ali", "ali@gmail.com", 30));
+        String afterInsert = service.getCustomersETag();
+        service.updateCustomer(1L, new UpdateRequest(null, null, 23));
+        String afterUpdate = service.getCustomersETag();
+        service.deleteCustomer(1L);
+        String afterDelete = service.getCustomersETag();
+        //THEN
+        assertThat(List.of(initial, afterInsert, afterUpdate, afterDelete)).doesNotHaveDuplicates();
+        assertThat(service.getCustomersETag()).isEqualTo(afterDelete);
     }
-}
\ No newline at end of file
+}
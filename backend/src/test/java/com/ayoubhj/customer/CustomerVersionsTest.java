@@ -0,0 +1,126 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.AbstractUnitTestContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerVersionsTest extends AbstractUnitTestContainer {
+
+    private CustomerJdbcDataAccessService customerDao;
+
+    @BeforeEach
+    void setUp() {
+        customerDao = new CustomerJdbcDataAccessService(getJdbcTemplate(), new CustomerRowMapper());
+    }
+
+    @Test
+    void rowVersionChangesOnlyWithTheRow() {
+        // GIVEN
+        Customer customer = insert();
+        long tableVersion = customerDao.selectTableVersion();
+
+        // WHEN
+        customerDao.updateCustomer(new CustomerUpdate(customer.getId(), null, null, customer.getAge()));
+
+        //THEN
+        assertThat(customerDao.selectCustomerById(customer.getId())).map(Customer::getVersion).contains(1L);
+        assertThat(customerDao.selectTableVersion()).isEqualTo(tableVersion);
+
+        Optional<Customer> updated = customerDao.updateCustomer(new CustomerUpdate(customer.getId(), null, null, customer.getAge() + 1));
+
+        assertThat(updated).map(Customer::getVersion).contains(2L);
+        assertThat(customerDao.selectCustomerById(customer.getId())).map(Customer::getVersion).contains(2L);
+        assertThat(customerDao.selectTableVersion()).isGreaterThan(tableVersion);
+    }
+
+    @Test
+    void tableVersionChangesWithRowsInsertedOrDeleted() {
+        // GIVEN
+        Customer customer = insert();
+        long afterInsert = customerDao.selectTableVersion();
+
+        // WHEN
+        List<Customer> duplicates = customerDao.insertCustomers(List.of(new Customer("ayoub", customer.getEmail(), 22)));
+
+        //THEN
+        assertThat(duplicates).isEmpty();
+        assertThat(customerDao.selectTableVersion()).isEqualTo(afterInsert);
+
+        customerDao.deleteCustomerById(customer.getId());
+
+        assertThat(customerDao.selectTableVersion()).isGreaterThan(afterInsert);
+        assertThat(customerDao.selectCustomerById(customer.getId())).isEmpty();
+    }
+
+    @Test
+    void concurrentWritersDoNotWaitForTheTableVersion() throws SQLException {
+        // GIVEN
+        DataSource dataSource = getDataSource();
+        try (Connection first = dataSource.getConnection();
+             Connection second = connectionInAnotherSlot(dataSource, first)) {
+            first.setAutoCommit(false);
+            second.setAutoCommit(false);
+            execute(first, "INSERT INTO customer (name, email, age) VALUES ('first', '%s', 22)".formatted(UUID.randomUUID()));
+
+            // WHEN
+            execute(second, "SET LOCAL lock_timeout = '2s'");
+            execute(second, "INSERT INTO customer (name, email, age) VALUES ('second', '%s', 22)".formatted(UUID.randomUUID()));
+
+            //THEN
+            long before = customerDao.selectTableVersion();
+            first.commit();
+            second.commit();
+            assertThat(customerDao.selectTableVersion()).isEqualTo(before + 2);
+        }
+    }
+
+    private static Connection connectionInAnotherSlot(DataSource dataSource, Connection taken) throws SQLException {
+        long slot = backendPid(taken) % 1024;
+        List<Connection> sameSlot = new ArrayList<>();
+        try {
+            while (true) {
+                Connection connection = dataSource.getConnection();
+                if (backendPid(connection) % 1024 != slot) {
+                    return connection;
+                }
+                sameSlot.add(connection);
+            }
+        } finally {
+            for (Connection connection : sameSlot) {
+                connection.close();
+            }
+        }
+    }
+
+    private static long backendPid(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT pg_backend_pid()")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private Customer insert() {
+        Customer customer = new Customer(FAKER.name().fullName(), UUID.randomUUID() + "@course.com", 22);
+        customerDao.insertCustomer(customer);
+        return customer;
+    }
+}
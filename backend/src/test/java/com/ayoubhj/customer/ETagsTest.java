@@ -0,0 +1,49 @@
+package com.ayoubhj.customer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagsTest {
+
+    @Test
+    void ifNoneMatchComparesWeakly() {
+        // GIVEN
+        String etag = ETags.of(7);
+        // WHEN
+        //THEN
+        assertThat(ETags.matchesIfNoneMatch("\"6\", W/\"7\"", etag)).isTrue();
+        assertThat(ETags.matchesIfNoneMatch("*", etag)).isTrue();
+        assertThat(ETags.matchesIfNoneMatch("\"6\"", etag)).isFalse();
+        assertThat(ETags.matchesIfNoneMatch(null, etag)).isFalse();
+    }
+
+    @Test
+    void ifNoneMatchAcceptsEveryCodingOfTheVersion() {
+        // GIVEN
+        String etag = ETags.of(7);
+        // WHEN
+        String gzip = ETags.of(etag, CustomerResponseCache.Coding.GZIP);
+        String brotli = ETags.of(etag, CustomerResponseCache.Coding.BROTLI);
+        //THEN
+        assertThat(gzip).isEqualTo("\"7-gzip\"");
+        assertThat(brotli).isEqualTo("\"7-br\"");
+        assertThat(ETags.of(etag, CustomerResponseCache.Coding.IDENTITY)).isEqualTo(etag);
+        assertThat(ETags.matchIfNoneMatch("\"6-br\", W/\"7-br\"", etag)).isEqualTo(brotli);
+        assertThat(ETags.matchIfNoneMatch(gzip, etag)).isEqualTo(gzip);
+        assertThat(ETags.matchIfNoneMatch("*", etag)).isEqualTo(etag);
+        assertThat(ETags.matchIfNoneMatch("\"6-gzip\"", etag)).isNull();
+        assertThat(ETags.matchIfNoneMatch("\"7-deflate\"", etag)).isNull();
+    }
+
+    @Test
+    void ifMatchAcceptsOnlyStrongVersions() {
+        // GIVEN
+        String ifMatch = "\"7\", W/\"8\", \"v9\"";
+        // WHEN
+        //THEN
+        assertThat(ETags.versionsOf(ifMatch)).containsExactly(7L);
+        assertThat(ETags.versionsOf("\"7\", *")).isNull();
+        assertThat(ETags.versionsOf("W/\"7\"")).isEmpty();
+    }
+}
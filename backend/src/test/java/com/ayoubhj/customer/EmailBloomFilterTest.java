@@ -0,0 +1,43 @@
+package com.ayoubhj.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void mightContainHasNoFalseNegatives() {
+        // GIVEN
+        EmailBloomFilter underTest = new EmailBloomFilter(1_000, 0.01);
+        // WHEN
+        IntStream.range(0, 5_000).forEach(i -> underTest.put("customer" + i + "@gmail.com"));
+        //THEN
+        assertThat(IntStream.range(0, 5_000))
+                .allMatch(i -> underTest.mightContain("customer" + i + "@gmail.com"));
+        assertThat(underTest.sliceCount()).isGreaterThan(1);
+    }
+
+    @Test
+    void falsePositiveRateStaysWithinConfiguredRate() {
+        // GIVEN
+        EmailBloomFilter underTest = new EmailBloomFilter(10_000, 0.01);
+        IntStream.range(0, 40_000).forEach(i -> underTest.put("customer" + i + "@gmail.com"));
+        // WHEN
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> underTest.mightContain("absent" + i + "@gmail.com"))
+                .count();
+        //THEN
+        assertThat(falsePositives / 100_000.0).isLessThan(0.015);
+        assertThat(underTest.expectedFalsePositiveRate()).isLessThan(0.01);
+    }
+
+    @Test
+    void rejectsInvalidFalsePositiveRate() {
+        assertThatThrownBy(() -> new EmailBloomFilter(1_000, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,93 @@
+package com.ayoubhj.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InstrumentedCustomerDaoTest {
+
+    private InstrumentedCustomerDao underTest;
+    private SimpleMeterRegistry meterRegistry;
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new InstrumentedCustomerDao("jdbc", customerDao, meterRegistry);
+    }
+
+    @Test
+    void recordsCallsAndRows() {
+        // GIVEN
+        when(customerDao.selectCustomers(0L, 10)).thenReturn(List.of(
+                new Customer(1L, "ayoub", "ayoub@gmail.com", 22),
+                new Customer(2L, "alya", "alya@gmail.com", 20)
+        ));
+        // WHEN
+        underTest.selectCustomers(0L, 10);
+        //THEN
+        assertThat(meterRegistry.get("customer.dao.calls")
+                .tags("dao", "jdbc", "method", "selectCustomers", "outcome", "success")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.dao.rows")
+                .tags("dao", "jdbc", "method", "selectCustomers")
+                .summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void recordsMissAsZeroRows() {
+        // GIVEN
+        when(customerDao.selectCustomerById(1L)).thenReturn(Optional.empty());
+        // WHEN
+        underTest.selectCustomerById(1L);
+        //THEN
+        assertThat(meterRegistry.get("customer.dao.rows")
+                .tags("method", "selectCustomerById")
+                .summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.dao.rows")
+                .tags("method", "selectCustomerById")
+                .summary().totalAmount()).isZero();
+    }
+
+    @Test
+    void recordsErrors() {
+        // GIVEN
+        CustomerUpdate update = new CustomerUpdate(1L, null, "taken@gmail.com", null);
+        when(customerDao.updateCustomer(update)).thenThrow(new DuplicateKeyException("taken"));
+        // WHEN
+        assertThatThrownBy(() -> underTest.updateCustomer(update)).isInstanceOf(DuplicateKeyException.class);
+        //THEN
+        assertThat(meterRegistry.get("customer.dao.calls")
+                .tags("method", "updateCustomer", "outcome", "error")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.dao.errors")
+                .tags("method", "updateCustomer", "exception", "DuplicateKeyException")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsStreamedRows() {
+        // GIVEN
+        underTest = new InstrumentedCustomerDao("list", new CustomerListDataAccessService(), meterRegistry);
+        // WHEN
+        underTest.streamAllCustomers(customer -> {
+        });
+        //THEN
+        assertThat(meterRegistry.get("customer.dao.rows")
+                .tags("dao", "list", "method", "streamAllCustomers")
+                .summary().totalAmount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,224 @@
+package com.ayoubhj.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LogCustomerDataAccessServiceTest {
+
+    private static final DataSize SEGMENT_SIZE = DataSize.ofKilobytes(64);
+
+    @TempDir
+    Path directory;
+    private LogCustomerDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+    }
+
+    private LogCustomerDataAccessService open() {
+        return new LogCustomerDataAccessService(directory, SEGMENT_SIZE, false);
+    }
+
+    private LogCustomerDataAccessService reopen() {
+        underTest.close();
+        underTest = open();
+        return underTest;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    void insertCustomerSurvivesRestart() {
+        // GIVEN
+        Customer customer = new Customer("Ayoub", "ayoub@gmail.com", 22);
+        underTest.insertCustomer(customer);
+        // WHEN
+        Optional<Customer> actual = reopen().selectCustomerById(customer.getId());
+        //THEN
+        assertThat(actual).get().usingRecursiveComparison().isEqualTo(new Customer(1L, "Ayoub", "ayoub@gmail.com", 22, 1L));
+        assertThat(underTest.existPersonWithEmail("ayoub@gmail.com")).isTrue();
+    }
+
+    @Test
+    void insertCustomerRejectsDuplicateEmail() {
+        // GIVEN
+        underTest.insertCustomer(new Customer("Ayoub", "ayoub@gmail.com", 22));
+        // WHEN
+        boolean actual = underTest.insertCustomer(new Customer("Other", "ayoub@gmail.com", 30));
+        //THEN
+        assertThat(actual).isFalse();
+    }
+
+    @Test
+    void updatesAndDeletesAreReplayed() {
+        // GIVEN
+        underTest.insertCustomers(List.of(
+                new Customer("Ayoub", "ayoub@gmail.com", 22),
+                new Customer("Alya", "alya@gmail.com", 20)
+        ));
+        underTest.updateCustomer(new CustomerUpdate(1L, null, "new@gmail.com", 23));
+        underTest.deleteCustomerById(2L);
+        // WHEN
+        LogCustomerDataAccessService actual = reopen();
+        //THEN
+        assertThat(actual.selectAllCustomers()).singleElement()
+                .usingRecursiveComparison().isEqualTo(new Customer(1L, "Ayoub", "new@gmail.com", 23, 2L));
+        assertThat(actual.existPersonWithEmail("ayoub@gmail.com")).isFalse();
+        assertThat(actual.existPersonWithEmail("alya@gmail.com")).isFalse();
+        // ids are not reused after a restart
+        Customer customer = new Customer("Next", "next@gmail.com", 30);
+        actual.insertCustomer(customer);
+        assertThat(customer.getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void versionedWritesOnlyApplyToAMatchingVersion() {
+        // GIVEN
+        underTest.insertCustomers(List.of(
+                new Customer("Ayoub", "ayoub@gmail.com", 22),
+                new Customer("Alya", "alya@gmail.com", 20)
+        ));
+        underTest.updateCustomer(new CustomerUpdate(1L, "Fresh", null, null), List.of(1L));
+        // WHEN
+        LogCustomerDataAccessService actual = reopen();
+        //THEN
+        assertThat(actual.updateCustomer(new CustomerUpdate(1L, "Stale", null, null), List.of(1L))).isEmpty();
+        assertThat(actual.selectCustomerById(1L)).map(Customer::getVersion).contains(2L);
+        assertThat(actual.deleteCustomerById(2L, List.of(2L))).isEmpty();
+        assertThat(actual.deleteCustomerById(2L, List.of(1L))).map(Customer::getEmail).contains("alya@gmail.com");
+    }
+
+    @Test
+    void updateCustomerRejectsTakenEmail() {
+        // GIVEN
+        underTest.insertCustomers(List.of(
+                new Customer("Ayoub", "ayoub@gmail.com", 22),
+                new Customer("Alya", "alya@gmail.com", 20)
+        ));
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> underTest.updateCustomer(new CustomerUpdate(1L, null, "alya@gmail.com", null)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void rollsOverToNewSegments() throws IOException {
+        // WHEN
+        underTest.insertCustomers(IntStream.range(0, 5_000)
+                .mapToObj(i -> new Customer("customer " + i, "customer" + i + "@gmail.com", 30))
+                .toList());
+        //THEN
+        assertThat(segments()).hasSizeGreaterThan(1);
+        assertThat(reopen().selectCustomers(4_990L, 100)).hasSize(10);
+    }
+
+    @Test
+    void streamAllCustomersPages() {
+        // GIVEN
+        underTest.insertCustomers(IntStream.range(0, LogCustomerDataAccessService.STREAM_PAGE_SIZE * 2 + 1)
+                .mapToObj(i -> new Customer("customer " + i, "customer" + i + "@gmail.com", 30))
+                .toList());
+        List<Customer> actual = new ArrayList<>();
+        // WHEN
+        underTest.streamAllCustomers(actual::add);
+        //THEN
+        assertThat(actual).hasSize(LogCustomerDataAccessService.STREAM_PAGE_SIZE * 2 + 1);
+    }
+
+    @Test
+    void tornTailIsDiscarded() throws IOException {
+        // GIVEN
+        underTest.insertCustomer(new Customer("Ayoub", "ayoub@gmail.com", 22));
+        underTest.insertCustomer(new Customer("Alya", "alya@gmail.com", 20));
+        underTest.close();
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // flip a byte inside the second record's payload
+            int firstRecordLength = 8 + ByteBuffer.wrap(Files.readAllBytes(segment), 0, 4).getInt();
+            channel.write(ByteBuffer.wrap(new byte[]{42}), firstRecordLength + 20);
+        }
+        // WHEN
+        underTest = open();
+        //THEN
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getEmail).containsExactly("ayoub@gmail.com");
+        Customer customer = new Customer("Alya", "alya@gmail.com", 20);
+        assertThat(underTest.insertCustomer(customer)).isTrue();
+        assertThat(reopen().selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void compactionDropsDeadRecords() throws IOException {
+        // GIVEN
+        underTest.insertCustomers(IntStream.range(0, 20_000)
+                .mapToObj(i -> new Customer("customer " + i, "customer" + i + "@gmail.com", 30))
+                .toList());
+        IntStream.rangeClosed(1, 19_990).forEach(id -> underTest.deleteCustomerById((long) id));
+        // WHEN
+        underTest.compact();
+        //THEN
+        assertThat(segments()).hasSize(1);
+        assertThat(reopen().selectAllCustomers()).extracting(Customer::getId)
+                .containsExactlyElementsOf(IntStream.rangeClosed(19_991, 20_000).mapToObj(id -> (long) id).toList());
+    }
+
+    @Test
+    void compactionKeepsDeletedIdsFromBeingReused() {
+        // GIVEN
+        underTest.insertCustomers(IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> new Customer("customer " + i, "customer" + i + "@gmail.com", 30))
+                .toList());
+        underTest.deleteCustomerById(2L);
+        underTest.deleteCustomerById(3L);
+        underTest.compact();
+        // WHEN
+        Customer customer = new Customer("Ayoub", "ayoub@gmail.com", 22);
+        reopen().insertCustomer(customer);
+        //THEN
+        assertThat(customer.getId()).isEqualTo(4L);
+    }
+
+    @Test
+    void tableVersionChangesWithWritesAndAcrossRestarts() {
+        // GIVEN
+        long initial = underTest.selectTableVersion();
+        underTest.insertCustomer(new Customer("ayoub", "ayoub@gmail.com", 22));
+        long afterInsert = underTest.selectTableVersion();
+        // WHEN
+        underTest.updateCustomer(new CustomerUpdate(1L, null, null, 22));
+        long afterNoChange = underTest.selectTableVersion();
+        long afterRestart = reopen().selectTableVersion();
+        //THEN
+        assertThat(afterInsert).isGreaterThan(initial);
+        assertThat(afterNoChange).isEqualTo(afterInsert);
+        assertThat(afterRestart).isNotEqualTo(afterInsert);
+    }
+}
@@ -0,0 +1,199 @@
+package com.ayoubhj.customer;
+
+import com.ayoubhj.exception.DuplicateResourceException;
+import com.ayoubhj.exception.NoDataChangeException;
+import com.ayoubhj.exception.RequestValidationException;
+import com.ayoubhj.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    private ReactiveCustomerService underTest;
+    @Mock
+    private ReactiveCustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDao, 0.5);
+    }
+
+    @Test
+    void getCustomersFirstPage() {
+        // GIVEN
+        when(customerDao.selectCustomers(0L, 3)).thenReturn(Flux.just(
+                new Customer(1L,"ayoub","ayoub@gmail.com",22),
+                new Customer(2L,"alya","alya@gmail.com",20),
+                new Customer(3L,"karl","karl@gmail.com",30)
+        ));
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.getCustomers(null, 2))
+                .assertNext(page -> {
+                    assertThat(page.customers()).extracting(Customer::getId).containsExactly(1L, 2L);
+                    assertThat(CustomerCursor.decode(page.nextCursor())).isEqualTo(2L);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void willFailWhenGetCustomersLimitOutOfRange() {
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.getCustomers(null, 0))
+                .expectError(RequestValidationException.class)
+                .verify();
+        StepVerifier.create(underTest.getCustomers("not-a-cursor", 10))
+                .expectError(RequestValidationException.class)
+                .verify();
+        verify(customerDao, never()).selectCustomers(any(), anyInt());
+    }
+
+    @Test
+    void willFailWhenGetCustomerByIdIsMissing() {
+        // GIVEN
+        when(customerDao.selectCustomerById(10L)).thenReturn(Mono.empty());
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.getCustomerById(10L))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(ResourceNotFoundException.class)
+                        .hasMessage("customer with id [10] not found"))
+                .verify();
+    }
+
+    @Test
+    void willFailWhenInsertCustomerEmailExists() {
+        // GIVEN
+        when(customerDao.insertCustomer(any())).thenReturn(Mono.empty());
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.insertCustomer(new CustomerRegistrationRequest("ayoub", "ayoub@gmail.com", 22)))
+                .expectError(DuplicateResourceException.class)
+                .verify();
+    }
+
+    @Test
+    void insertCustomersReportsStatusPerRequest() {
+        // GIVEN
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("ayoub", "ayoub@gmail.com", 22),
+                new CustomerRegistrationRequest("alya", "alya@gmail.com", 20),
+                new CustomerRegistrationRequest("karl", "karl@gmail.com", 30),
+                new CustomerRegistrationRequest("", "nobody@gmail.com", 30),
+                new CustomerRegistrationRequest("copy", "karl@gmail.com", 30)
+        );
+        when(customerDao.selectExistingEmails(any())).thenReturn(Flux.just("alya@gmail.com"));
+        when(customerDao.insertCustomers(any())).thenReturn(Flux.just(
+                new Customer(1L, "ayoub", "ayoub@gmail.com", 22)
+        ));
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.insertCustomers(requests))
+                .assertNext(results -> assertThat(results)
+                        .extracting(CustomerBulkRegistrationResult::status)
+                        .containsExactly(
+                                CustomerBulkRegistrationResult.Status.CREATED,
+                                CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL,
+                                CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL,
+                                CustomerBulkRegistrationResult.Status.INVALID,
+                                CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL
+                        ))
+                .verifyComplete();
+    }
+
+    @Test
+    void deleteCustomer() {
+        // GIVEN
+        when(customerDao.deleteCustomerById(1L)).thenReturn(Mono.just(new Customer(1L,"ayoub","ayoub@gmail.com",22)));
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.deleteCustomer(1L))
+                .verifyComplete();
+    }
+
+    @Test
+    void updateCustomer() {
+        // GIVEN
+        CustomerUpdate update = new CustomerUpdate(1L, "new name", null, null);
+        when(customerDao.updateCustomer(update)).thenReturn(Mono.just(new Customer(1L,"new name","ayoub@gmail.com",22)));
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.updateCustomer(1L, new UpdateRequest("new name", null, null)))
+                .verifyComplete();
+        verify(customerDao, never()).existPersonWithId(any());
+    }
+
+    @Test
+    void willFailWhenUpdateChangesNothing() {
+        // GIVEN
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.empty());
+        when(customerDao.existPersonWithId(1L)).thenReturn(Mono.just(true));
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.updateCustomer(1L, new UpdateRequest("ayoub", null, null)))
+                .expectError(NoDataChangeException.class)
+                .verify();
+    }
+
+    @Test
+    void willFailWhenUpdatedCustomerIsMissing() {
+        // GIVEN
+        when(customerDao.existPersonWithId(1L)).thenReturn(Mono.just(false));
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.updateCustomer(1L, new UpdateRequest(null, null, null)))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void willFailWhenUpdatedEmailIsTaken() {
+        // GIVEN
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.error(new DuplicateKeyException("customer_email_unique")));
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.updateCustomer(1L, new UpdateRequest(null, "alya@gmail.com", null)))
+                .expectError(DuplicateResourceException.class)
+                .verify();
+    }
+
+    @Test
+    void willNotMapOtherIntegrityViolations() {
+        // GIVEN
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.error(new DataIntegrityViolationException("customer_age_check")));
+
+        // WHEN
+        //THEN
+        StepVerifier.create(underTest.updateCustomer(1L, new UpdateRequest(null, null, -1)))
+                .expectError(DataIntegrityViolationException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,79 @@
+package com.ayoubhj.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SerialRebuildTest {
+
+    @Test
+    void requestsDuringRebuildRunItOnceMore() throws Exception {
+        // GIVEN
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        SerialRebuild underTest = new SerialRebuild("test-rebuild", () -> {
+            threads.add(Thread.currentThread().getName());
+            started.countDown();
+            await(release);
+            done.countDown();
+        });
+
+        // WHEN
+        underTest.request();
+        await(started);
+        underTest.request();
+        underTest.request();
+        release.countDown();
+
+        //THEN
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        underTest.shutdown();
+        assertThat(threads).containsExactly("test-rebuild", "test-rebuild");
+    }
+
+    @Test
+    void runAfterFailedRebuildRebuildsAgain() {
+        // GIVEN
+        List<Boolean> runs = new CopyOnWriteArrayList<>();
+        SerialRebuild underTest = new SerialRebuild("test-rebuild", () -> {
+            runs.add(true);
+            if (runs.size() == 1) {
+                throw new IllegalStateException("database is down");
+            }
+        });
+
+        // WHEN
+        boolean first = runSwallowingFailure(underTest);
+        boolean second = underTest.run();
+
+        //THEN
+        assertThat(first).isFalse();
+        assertThat(second).isTrue();
+        assertThat(runs).hasSize(2);
+        assertThat(underTest.isRunning()).isFalse();
+    }
+
+    private static boolean runSwallowingFailure(SerialRebuild rebuild) {
+        try {
+            return rebuild.run();
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -3,20 +3,31 @@ package com.ayoubhj.journey;
 import com.ayoubhj.customer.Customer;
 import com.ayoubhj.customer.CustomerRegistrationRequest;
 import com.ayoubhj.customer.UpdateRequest;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.javafaker.Faker;
 import com.github.javafaker.Name;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
 
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -26,6 +37,9 @@ public class CustomerIntegrationTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @LocalServerPort
+    private int port;
+
     public static final Random RANDOM = new Random();
     private static final String URI = "/api/v1/customers";
     @Test
@@ -264,4 +278,164 @@ public class CustomerIntegrationTest {
 
 
     }
+
+    @Test
+    void canRevalidateCustomerWithETags() {
+        // create registration
+        String email = new Faker().name().lastName() + UUID.randomUUID() + "@course.com";
+        webTestClient.post()
+                .uri(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("ayoub", email, 22)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        Long id = webTestClient.get()
+                .uri(URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst().orElseThrow();
+
+        String etag = webTestClient.get()
+                .uri(URI + "/{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        // unchanged customer
+        webTestClient.get()
+                .uri(URI + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                .expectBody().isEmpty();
+
+        // weak tags never match a precondition
+        webTestClient.put()
+                .uri(URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "W/" + etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new UpdateRequest(null, null, 30)), UpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webTestClient.delete()
+                .uri(URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "W/" + etag)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // stale precondition
+        webTestClient.put()
+                .uri(URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new UpdateRequest(null, null, 30)), UpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        String updatedETag = webTestClient.put()
+                .uri(URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new UpdateRequest(null, null, 30)), UpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isAccepted()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getETag();
+
+        assertThat(updatedETag).isNotEqualTo(etag);
+
+        Customer actual = webTestClient.get()
+                .uri(URI + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, updatedETag)
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(actual.getAge()).isEqualTo(30);
+    }
+
+    @Test
+    void canGetCompressedCustomers() throws IOException {
+        // create registrations, enough for a compressed response
+        List<CustomerRegistrationRequest> registrations = IntStream.range(0, 20)
+                .mapToObj(i -> new CustomerRegistrationRequest(
+                        "ayoub", new Faker().name().lastName() + UUID.randomUUID() + "@course.com", 22))
+                .toList();
+        webTestClient.post()
+                .uri(URI + "/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(registrations), new ParameterizedTypeReference<List<CustomerRegistrationRequest>>() {
+                })
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // the default connector decompresses on its own and drops the header
+        WebTestClient rawClient = WebTestClient.bindToServer(new ReactorClientHttpConnector(HttpClient.create()))
+                .baseUrl("http://localhost:" + port)
+                .build();
+        byte[] gzipped = rawClient.get()
+                .uri(URI)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+
+        List<Customer> customers = new ObjectMapper().readValue(
+                new GZIPInputStream(new ByteArrayInputStream(gzipped)), new TypeReference<List<Customer>>() {
+                });
+
+        assertThat(customers).extracting(Customer::getEmail)
+                .containsAll(registrations.stream().map(CustomerRegistrationRequest::email).toList());
+
+        // a write drops the cached response
+        String email = new Faker().name().lastName() + UUID.randomUUID() + "@course.com";
+        webTestClient.post()
+                .uri(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("ayoub", email, 22)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        List<Customer> afterWrite = rawClient.get()
+                .uri(URI)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(afterWrite).extracting(Customer::getEmail).contains(email);
+    }
 }
@@ -0,0 +1,343 @@
+package com.ayoubhj.journey;
+
+import com.ayoubhj.customer.Customer;
+import com.ayoubhj.customer.CustomerPage;
+import com.ayoubhj.customer.CustomerRegistrationRequest;
+import com.ayoubhj.customer.UpdateRequest;
+import com.github.javafaker.Faker;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Open-loop load test of the customer api. Requests are fired on a fixed
+ * schedule whether or not earlier ones have returned, and latency is measured
+ * from the moment a request was due rather than when it was sent, so a stalled
+ * server shows up in the percentiles instead of just slowing the client down
+ * (coordinated omission).
+ * <p>
+ * Defaults are small enough for the regular {@code verify} run. For a real
+ * measurement raise them, e.g.
+ * {@code mvn verify -Dit.test=CustomerLoadIT -Dload.rate=2000 -Dload.duration=PT2M}.
+ * Latency histograms are written to {@code target/load} as HdrHistogram logs
+ * and percentile distributions.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class CustomerLoadIT {
+
+    private static final String URI = "/api/v1/customers";
+    private static final int STABLE_CUSTOMERS = 500;
+    private static final Random RANDOM = new Random();
+
+    private final int rate = Integer.getInteger("load.rate", 100);
+    private final Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT2S"));
+    private final Duration duration = Duration.parse(System.getProperty("load.duration", "PT10S"));
+    private final String mix = System.getProperty("load.mix", "list=5,get=60,post=15,put=15,delete=5");
+    private final int connections = Integer.getInteger("load.connections", 200);
+    private final double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+    private final Path reportDirectory = Path.of(System.getProperty("load.report", "target/load"));
+
+    @LocalServerPort
+    private int port;
+
+    private final Faker faker = new Faker();
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+    private ConnectionProvider connectionProvider;
+    private WebClient webClient;
+    private long[] stableIds;
+    private final Queue<Long> deletableIds = new ConcurrentLinkedQueue<>();
+
+    enum Operation {
+        LIST, GET, POST, PUT, DELETE
+    }
+
+    @BeforeEach
+    void setUp() {
+        connectionProvider = ConnectionProvider.builder("load")
+                .maxConnections(connections)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(-1))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionProvider.dispose();
+    }
+
+    @Test
+    void customerApiUnderLoad() throws IOException, InterruptedException {
+        Operation[] schedule = schedule();
+        seed(schedule);
+
+        run(schedule, warmup, stats());
+
+        Map<Operation, Stats> stats = stats();
+        long start = System.nanoTime();
+        long maxLag = run(schedule, duration, stats);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long requests = 0;
+        long failed = 0;
+        Files.createDirectories(reportDirectory);
+        Histogram total = new Histogram(3);
+        Histogram totalService = new Histogram(3);
+        System.out.printf("%n%-8s %9s %9s %10s %10s %10s %10s %14s %8s%n",
+                "op", "count", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "service p99 ms", "errors");
+        for (Operation operation : Operation.values()) {
+            Stats operationStats = stats.get(operation);
+            Histogram histogram = operationStats.responseTime().getIntervalHistogram();
+            Histogram service = operationStats.serviceTime().getIntervalHistogram();
+            long errors = operationStats.errors().get();
+            total.add(histogram);
+            totalService.add(service);
+            requests += histogram.getTotalCount();
+            failed += errors;
+            print(operation.name().toLowerCase(), histogram, service, seconds, errors);
+            write(operation.name().toLowerCase(), histogram);
+        }
+        print("all", total, totalService, seconds, failed);
+        write("all", total);
+        if (maxLag > TimeUnit.MILLISECONDS.toNanos(10)) {
+            // response times still include the delay, but the client itself may be the bottleneck
+            System.out.printf("the load generator fell up to %d ms behind its %d req/s schedule%n",
+                    TimeUnit.NANOSECONDS.toMillis(maxLag), rate);
+        }
+
+        assertThat(requests).isPositive();
+        assertThat((double) failed / requests).isLessThanOrEqualTo(maxErrorRate);
+    }
+
+    /**
+     * Response time counts from when a request was due, service time from
+     * when it was actually sent. A gap between the two means the client could
+     * not keep up with the schedule.
+     */
+    record Stats(Recorder responseTime, Recorder serviceTime, AtomicLong errors) {
+    }
+
+    private static Map<Operation, Stats> stats() {
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats(new Recorder(3), new Recorder(3), new AtomicLong()));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns how far behind schedule the slowest send was, in nanoseconds.
+     */
+    private long run(Operation[] schedule, Duration length, Map<Operation, Stats> stats) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long requests = length.toNanos() / interval;
+        AtomicLong inFlight = new AtomicLong();
+        long maxLag = 0;
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long due = start + i * interval;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = schedule[(int) (i % schedule.length)];
+            Stats operationStats = stats.get(operation);
+            inFlight.incrementAndGet();
+            long sent = System.nanoTime();
+            maxLag = Math.max(maxLag, sent - due);
+            send(operation)
+                    .doFinally(signal -> {
+                        long now = System.nanoTime();
+                        operationStats.responseTime().recordValue(TimeUnit.NANOSECONDS.toMicros(now - due));
+                        operationStats.serviceTime().recordValue(TimeUnit.NANOSECONDS.toMicros(now - sent));
+                        inFlight.decrementAndGet();
+                    })
+                    .subscribe(ok -> {
+                        if (!ok) {
+                            operationStats.errors().incrementAndGet();
+                        }
+                    }, error -> operationStats.errors().incrementAndGet());
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return maxLag;
+    }
+
+    private Mono<Boolean> send(Operation operation) {
+        return switch (operation) {
+            case LIST -> exchange(HttpMethod.GET, URI, null);
+            case GET -> exchange(HttpMethod.GET, URI + "/" + stableId(), null);
+            case POST -> exchange(HttpMethod.POST, URI, registration("post"));
+            case PUT -> exchange(HttpMethod.PUT, URI + "/" + stableId(),
+                    new UpdateRequest(faker.name().fullName() + " " + sequence.incrementAndGet(), null, null));
+            case DELETE -> {
+                Long id = deletableIds.poll();
+                yield id == null
+                        ? Mono.error(new IllegalStateException("ran out of customers to delete"))
+                        : exchange(HttpMethod.DELETE, URI + "/" + id, null);
+            }
+        };
+    }
+
+    private Mono<Boolean> exchange(HttpMethod method, String uri, Object body) {
+        WebClient.RequestBodySpec request = webClient.method(method)
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON);
+        if (body != null) {
+            request.contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+        }
+        return request.exchangeToMono(response -> response.releaseBody()
+                .thenReturn(response.statusCode().is2xxSuccessful()));
+    }
+
+    private long stableId() {
+        return stableIds[ThreadLocalRandom.current().nextInt(stableIds.length)];
+    }
+
+    private CustomerRegistrationRequest registration(String kind) {
+        String email = "load-%s-%s-%d@course.com".formatted(runId, kind, sequence.incrementAndGet());
+        return new CustomerRegistrationRequest(faker.name().fullName(), email, RANDOM.nextInt(16, 100));
+    }
+
+    /**
+     * Spreads the operations of one mix cycle evenly, e.g. 60 gets out of 100
+     * requests, so that every window of the run sees the configured mix.
+     */
+    private Operation[] schedule() {
+        List<Operation> operations = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            Operation operation = Operation.valueOf(weight[0].trim().toUpperCase());
+            for (int i = 0; i < Integer.parseInt(weight[1].trim()); i++) {
+                operations.add(operation);
+            }
+        }
+        Operation[] schedule = operations.toArray(Operation[]::new);
+        for (int i = schedule.length - 1; i > 0; i--) {
+            int j = RANDOM.nextInt(i + 1);
+            Operation swap = schedule[i];
+            schedule[i] = schedule[j];
+            schedule[j] = swap;
+        }
+        return schedule;
+    }
+
+    private void seed(Operation[] schedule) {
+        long deletes = 0;
+        for (Operation operation : schedule) {
+            if (operation == Operation.DELETE) {
+                deletes++;
+            }
+        }
+        long totalRequests = (long) rate * (warmup.toSeconds() + duration.toSeconds());
+        long deletable = deletes * totalRequests / schedule.length + rate;
+
+        List<CustomerRegistrationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < STABLE_CUSTOMERS; i++) {
+            requests.add(registration("stable"));
+        }
+        for (long i = 0; i < deletable; i++) {
+            requests.add(registration("delete"));
+        }
+        for (int i = 0; i < requests.size(); i += 10_000) {
+            webClient.post()
+                    .uri(URI + "/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(requests.subList(i, Math.min(requests.size(), i + 10_000)))
+                    .retrieve()
+                    .toBodilessEntity()
+                    .block();
+        }
+
+        List<Long> stable = new ArrayList<>();
+        String cursor = null;
+        do {
+            String after = cursor;
+            CustomerPage page = webClient.get()
+                    .uri(builder -> builder.path(URI + "/page")
+                            .queryParam("limit", 1000)
+                            .queryParamIfPresent("after", Optional.ofNullable(after))
+                            .build())
+                    .retrieve()
+                    .bodyToMono(new ParameterizedTypeReference<CustomerPage>() {
+                    })
+                    .block();
+            for (Customer customer : page.customers()) {
+                if (customer.getEmail().startsWith("load-%s-stable-".formatted(runId))) {
+                    stable.add(customer.getId());
+                } else if (customer.getEmail().startsWith("load-%s-delete-".formatted(runId))) {
+                    deletableIds.add(customer.getId());
+                }
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        stableIds = stable.stream().mapToLong(Long::longValue).toArray();
+        assertThat(stableIds).hasSize(STABLE_CUSTOMERS);
+    }
+
+    private static void print(String name, Histogram histogram, Histogram service, double seconds, long errors) {
+        System.out.printf("%-8s %9d %9.1f %10.2f %10.2f %10.2f %10.2f %14.2f %8d%n",
+                name,
+                histogram.getTotalCount(),
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                service.getValueAtPercentile(99) / 1000.0,
+                errors);
+    }
+
+    private void write(String name, Histogram histogram) throws IOException {
+        try (PrintStream log = new PrintStream(Files.newOutputStream(reportDirectory.resolve(name + ".hlog")))) {
+            HistogramLogWriter writer = new HistogramLogWriter(log);
+            writer.outputLogFormatVersion();
+            writer.outputLegend();
+            writer.outputIntervalHistogram(histogram);
+        }
+        try (PrintStream distribution = new PrintStream(Files.newOutputStream(reportDirectory.resolve(name + ".hgrm")))) {
+            // values are recorded in microseconds, report them in milliseconds
+            histogram.outputPercentileDistribution(distribution, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.ayoubhj.sql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class QueryTimingDataSourceTest {
+
+    private static final String SQL = "SELECT id, name, email, age FROM customer WHERE email = ?";
+
+    private QueryTimingDataSource underTest;
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement statement;
+    @Mock
+    private ResultSet resultSet;
+    @Mock
+    private SlowQueryLog slowQueryLog;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(SQL)).thenReturn(statement);
+        underTest = new QueryTimingDataSource(dataSource, slowQueryLog);
+    }
+
+    @Test
+    void recordsQueryWithRowsAndParametersWhenResultSetIsClosed() throws SQLException {
+        // GIVEN
+        when(slowQueryLog.isSlow(anyLong())).thenReturn(true);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        // WHEN
+        try (Connection timed = underTest.getConnection();
+             PreparedStatement prepared = timed.prepareStatement(SQL)) {
+            prepared.setString(1, "ayoub@gmail.com");
+            try (ResultSet rows = prepared.executeQuery()) {
+                while (rows.next()) {
+                    rows.getLong("id");
+                }
+            }
+        }
+        //THEN
+        verify(slowQueryLog).record(eq(SQL), anyLong(), anyLong(), eq(2L), eq(Map.of(1, "ayoub@gmail.com")), eq(false));
+        verify(resultSet).close();
+        verify(statement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    void recordsFailedStatementAndRethrows() throws SQLException {
+        // GIVEN
+        when(slowQueryLog.isSlow(anyLong())).thenReturn(true);
+        SQLException failure = new SQLException("boom");
+        when(statement.executeUpdate()).thenThrow(failure);
+        // WHEN
+        Connection timed = underTest.getConnection();
+        PreparedStatement prepared = timed.prepareStatement(SQL);
+        prepared.setInt(1, 22);
+        //THEN
+        assertThatThrownBy(prepared::executeUpdate).isSameAs(failure);
+        verify(slowQueryLog).record(eq(SQL), anyLong(), eq(0L), eq(-1L), eq(Map.of(1, 22)), eq(true));
+    }
+
+    @Test
+    void unwrapReachesDriverConnection() throws SQLException {
+        // GIVEN
+        when(connection.unwrap(String.class)).thenReturn("driver");
+        // WHEN
+        Connection timed = underTest.getConnection();
+        //THEN
+        assertThat(timed.unwrap(String.class)).isEqualTo("driver");
+        assertThat(timed.prepareStatement(SQL).getConnection()).isSameAs(timed);
+    }
+
+    @Test
+    void logsRealSlowQueries() throws SQLException {
+        // GIVEN
+        SlowQueryLog log = new SlowQueryLog(Duration.ZERO, 20, Duration.ofHours(1));
+        underTest = new QueryTimingDataSource(dataSource, log);
+        when(statement.executeUpdate()).thenReturn(3);
+        // WHEN
+        underTest.getConnection().prepareStatement(SQL).executeUpdate();
+        //THEN
+        SlowQueryReport.Shape shape = log.report().slowest().get(0);
+        assertThat(shape.sql()).isEqualTo(SQL);
+        assertThat(shape.rows()).isEqualTo(3);
+    }
+
+    @Test
+    void timesReadingTheRowsApartFromTheQuery() throws Exception {
+        // GIVEN
+        SlowQueryLog log = new SlowQueryLog(Duration.ofMillis(50), 20, Duration.ofHours(1));
+        underTest = new QueryTimingDataSource(dataSource, log);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        // WHEN
+        try (ResultSet rows = underTest.getConnection().prepareStatement(SQL).executeQuery()) {
+            // a client reading a streamed export slowly
+            Thread.sleep(100);
+            rows.next();
+            rows.next();
+        }
+        //THEN
+        SlowQueryReport.Shape shape = log.report().slowest().get(0);
+        assertThat(shape.maxMillis()).isLessThan(50);
+        assertThat(shape.totalFetchMillis()).isGreaterThanOrEqualTo(100);
+        assertThat(shape.rows()).isEqualTo(1);
+    }
+
+    @Test
+    void fastStatementsDoNotCopyTheirParameters() throws SQLException {
+        // GIVEN
+        when(statement.executeUpdate()).thenReturn(1);
+        // WHEN
+        PreparedStatement prepared = underTest.getConnection().prepareStatement(SQL);
+        prepared.setString(1, "ayoub@gmail.com");
+        prepared.executeUpdate();
+        //THEN
+        verify(slowQueryLog).record(eq(SQL), anyLong(), eq(0L), eq(1L), eq(Map.of()), eq(false));
+    }
+
+    @Test
+    void reusedStatementsReportOnlyTheirCurrentParameters() throws SQLException {
+        // GIVEN
+        when(slowQueryLog.isSlow(anyLong())).thenReturn(true);
+        when(statement.executeUpdate()).thenReturn(1);
+        PreparedStatement prepared = underTest.getConnection().prepareStatement(SQL);
+        for (int index = 1; index <= 10; index++) {
+            prepared.setInt(index, index);
+        }
+        prepared.executeUpdate();
+        // WHEN
+        prepared.clearParameters();
+        prepared.setString(1, "ayoub@gmail.com");
+        prepared.executeUpdate();
+        //THEN
+        verify(slowQueryLog).record(eq(SQL), anyLong(), eq(0L), eq(1L), eq(Map.of(1, "ayoub@gmail.com")), eq(false));
+    }
+}
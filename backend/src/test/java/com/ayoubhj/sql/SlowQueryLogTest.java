@@ -0,0 +1,133 @@
+package com.ayoubhj.sql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SlowQueryLogTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private SlowQueryLog underTest;
+    @Mock
+    private Clock clock;
+
+    @BeforeEach
+    void setUp() {
+        when(clock.instant()).thenReturn(START);
+        underTest = new SlowQueryLog(Duration.ofMillis(200), 2, Duration.ofHours(1), clock);
+    }
+
+    @Test
+    void shapeReplacesLiteralsAndCollapsesWhitespace() {
+        // WHEN
+        String actual = SlowQueryLog.shape("SELECT *\n  FROM customer WHERE email = 'a''b@gmail.com' AND id > 42");
+        //THEN
+        assertThat(actual).isEqualTo("SELECT * FROM customer WHERE email = ? AND id > ?");
+    }
+
+    @Test
+    void redactHidesStringsButKeepsNumbers() {
+        // GIVEN
+        Map<Integer, Object> parameters = new HashMap<>();
+        parameters.put(1, "ayoub@gmail.com");
+        parameters.put(2, 22);
+        parameters.put(3, null);
+        // WHEN
+        String actual = SlowQueryLog.redact(parameters);
+        //THEN
+        assertThat(actual).isEqualTo("[1=<string(15)>, 2=22, 3=null]");
+    }
+
+    @Test
+    void reportsSlowestShapesFirst() {
+        // GIVEN
+        underTest.record("SELECT * FROM customer WHERE id = 1", millis(5), 0, 1, Map.of(), false);
+        underTest.record("SELECT * FROM customer WHERE id = 2", millis(300), 0, 1, Map.of(), false);
+        underTest.record("SELECT count(*) FROM customer", millis(50), 0, 1, Map.of(), false);
+        underTest.record("DELETE FROM customer WHERE id = ?", millis(1), 0, 0, Map.of(1, 3L), true);
+        // WHEN
+        SlowQueryReport actual = underTest.report();
+        //THEN
+        assertThat(actual.thresholdMillis()).isEqualTo(200);
+        assertThat(actual.slowest()).hasSize(2);
+        SlowQueryReport.Shape slowest = actual.slowest().get(0);
+        assertThat(slowest.sql()).isEqualTo("SELECT * FROM customer WHERE id = ?");
+        assertThat(slowest.count()).isEqualTo(2);
+        assertThat(slowest.maxMillis()).isEqualTo(300.0);
+        assertThat(slowest.meanMillis()).isEqualTo(152.5);
+        assertThat(slowest.rows()).isEqualTo(2);
+        assertThat(actual.slowest().get(1).sql()).isEqualTo("SELECT count(*) FROM customer");
+    }
+
+    @Test
+    void startsNewWindowAndKeepsPreviousOne() {
+        // GIVEN
+        underTest.record("SELECT 1", millis(10), 0, 1, Map.of(), false);
+        when(clock.instant()).thenReturn(START.plus(Duration.ofMinutes(61)));
+        // WHEN
+        underTest.record("SELECT 2", millis(20), 0, 1, Map.of(), false);
+        SlowQueryReport actual = underTest.report();
+        //THEN
+        assertThat(actual.windowStart()).isEqualTo(START.plus(Duration.ofMinutes(61)));
+        assertThat(actual.slowest()).extracting(SlowQueryReport.Shape::count).containsExactly(1L);
+        assertThat(actual.slowest().get(0).maxMillis()).isEqualTo(20.0);
+        assertThat(actual.previousWindowStart()).isEqualTo(START);
+        assertThat(actual.previousSlowest().get(0).maxMillis()).isEqualTo(10.0);
+    }
+
+    @Test
+    void resetClearsAllWindows() {
+        // GIVEN
+        underTest.record("SELECT 1", millis(10), 0, 1, Map.of(), false);
+        // WHEN
+        underTest.reset();
+        //THEN
+        SlowQueryReport actual = underTest.report();
+        assertThat(actual.slowest()).isEmpty();
+        assertThat(actual.previousSlowest()).isEmpty();
+    }
+
+    private static long millis(long millis) {
+        return Duration.ofMillis(millis).toNanos();
+    }
+
+    @Test
+    void concurrentStatementsAreAllCounted() throws Exception {
+        // GIVEN
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        // WHEN
+        try {
+            for (int thread = 0; thread < 4; thread++) {
+                executor.execute(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        underTest.record("SELECT * FROM customer WHERE id = ?", millis(1 + i % 3), 0, 1, Map.of(), false);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        //THEN
+        SlowQueryReport.Shape actual = underTest.report().slowest().get(0);
+        assertThat(actual.count()).isEqualTo(40_000);
+        assertThat(actual.rows()).isEqualTo(40_000);
+        assertThat(actual.maxMillis()).isEqualTo(3.0);
+    }
+}
@@ -0,0 +1,34 @@
+package com.ayoubhj.threads;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadsTest {
+
+    @Test
+    void failsFastWithoutVirtualThreadSupport() {
+        assumeTrue(Runtime.version().feature() < 21);
+        assertThat(VirtualThreads.isSupported()).isFalse();
+        assertThatThrownBy(VirtualThreads::newVirtualThreadPerTaskExecutor)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Java 21");
+    }
+
+    @Test
+    void runsTasksOnVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        try {
+            String thread = executor.submit(() -> Thread.currentThread().toString()).get(5, TimeUnit.SECONDS);
+            assertThat(thread).startsWith("VirtualThread");
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.ayoubhj.benchmark;
+
+import com.ayoubhj.SpringBootExampleApplication;
+import com.ayoubhj.customer.Customer;
+import com.ayoubhj.customer.CustomerDao;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups by id through the {@code batching} DAO, below the cache, so that
+ * every call reaches the database. {@code windowMillis=0} turns batching off
+ * and is the baseline. Batching needs concurrent callers to pay off, run it
+ * with many threads:
+ * <pre>
+ * mvn compile exec:exec -Dbenchmark.threads=64 -Dbenchmark.args="BatchingBenchmark"
+ * </pre>
+ * Throughput shows the gain, the SampleTime percentiles the latency the
+ * window adds. The number of queries and the mean batch size are printed at
+ * the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchingBenchmark {
+
+    private static final int TABLE_SIZE = 100_000;
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param({"0", "1", "2"})
+    public int windowMillis;
+
+    @Param({"100"})
+    public int maxSize;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(BenchmarkDatabase.ofFork().springArguments(
+                        "--customer.batching.enabled=" + (windowMillis > 0),
+                        "--customer.batching.window=" + windowMillis + "ms",
+                        "--customer.batching.max-size=" + maxSize,
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn"
+                ));
+        customerDao = context.getBean("batching", CustomerDao.class);
+
+        BenchmarkDatabase.truncateCustomers(context.getBean(JdbcTemplate.class));
+        CustomerDao seeder = context.getBean("jdbc", CustomerDao.class);
+        List<Customer> seeded = new ArrayList<>(TABLE_SIZE);
+        for (int i = 0; i < TABLE_SIZE; i += SEED_BATCH_SIZE) {
+            List<Customer> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int j = i; j < Math.min(TABLE_SIZE, i + SEED_BATCH_SIZE); j++) {
+                batch.add(new Customer("Customer " + j, "seed-" + j + "@example.com", 18 + j % 60));
+            }
+            seeded.addAll(seeder.insertCustomers(batch));
+        }
+        ids = seeded.stream().mapToLong(Customer::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DistributionSummary batchSizes = context.getBean(MeterRegistry.class)
+                .find("customer.batching.batch-size")
+                .summary();
+        if (batchSizes != null && batchSizes.count() > 0) {
+            System.out.printf("%n%d queries, %.1f lookups per query%n", batchSizes.count(), batchSizes.mean());
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return customerDao.selectCustomerById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+}
@@ -0,0 +1,88 @@
+package com.ayoubhj.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Postgres the benchmarks run against: the one {@code benchmark.jdbc.url}
+ * points at or, without it, a throwaway container. Either way the application
+ * is started on the {@code benchmark} schema, which Flyway creates next to the
+ * application's own, so the benchmarks can empty and seed its customer table
+ * without touching real customers.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    static final String JDBC_URL_PROPERTY = "benchmark.jdbc.url";
+    static final String SCHEMA = "benchmark";
+
+    // the URL with the schema applied, as handed to the forked benchmark JVMs
+    private static final String FORK_JDBC_URL_PROPERTY = "benchmark.fork.jdbc.url";
+
+    private final PostgreSQLContainer<?> postgres;
+    private final String jdbcUrl;
+
+    private BenchmarkDatabase(PostgreSQLContainer<?> postgres, String jdbcUrl) {
+        this.postgres = postgres;
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    static BenchmarkDatabase start() {
+        PostgreSQLContainer<?> postgres = null;
+        String jdbcUrl = System.getProperty(JDBC_URL_PROPERTY, "");
+        if (jdbcUrl.isBlank()) {
+            postgres = new PostgreSQLContainer<>("postgres:15")
+                    .withDatabaseName("customer")
+                    .withUsername("ayoub")
+                    .withPassword("password");
+            postgres.start();
+            jdbcUrl = postgres.getJdbcUrl();
+        }
+        // public stays on the path for the functions and operators of extensions installed there
+        return new BenchmarkDatabase(postgres, jdbcUrl + (jdbcUrl.contains("?") ? "&" : "?")
+                + "currentSchema=" + SCHEMA + ",public");
+    }
+
+    /**
+     * The database the runner started, from inside a forked benchmark JVM.
+     */
+    static BenchmarkDatabase ofFork() {
+        String jdbcUrl = System.getProperty(FORK_JDBC_URL_PROPERTY, "");
+        if (jdbcUrl.isBlank()) {
+            throw new IllegalStateException("no benchmark database, run the benchmarks through BenchmarkRunner");
+        }
+        return new BenchmarkDatabase(null, jdbcUrl);
+    }
+
+    String forkJvmArgument() {
+        return "-D%s=%s".formatted(FORK_JDBC_URL_PROPERTY, jdbcUrl);
+    }
+
+    /**
+     * Arguments that start the application against the benchmark schema,
+     * followed by {@code arguments}.
+     */
+    String[] springArguments(String... arguments) {
+        List<String> springArguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.flyway.schemas=" + SCHEMA,
+                "--spring.flyway.default-schema=" + SCHEMA,
+                "--spring.jpa.properties.hibernate.default_schema=" + SCHEMA
+        ));
+        springArguments.addAll(List.of(arguments));
+        return springArguments.toArray(String[]::new);
+    }
+
+    static void truncateCustomers(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("TRUNCATE " + SCHEMA + ".customer RESTART IDENTITY");
+    }
+
+    @Override
+    public void close() {
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ayoubhj.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks once per thread count and writes one JSON result file
+ * per run into {@code benchmark.results}, named by start time and thread
+ * count so that results of different builds can be kept side by side.
+ * <p>
+ * Install the api first, then run from this directory:
+ * <pre>
+ * mvn -f ../backend install -DskipTests
+ * mvn compile exec:exec
+ * mvn compile exec:exec -Dbenchmark.threads=8 -Dbenchmark.args="-p dao=jdbc,list -p tableSize=1000"
+ * mvn compile exec:exec -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5332/customer
+ * </pre>
+ * <ul>
+ *     <li>{@code benchmark.threads}: comma separated thread counts, {@code 1,4} by default</li>
+ *     <li>{@code benchmark.jdbc.url}: Postgres to run against instead of a throwaway container</li>
+ *     <li>{@code benchmark.args}: regular JMH options</li>
+ * </ul>
+ * The benchmarks empty the customer table before they seed it, but only in
+ * their own schema, see {@link BenchmarkDatabase}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Path results = Path.of(System.getProperty("benchmark.results", "target/jmh"));
+        Files.createDirectories(results);
+        int[] threads = Arrays.stream(System.getProperty("benchmark.threads", "1,4").split(","))
+                .mapToInt(thread -> Integer.parseInt(thread.trim()))
+                .toArray();
+
+        try (BenchmarkDatabase database = BenchmarkDatabase.start()) {
+            long timestamp = System.currentTimeMillis();
+            for (int thread : threads) {
+                Path result = results.resolve("customer-dao-%d-%dt.json".formatted(timestamp, thread));
+                OptionsBuilder options = new OptionsBuilder();
+                if (commandLine.getIncludes().isEmpty()) {
+                    options.include(CustomerDaoBenchmark.class.getSimpleName());
+                }
+                new Runner(options
+                        .parent(commandLine)
+                        .threads(thread)
+                        .jvmArgsAppend(database.forkJvmArgument())
+                        .resultFormat(ResultFormatType.JSON)
+                        .result(result.toString())
+                        .build())
+                        .run();
+                System.out.println("results written to " + result.toAbsolutePath());
+            }
+        }
+    }
+}
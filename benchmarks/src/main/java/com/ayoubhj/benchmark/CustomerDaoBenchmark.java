@@ -0,0 +1,129 @@
+package com.ayoubhj.benchmark;
+
+import com.ayoubhj.SpringBootExampleApplication;
+import com.ayoubhj.customer.Customer;
+import com.ayoubhj.customer.CustomerDao;
+import com.ayoubhj.customer.CustomerUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and latency of the {@link CustomerDao} implementations, each
+ * against a table seeded with {@code tableSize} customers. The DAOs are taken
+ * from a real application context so they run with the same transactions and
+ * connection pool as in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param({"jdbc", "jpa", "list"})
+    public String dao;
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+    private long[] ids;
+    private String[] emails;
+    private final AtomicLong inserts = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(BenchmarkDatabase.ofFork().springArguments(
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn"
+                ));
+        customerDao = context.getBean(dao, CustomerDao.class);
+
+        // jdbc and jpa share the table, seed it through the fast path
+        CustomerDao seeder = customerDao;
+        if (!dao.equals("list")) {
+            BenchmarkDatabase.truncateCustomers(context.getBean(JdbcTemplate.class));
+            seeder = context.getBean("jdbc", CustomerDao.class);
+        }
+        List<Customer> seeded = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i += SEED_BATCH_SIZE) {
+            List<Customer> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int j = i; j < Math.min(tableSize, i + SEED_BATCH_SIZE); j++) {
+                batch.add(new Customer("Customer " + j, "seed-" + j + "@example.com", 18 + j % 60));
+            }
+            seeded.addAll(seeder.insertCustomers(batch));
+        }
+        ids = seeded.stream().mapToLong(Customer::getId).toArray();
+        emails = seeded.stream().map(Customer::getEmail).toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return customerDao.selectCustomerById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Benchmark
+    public boolean insertCustomer() {
+        long n = inserts.incrementAndGet();
+        return customerDao.insertCustomer(new Customer("Inserted " + n, "insert-" + System.nanoTime() + "-" + n + "@example.com", 30));
+    }
+
+    @Benchmark
+    public Optional<Customer> updateCustomer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return customerDao.updateCustomer(new CustomerUpdate(ids[random.nextInt(ids.length)], null, null, random.nextInt(18, 80)));
+    }
+
+    @Benchmark
+    public boolean existPersonWithEmail() {
+        return customerDao.existPersonWithEmail(emails[ThreadLocalRandom.current().nextInt(emails.length)]);
+    }
+
+    @Benchmark
+    public boolean existPersonWithEmailMiss() {
+        return customerDao.existPersonWithEmail("missing-" + ThreadLocalRandom.current().nextInt() + "@example.com");
+    }
+
+    @Benchmark
+    public boolean existPersonWithId() {
+        return customerDao.existPersonWithId(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+}
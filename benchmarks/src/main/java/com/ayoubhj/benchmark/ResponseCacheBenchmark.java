@@ -0,0 +1,150 @@
+package com.ayoubhj.benchmark;
+
+import com.ayoubhj.SpringBootExampleApplication;
+import com.ayoubhj.customer.Customer;
+import com.ayoubhj.customer.CustomerController;
+import com.ayoubhj.customer.CustomerDao;
+import com.ayoubhj.customer.CustomerService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@code GET /api/v1/customers} through the controller, without the HTTP
+ * layer. {@code cached=false} is the path before the response cache: load
+ * every customer, serialize them with Jackson and, for {@code gzip}, compress
+ * the JSON the way the server compression would. {@code cached=true} is the
+ * controller as it is. Run it with:
+ * <pre>
+ * mvn compile exec:exec -Dbenchmark.threads=1 -Dbenchmark.args="ResponseCacheBenchmark"
+ * </pre>
+ * Besides the time per request, the CPU time the benchmark threads spent per
+ * request in the measurement iterations is printed at the end of each trial.
+ * It leaves out the CPU of Postgres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    @Param({"identity", "gzip"})
+    public String encoding;
+
+    @Param({"1000", "10000"})
+    public int tableSize;
+
+    private ConfigurableApplicationContext context;
+    private CustomerController customerController;
+    private CustomerService customerService;
+    private ObjectMapper objectMapper;
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    @State(Scope.Thread)
+    public static class CpuTime {
+
+        private long start;
+        private long requests;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            requests = 0;
+            start = THREADS.getCurrentThreadCpuTime();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(ResponseCacheBenchmark benchmark, IterationParams iteration) {
+            if (iteration.getType() == IterationType.MEASUREMENT) {
+                benchmark.cpuNanos.add(THREADS.getCurrentThreadCpuTime() - start);
+                benchmark.requests.add(requests);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .run(BenchmarkDatabase.ofFork().springArguments(
+                        "--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn"
+                ));
+        customerController = context.getBean(CustomerController.class);
+        customerService = context.getBean(CustomerService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        BenchmarkDatabase.truncateCustomers(context.getBean(JdbcTemplate.class));
+        CustomerDao seeder = context.getBean("jdbc", CustomerDao.class);
+        for (int i = 0; i < tableSize; i += SEED_BATCH_SIZE) {
+            List<Customer> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int j = i; j < Math.min(tableSize, i + SEED_BATCH_SIZE); j++) {
+                batch.add(new Customer("Customer " + j, "seed-" + j + "@example.com", 18 + j % 60));
+            }
+            seeder.insertCustomers(batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (requests.sum() > 0) {
+            System.out.printf("%n%.1f us CPU per request%n", cpuNanos.sum() / 1000.0 / requests.sum());
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] getAllCustomers(CpuTime cpuTime) throws IOException {
+        cpuTime.requests++;
+        if (cached) {
+            return customerController.getAllCustomers(null, encoding).getBody();
+        }
+        customerService.getCustomersETag();
+        byte[] json = objectMapper.writeValueAsBytes(customerService.getAllCustomers());
+        return encoding.equals("gzip") ? gzip(json) : json;
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        }
+        return out.toByteArray();
+    }
+}
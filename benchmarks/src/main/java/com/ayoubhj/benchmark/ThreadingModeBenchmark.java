@@ -0,0 +1,222 @@
+package com.ayoubhj.benchmark;
+
+import com.ayoubhj.SpringBootExampleApplication;
+import com.ayoubhj.customer.Customer;
+import com.ayoubhj.customer.CustomerDao;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@code customer.threads.mode=platform} with {@code virtual} on the
+ * existing endpoints. A fixed number of closed-loop clients mix cache hits
+ * ({@code GET /api/v1/customers/{id}} on a warmed set of ids) with calls that
+ * always reach the database ({@code GET /api/v1/customers/page}), and every
+ * {@code jdbc} DAO call is slowed down by {@code bench.db-latency} to stand in
+ * for a loaded database.
+ * <p>
+ * Run once per mode from this directory, virtual mode needs Maven to run on
+ * a Java 21 JDK:
+ * <pre>
+ * mvn compile exec:exec -Dbenchmark.main=com.ayoubhj.benchmark.ThreadingModeBenchmark \
+ *     -Dbenchmark.jvm.args="-Dbench.mode=virtual"
+ * </pre>
+ * The database is picked as for the JMH benchmarks, see {@link BenchmarkDatabase},
+ * and seeded with {@code bench.customers} (10000) customers. Other settings:
+ * {@code bench.clients} (1000), {@code bench.cold-share} (0.2),
+ * {@code bench.db-latency} (PT0.05S), {@code bench.warmup} (PT5S),
+ * {@code bench.duration} (PT20S) and {@code bench.tomcat-threads} (200).
+ */
+public class ThreadingModeBenchmark {
+
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    private final String mode = System.getProperty("bench.mode", "platform");
+    private final int clients = Integer.getInteger("bench.clients", 1000);
+    private final double coldShare = Double.parseDouble(System.getProperty("bench.cold-share", "0.2"));
+    private final Duration dbLatency = Duration.parse(System.getProperty("bench.db-latency", "PT0.05S"));
+    private final Duration warmup = Duration.parse(System.getProperty("bench.warmup", "PT5S"));
+    private final Duration duration = Duration.parse(System.getProperty("bench.duration", "PT20S"));
+    private final int tomcatThreads = Integer.getInteger("bench.tomcat-threads", 200);
+    private final int customers = Integer.getInteger("bench.customers", 10_000);
+
+    private final Recorder hot = new Recorder(3);
+    private final Recorder cold = new Recorder(3);
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final BenchmarkDatabase database;
+    private volatile boolean running;
+    private ConnectionProvider connectionProvider;
+    private WebClient webClient;
+    private long[] hotIds;
+
+    private ThreadingModeBenchmark(BenchmarkDatabase database) {
+        this.database = database;
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (BenchmarkDatabase database = BenchmarkDatabase.start()) {
+            new ThreadingModeBenchmark(database).run();
+        }
+    }
+
+    private void run() throws Exception {
+        try (ConfigurableApplicationContext context = start()) {
+            seed(context);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            connectionProvider = ConnectionProvider.builder("benchmark")
+                    .maxConnections(clients)
+                    .pendingAcquireMaxCount(-1)
+                    .build();
+            webClient = WebClient.builder()
+                    .baseUrl("http://localhost:" + port + "/api/v1/customers")
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                    .build();
+            hotIds = hotIds();
+
+            measure(warmup);
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+            measure(duration);
+            double seconds = duration.toNanos() / 1e9;
+
+            Histogram hotHistogram = hot.getIntervalHistogram();
+            Histogram coldHistogram = cold.getIntervalHistogram();
+            System.out.printf("%-9s %8s %10s %10s %10s %10s %10s %8s %8s%n",
+                    "mode", "clients", "req/s", "hot p50", "hot p99", "cold p50", "cold p99", "errors", "threads");
+            System.out.printf("%-9s %8d %10.0f %10.1f %10.1f %10.1f %10.1f %8d %8d%n",
+                    mode, clients,
+                    (hotHistogram.getTotalCount() + coldHistogram.getTotalCount()) / seconds,
+                    millis(hotHistogram, 50), millis(hotHistogram, 99),
+                    millis(coldHistogram, 50), millis(coldHistogram, 99),
+                    errors.get(), threads.getPeakThreadCount());
+            connectionProvider.dispose();
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        long latencyMillis = dbLatency.toMillis();
+        BeanPostProcessor slowDatabase = new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!beanName.equals("jdbc")) {
+                    return bean;
+                }
+                return Proxy.newProxyInstance(CustomerDao.class.getClassLoader(), new Class<?>[]{CustomerDao.class},
+                        (proxy, method, args) -> {
+                            Thread.sleep(latencyMillis);
+                            try {
+                                return method.invoke(bean, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                        });
+            }
+        };
+        return new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(slowDatabase))
+                .run(database.springArguments(
+                        "--server.port=0",
+                        "--customer.threads.mode=" + mode,
+                        "--server.tomcat.threads.max=" + tomcatThreads,
+                        "--logging.level.com.ayoubhj.sql=ERROR",
+                        "--spring.devtools.restart.enabled=false"
+                ));
+    }
+
+    private void seed(ConfigurableApplicationContext context) {
+        BenchmarkDatabase.truncateCustomers(context.getBean(JdbcTemplate.class));
+        List<Customer> seeded = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            seeded.add(new Customer("Customer " + i, "seed-" + i + "@example.com", 18 + i % 60));
+        }
+        context.getBean("jdbc", CustomerDao.class).insertCustomers(seeded);
+    }
+
+    private long[] hotIds() {
+        String page = get("/page?limit=100").bodyToMono(String.class).block();
+        List<Long> ids = new ArrayList<>();
+        Matcher matcher = ID.matcher(page);
+        while (matcher.find()) {
+            ids.add(Long.parseLong(matcher.group(1)));
+        }
+        for (long id : ids) {
+            get("/" + id).toBodilessEntity().block();
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void measure(Duration duration) throws InterruptedException {
+        hot.reset();
+        cold.reset();
+        errors.set(0);
+        running = true;
+        for (int client = 0; client < clients; client++) {
+            next();
+        }
+        Thread.sleep(duration.toMillis());
+        running = false;
+        while (inFlight.get() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void next() {
+        if (!running) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean isCold = random.nextDouble() < coldShare;
+        Recorder recorder = isCold ? cold : hot;
+        String path = isCold ? "/page?limit=20" : "/" + hotIds[random.nextInt(hotIds.length)];
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        get(path).toBodilessEntity()
+                .timeout(Duration.ofSeconds(60))
+                .subscribe(
+                        response -> {
+                            if (running) {
+                                recorder.recordValue(System.nanoTime() - start);
+                            }
+                        },
+                        failure -> {
+                            if (running) {
+                                errors.incrementAndGet();
+                            }
+                            inFlight.decrementAndGet();
+                            next();
+                        },
+                        () -> {
+                            inFlight.decrementAndGet();
+                            next();
+                        });
+    }
+
+    private WebClient.ResponseSpec get(String path) {
+        return webClient.get().uri(path).retrieve();
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+}